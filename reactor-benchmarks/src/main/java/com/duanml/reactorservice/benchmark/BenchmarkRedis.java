@@ -0,0 +1,105 @@
+package com.duanml.reactorservice.benchmark;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import redis.embedded.RedisServer;
+import redis.embedded.core.RedisServerBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 10:20
+ * Description: 基准测试用Redis
+ *
+ * 默认启动内嵌 Redis 6.2（随机端口）；指定 -Dbench.redis.host=host[:port] 时改用外部Redis，
+ * 如需测试 BLOOM 去重，需指向带 RedisBloom 模块的 Redis Stack。
+ * -Dbench.redis.password 同时作用于内嵌Redis（requirepass）与连接。
+ */
+public class BenchmarkRedis implements AutoCloseable {
+
+    private final RedisServer server;
+    private final String host;
+    private final int port;
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate redisTemplate;
+
+    private BenchmarkRedis(RedisServer server, String host, int port) {
+        this.server = server;
+        this.host = host;
+        this.port = port;
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
+        String password = System.getProperty("bench.redis.password");
+        if (password != null) {
+            config.setPassword(password);
+        }
+        this.connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    /**
+     * 启动（或连接）Redis
+     */
+    public static BenchmarkRedis start() throws IOException {
+        String external = System.getProperty("bench.redis.host");
+        if (external != null && !external.isEmpty()) {
+            String[] hostPort = external.split(":");
+            int port = hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 6379;
+            return new BenchmarkRedis(null, hostPort[0], port);
+        }
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServerBuilder builder = RedisServer.newRedisServer()
+                .port(port)
+                .setting("bind 127.0.0.1")
+                .setting("save \"\"")
+                .setting("appendonly no");
+        String password = System.getProperty("bench.redis.password");
+        if (password != null) {
+            builder.setting("requirepass " + password);
+        }
+        RedisServer server = builder.build();
+        server.start();
+        return new BenchmarkRedis(server, "127.0.0.1", port);
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public StringRedisTemplate redisTemplate() {
+        return redisTemplate;
+    }
+
+    /** 字节值响应式模板，与 RedisConfig.reactiveBytesRedisTemplate 相同配置 */
+    public ReactiveRedisTemplate<String, byte[]> reactiveBytesTemplate() {
+        return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.string())
+                .value(RedisSerializer.byteArray())
+                .build());
+    }
+
+    @Override
+    public void close() throws IOException {
+        connectionFactory.destroy();
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
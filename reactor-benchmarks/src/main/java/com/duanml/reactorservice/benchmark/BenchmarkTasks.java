@@ -0,0 +1,48 @@
+package com.duanml.reactorservice.benchmark;
+
+import com.duanml.reactorservice.biz.config.JacksonConfig;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import com.duanml.user.UserTask;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 10:32
+ * Description: 基准测试数据：与 UserTaskProducerServiceBatch 入队内容一致的 UserTask
+ */
+public final class BenchmarkTasks {
+
+    private BenchmarkTasks() {
+    }
+
+    /**
+     * 初始化 JacksonUtil（与应用相同的 ObjectMapper 配置）
+     */
+    public static void initJackson() {
+        new JacksonUtil(new JacksonConfig().objectMapper());
+    }
+
+    public static UserTask userTask(long id) {
+        UserTask task = new UserTask();
+        task.setId(id);
+        task.setUsername("user_" + Long.toHexString(id * 2654435761L));
+        task.setPassword("Pwd" + Long.toString(id, 36) + "xYz09");
+        task.setEmail("user_" + id + "@test.com");
+        task.setCreatedAt(new Date(1_751_500_000_000L + id));
+        return task;
+    }
+
+    public static List<UserTask> page(long firstId, int size) {
+        List<UserTask> page = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            page.add(userTask(firstId + i));
+        }
+        return page;
+    }
+}
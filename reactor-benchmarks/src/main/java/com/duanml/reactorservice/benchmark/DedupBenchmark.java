@@ -0,0 +1,110 @@
+package com.duanml.reactorservice.benchmark;
+
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch.DedupType;
+import com.duanml.user.UserTask;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 11:05
+ * Description: 每种 DedupType 的单个主键去重开销（shouldPush + markPushed，均为未出现过的新主键）
+ *
+ * BLOOM 需要 RedisBloom 模块，内嵌Redis不支持，请用 -Dbench.redis.host 指向 Redis Stack。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupBenchmark {
+
+    private static final String DEDUP_KEY = "bench:dedup:key";
+
+    @Param({"NONE", "SET", "BLOOM"})
+    public DedupType dedupType;
+
+    private BenchmarkRedis redis;
+    private DedupProducer producer;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        redis = BenchmarkRedis.start();
+        producer = new DedupProducer(redis.redisTemplate(), dedupType);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDedupKey() {
+        StringRedisTemplate redisTemplate = redis.redisTemplate();
+        redisTemplate.delete(DEDUP_KEY);
+        if (dedupType == DedupType.BLOOM) {
+            try {
+                redisTemplate.execute(new DefaultRedisScript<>(
+                                "return redis.call('BF.RESERVE', KEYS[1], '0.001', '10000000')", String.class),
+                        Collections.singletonList(DEDUP_KEY));
+            } catch (Exception e) {
+                throw new IllegalStateException("BLOOM 需要 RedisBloom，请使用 -Dbench.redis.host 指向 Redis Stack", e);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        redis.redisTemplate().delete(DEDUP_KEY);
+        redis.close();
+    }
+
+    @Benchmark
+    public boolean shouldPushAndMark() {
+        String id = String.valueOf(nextId++);
+        boolean push = producer.check(id);
+        if (push) {
+            producer.mark(id);
+        }
+        return push;
+    }
+
+    /**
+     * 只暴露去重逻辑的生产者
+     */
+    static class DedupProducer extends AbstractReactorProducerBatch<UserTask> {
+
+        DedupProducer(StringRedisTemplate redisTemplate, DedupType dedupType) {
+            super(redisTemplate, "bench:dedup:queue", Integer.MAX_VALUE, 1000, dedupType, DEDUP_KEY);
+        }
+
+        boolean check(String id) {
+            return shouldPush(id);
+        }
+
+        void mark(String id) {
+            markPushed(id);
+        }
+
+        @Override
+        protected List<UserTask> fetchBatch(int offset, int limit) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected String toJson(UserTask task) {
+            return null;
+        }
+
+        @Override
+        protected String getPrimaryKey(UserTask task) {
+            return String.valueOf(task.getId());
+        }
+    }
+}
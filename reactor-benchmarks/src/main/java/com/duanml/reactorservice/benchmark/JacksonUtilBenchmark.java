@@ -0,0 +1,59 @@
+package com.duanml.reactorservice.benchmark;
+
+import com.duanml.reactorservice.utils.JacksonUtil;
+import com.duanml.user.UserTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 10:40
+ * Description: JacksonUtil 对 UserTask 的序列化/反序列化（生产端 toJson、消费端 deserializeTask）
+ *
+ * encode/decode 为字符串路径，encodeBytes/decodeBytes 为字节队列路径；
+ * 加 -prof gc 可对比每次操作的分配字节数（gc.alloc.rate.norm）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonUtilBenchmark {
+
+    private UserTask task;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkTasks.initJackson();
+        task = BenchmarkTasks.userTask(1_946_000_000_000_000_001L);
+        json = JacksonUtil.toJson(task);
+        jsonBytes = JacksonUtil.toJsonBytes(task);
+    }
+
+    @Benchmark
+    public String encode() {
+        return JacksonUtil.toJson(task);
+    }
+
+    @Benchmark
+    public UserTask decode() {
+        return JacksonUtil.fromJson(json, UserTask.class);
+    }
+
+    @Benchmark
+    public byte[] encodeBytes() {
+        return JacksonUtil.toJsonBytes(task);
+    }
+
+    @Benchmark
+    public UserTask decodeBytes() {
+        return JacksonUtil.fromJson(jsonBytes, UserTask.class);
+    }
+}
@@ -0,0 +1,122 @@
+package com.duanml.reactorservice.benchmark;
+
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RedisListQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import com.duanml.user.UserTask;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 11:30
+ * Description: 生产端每页入队耗时（toJson + 入队，不去重，数据来自内存，不含查库）
+ *
+ * 每次调用完整跑一遍 startProduce 的生产线程，结果按页平均。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProducerEnqueueBenchmark {
+
+    private static final int PAGES = 20;
+    private static final String QUEUE_KEY = "bench:produce:queue";
+
+    @Param({"ring", "redis-list"})
+    public String backend;
+
+    @Param({"1000"})
+    public int pageSize;
+
+    private BenchmarkRedis redis;
+    private QueueBackend queue;
+    private PagedProducer producer;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkTasks.initJackson();
+        List<List<UserTask>> pages = new ArrayList<>(PAGES);
+        for (int p = 0; p < PAGES; p++) {
+            pages.add(BenchmarkTasks.page((long) p * pageSize + 1, pageSize));
+        }
+        StringRedisTemplate redisTemplate = null;
+        if ("redis-list".equals(backend)) {
+            redis = BenchmarkRedis.start();
+            redisTemplate = redis.redisTemplate();
+            queue = new RedisListQueueBackend(redisTemplate, QUEUE_KEY);
+        } else {
+            queue = new RingBufferQueueBackend(QUEUE_KEY, PAGES * pageSize);
+        }
+        producer = new PagedProducer(redisTemplate, queue, pageSize, pages);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearQueue() {
+        if (redis != null) {
+            redis.redisTemplate().delete(QUEUE_KEY);
+        } else {
+            while (!queue.popBatch(PAGES * pageSize, 0).isEmpty()) {
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (redis != null) {
+            redis.redisTemplate().delete(QUEUE_KEY);
+            redis.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public long producePages() {
+        producer.startProduce();
+        while (producer.isRunning()) {
+            Thread.onSpinWait();
+        }
+        return queue.size();
+    }
+
+    /**
+     * 从内存分页读取的生产者
+     */
+    static class PagedProducer extends AbstractReactorProducerBatch<UserTask> {
+
+        private final List<List<UserTask>> pages;
+
+        PagedProducer(StringRedisTemplate redisTemplate, QueueBackend queue, int pageSize, List<List<UserTask>> pages) {
+            super(redisTemplate, QUEUE_KEY, Integer.MAX_VALUE, pageSize, DedupType.NONE, null, queue);
+            this.pages = pages;
+        }
+
+        @Override
+        protected List<UserTask> fetchBatch(int offset, int limit) {
+            int page = offset / limit;
+            return page < pages.size() ? pages.get(page) : Collections.emptyList();
+        }
+
+        @Override
+        protected String toJson(UserTask task) {
+            return JacksonUtil.toJson(task);
+        }
+
+        @Override
+        protected String getPrimaryKey(UserTask task) {
+            return String.valueOf(task.getId());
+        }
+    }
+}
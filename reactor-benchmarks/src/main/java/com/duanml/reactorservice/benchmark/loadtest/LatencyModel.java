@@ -0,0 +1,65 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 09:40
+ * Description: 处理耗时分布（单位ms，支持小数）
+ *
+ * fixed:5       固定5ms
+ * uniform:1:10  1~10ms均匀分布
+ * exp:5         均值5ms的指数分布（长尾）
+ */
+public class LatencyModel {
+
+    private final String type;
+    private final double a;
+    private final double b;
+
+    private LatencyModel(String type, double a, double b) {
+        this.type = type;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyModel parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "fixed":
+                return new LatencyModel("fixed", Double.parseDouble(parts[1]), 0);
+            case "uniform":
+                return new LatencyModel("uniform", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            case "exp":
+                return new LatencyModel("exp", Double.parseDouble(parts[1]), 0);
+            default:
+                throw new IllegalArgumentException("不支持的耗时分布: " + spec);
+        }
+    }
+
+    /** 采样一次耗时（ms） */
+    public double sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (type) {
+            case "uniform":
+                return a + random.nextDouble() * (b - a);
+            case "exp":
+                return -a * Math.log(1.0 - random.nextDouble());
+            default:
+                return a;
+        }
+    }
+
+    /** 按分布模拟一次处理耗时 */
+    public void simulate() {
+        long nanos = (long) (sampleMillis() * TimeUnit.MILLISECONDS.toNanos(1));
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 09:50
+ * Description: 端到端延迟记录：预分配数组无锁写入，结束后排序求分位数
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public void record(long micros) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = micros;
+        }
+    }
+
+    public int count() {
+        return Math.min(count.get(), samples.length);
+    }
+
+    /**
+     * 计算分位数（ms）
+     * @param quantiles 如 0.5、0.99、0.999
+     */
+    public double[] percentilesMillis(double... quantiles) {
+        int n = count();
+        double[] result = new double[quantiles.length];
+        if (n == 0) {
+            return result;
+        }
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        for (int i = 0; i < quantiles.length; i++) {
+            int index = (int) Math.min(n - 1, Math.ceil(quantiles[i] * n) - 1);
+            result[i] = sorted[Math.max(0, index)] / 1000.0;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 09:30
+ * Description: 压测参数，命令行格式 --key=value，未指定的取默认值
+ */
+public class LoadTestOptions {
+
+    public int tasks = 100_000;            // 任务总数
+    public int payloadBytes = 256;         // 每个任务附带的载荷大小
+    public String backend = "list";        // 队列实现：list / stream / ring / mapped
+    public String consumer = "blocking";   // 消费端：blocking（worker线程） / reactive（响应式，仅list）
+    public int workers = 16;               // 消费worker数；reactive时为在途任务上限
+    public int blockingThreads = 16;       // reactive或异步窗口时阻塞调用（JDBC）卸载线程数
+    public int asyncWindow = 1;            // blocking时每个worker的异步在途窗口，>1启用handleTaskAsync
+    public int popBatchSize = 10;          // 每次批量出队条数
+    public int pageSize = 5000;            // 生产端每页条数
+    public int queueMaxLength = 50_000;    // 生产端限流阈值
+    public String latency = "fixed:1";     // 处理耗时分布（ms）：fixed:5 / uniform:1:10 / exp:5
+    public double failureRate = 0.0;       // 单次处理失败概率
+    public int maxRetry = 2;               // 最大重试次数
+    public long timeoutSeconds = 600;      // 压测最长时间
+    public String jdbcUrl = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions();
+        options.tasks = Integer.parseInt(values.getOrDefault("tasks", String.valueOf(options.tasks)));
+        options.payloadBytes = Integer.parseInt(values.getOrDefault("payloadBytes", String.valueOf(options.payloadBytes)));
+        options.backend = values.getOrDefault("backend", options.backend);
+        options.consumer = values.getOrDefault("consumer", options.consumer);
+        options.workers = Integer.parseInt(values.getOrDefault("workers", String.valueOf(options.workers)));
+        options.blockingThreads = Integer.parseInt(values.getOrDefault("blockingThreads", String.valueOf(options.blockingThreads)));
+        options.asyncWindow = Integer.parseInt(values.getOrDefault("asyncWindow", String.valueOf(options.asyncWindow)));
+        options.popBatchSize = Integer.parseInt(values.getOrDefault("popBatchSize", String.valueOf(options.popBatchSize)));
+        options.pageSize = Integer.parseInt(values.getOrDefault("pageSize", String.valueOf(options.pageSize)));
+        options.queueMaxLength = Integer.parseInt(values.getOrDefault("queueMaxLength", String.valueOf(options.queueMaxLength)));
+        options.latency = values.getOrDefault("latency", options.latency);
+        options.failureRate = Double.parseDouble(values.getOrDefault("failureRate", String.valueOf(options.failureRate)));
+        options.maxRetry = Integer.parseInt(values.getOrDefault("maxRetry", String.valueOf(options.maxRetry)));
+        options.timeoutSeconds = Long.parseLong(values.getOrDefault("timeoutSeconds", String.valueOf(options.timeoutSeconds)));
+        options.jdbcUrl = values.getOrDefault("jdbcUrl", options.jdbcUrl);
+        return options;
+    }
+}
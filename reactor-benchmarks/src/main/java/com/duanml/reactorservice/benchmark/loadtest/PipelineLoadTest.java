@@ -0,0 +1,236 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import com.duanml.reactorservice.benchmark.BenchmarkRedis;
+import com.duanml.reactorservice.benchmark.BenchmarkTasks;
+import com.duanml.reactorservice.middleware.reactor.queue.MappedFileQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RedisListQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RedisStreamQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 10:40
+ * Description: 生产 -> 队列 -> 消费 -> 数据库 全链路压测
+ *
+ * 使用内嵌Redis（或 -Dbench.redis.host）和 H2（MySQL模式，可用 --jdbcUrl 换成真实MySQL），
+ * 跑完全部任务后以JSON输出：持续吞吐、端到端延迟 p50/p99/p999、堆内存和GC统计。
+ *
+ * 运行：java -cp target/benchmarks.jar com.duanml.reactorservice.benchmark.loadtest.PipelineLoadTest \
+ *          --tasks=200000 --backend=stream --workers=32 --popBatchSize=50 --latency=exp:2 --failureRate=0.001
+ * 响应式消费端：--consumer=reactive --workers=2000 --blockingThreads=16（workers为在途任务上限，仅支持list）
+ * 异步窗口：--workers=8 --asyncWindow=250 --blockingThreads=16（每个worker最多250个在途任务）
+ */
+public class PipelineLoadTest {
+
+    private static final String QUEUE_KEY = "loadtest:queue";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Map<String, Object> report = run(options);
+        System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+        System.exit(0);
+    }
+
+    public static Map<String, Object> run(LoadTestOptions options) throws Exception {
+        BenchmarkTasks.initJackson();
+        try (BenchmarkRedis redis = BenchmarkRedis.start();
+             HikariDataSource dataSource = dataSource(options)) {
+            StringRedisTemplate redisTemplate = redis.redisTemplate();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            seed(jdbcTemplate, options);
+            redisTemplate.delete(QUEUE_KEY);
+
+            Path mappedDir = null;
+            QueueBackend queue;
+            switch (options.backend) {
+                case "stream":
+                    queue = new RedisStreamQueueBackend(redisTemplate, QUEUE_KEY, "loadtest", "loadtest-node",
+                            options.tasks * 2L);
+                    break;
+                case "ring":
+                    queue = new RingBufferQueueBackend(QUEUE_KEY, Math.max(options.queueMaxLength + options.pageSize, 1024));
+                    break;
+                case "mapped":
+                    mappedDir = Files.createTempDirectory("loadtest-queue");
+                    queue = new MappedFileQueueBackend(QUEUE_KEY, mappedDir, 64 * 1024 * 1024);
+                    break;
+                default:
+                    queue = new RedisListQueueBackend(redisTemplate, QUEUE_KEY);
+            }
+
+            LatencyRecorder recorder = new LatencyRecorder(options.tasks);
+            SyntheticProducer producer = new SyntheticProducer(redisTemplate, queue, jdbcTemplate,
+                    QUEUE_KEY, options.queueMaxLength, options.pageSize);
+            LatencyModel latencyModel = LatencyModel.parse(options.latency);
+            ConsumerHandle consumer;
+            if ("reactive".equals(options.consumer)) {
+                if (!"list".equals(options.backend)) {
+                    throw new IllegalArgumentException("响应式消费端只支持 --backend=list");
+                }
+                SyntheticReactiveConsumer reactive = new SyntheticReactiveConsumer(redis.reactiveBytesTemplate(),
+                        redisTemplate, jdbcTemplate, QUEUE_KEY, options.blockingThreads, latencyModel,
+                        options.failureRate, recorder);
+                reactive.setMaxRetry(options.maxRetry);
+                reactive.setPopBatchSize(options.popBatchSize);
+                reactive.setIdlePollMillis(20);
+                consumer = new ConsumerHandle(() -> reactive.start(options.workers), reactive::stop,
+                        reactive::getCompleted, reactive::getFailed, reactive::getRetried, reactive::getDiscarded);
+            } else {
+                SyntheticConsumer blocking = new SyntheticConsumer(redisTemplate, queue, jdbcTemplate,
+                        QUEUE_KEY, latencyModel, options.failureRate, recorder);
+                blocking.setMaxRetry(options.maxRetry);
+                blocking.setPopBatchSize(options.popBatchSize);
+                blocking.setPopTimeoutMillis(200);
+                if (options.asyncWindow > 1) {
+                    blocking.enableAsync(options.asyncWindow, options.blockingThreads);
+                }
+                consumer = new ConsumerHandle(() -> blocking.start(options.workers), blocking::stop,
+                        blocking::getCompleted, blocking::getFailed, blocking::getRetried, blocking::getDiscarded);
+            }
+
+            System.gc();
+            long gcCountBefore = gcCount();
+            long gcTimeBefore = gcTimeMillis();
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+            long start = System.nanoTime();
+
+            consumer.start.run();
+            producer.startProduce();
+            long deadline = start + TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+            while (consumer.completed.getAsInt() + consumer.failed.getAsInt() + consumer.discarded.getAsInt() < options.tasks
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+            producer.requestStop();
+            consumer.stop.run();
+
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            double[] p = recorder.percentilesMillis(0.5, 0.99, 0.999);
+            double seconds = elapsedNanos / 1e9;
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", optionsMap(options));
+            report.put("completed", consumer.completed.getAsInt());
+            report.put("failed", consumer.failed.getAsInt());
+            report.put("retried", consumer.retried.getAsInt());
+            report.put("timedOut", consumer.completed.getAsInt() + consumer.failed.getAsInt() < options.tasks);
+            report.put("elapsedSeconds", round(seconds));
+            report.put("throughputPerSecond", round(consumer.completed.getAsInt() / seconds));
+            report.put("peakThreads", peakThreads);
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("samples", recorder.count());
+            latency.put("p50Millis", round(p[0]));
+            latency.put("p99Millis", round(p[1]));
+            latency.put("p999Millis", round(p[2]));
+            report.put("endToEndLatency", latency);
+            Map<String, Object> memory = new LinkedHashMap<>();
+            memory.put("heapUsedMb", heap.getUsed() / (1024 * 1024));
+            memory.put("heapCommittedMb", heap.getCommitted() / (1024 * 1024));
+            memory.put("heapMaxMb", heap.getMax() / (1024 * 1024));
+            memory.put("gcCount", gcCount() - gcCountBefore);
+            memory.put("gcTimeMillis", gcTimeMillis() - gcTimeBefore);
+            List<String> collectors = new ArrayList<>();
+            ManagementFactory.getGarbageCollectorMXBeans().forEach(gc -> collectors.add(gc.getName()));
+            memory.put("collectors", collectors);
+            report.put("memory", memory);
+
+            if (queue instanceof MappedFileQueueBackend mapped) {
+                mapped.close();
+            }
+            redisTemplate.delete(QUEUE_KEY);
+            return report;
+        }
+    }
+
+    private static HikariDataSource dataSource(LoadTestOptions options) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(options.jdbcUrl);
+        dataSource.setMaximumPoolSize(Math.max(10, options.workers + 2));
+        return dataSource;
+    }
+
+    /**
+     * 建表并写入任务（不计入压测时间）
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, LoadTestOptions options) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS load_task");
+        jdbcTemplate.execute("CREATE TABLE load_task (id BIGINT PRIMARY KEY, payload VARCHAR(65535), done TINYINT DEFAULT 0)");
+        String payload = "x".repeat(options.payloadBytes);
+        List<Object[]> rows = new ArrayList<>(1000);
+        for (long id = 1; id <= options.tasks; id++) {
+            rows.add(new Object[]{id, payload});
+            if (rows.size() == 1000 || id == options.tasks) {
+                jdbcTemplate.batchUpdate("INSERT INTO load_task (id, payload) VALUES (?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    private static Map<String, Object> optionsMap(LoadTestOptions options) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("tasks", options.tasks);
+        map.put("payloadBytes", options.payloadBytes);
+        map.put("backend", options.backend);
+        map.put("consumer", options.consumer);
+        map.put("workers", options.workers);
+        map.put("blockingThreads", options.blockingThreads);
+        map.put("asyncWindow", options.asyncWindow);
+        map.put("popBatchSize", options.popBatchSize);
+        map.put("pageSize", options.pageSize);
+        map.put("queueMaxLength", options.queueMaxLength);
+        map.put("latency", options.latency);
+        map.put("failureRate", options.failureRate);
+        map.put("maxRetry", options.maxRetry);
+        return map;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+
+    /**
+     * 同步/响应式两种消费端的统一操作
+     */
+    private record ConsumerHandle(Runnable start, Runnable stop, IntSupplier completed, IntSupplier failed,
+                                  IntSupplier retried, IntSupplier discarded) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactorConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 10:20
+ * Description: 压测消费者：按分布模拟处理耗时、按概率失败，成功后回写 load_task 并记录端到端延迟
+ *
+ * enableAsync 后走 handleTaskAsync：耗时用延迟调度模拟（不占线程），回写数据库在固定大小的线程池上执行
+ */
+public class SyntheticConsumer extends AbstractReactorConsumeBatch<SyntheticTask> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LatencyModel latencyModel;
+    private final double failureRate;
+    private final LatencyRecorder recorder;
+    // 异步模式下执行数据库回写的线程池，未启用时为null
+    private volatile ExecutorService asyncExecutor;
+
+    public SyntheticConsumer(StringRedisTemplate redisTemplate, QueueBackend queueBackend, JdbcTemplate jdbcTemplate,
+                             String queueKey, LatencyModel latencyModel, double failureRate, LatencyRecorder recorder) {
+        super(redisTemplate, queueKey, queueBackend);
+        this.jdbcTemplate = jdbcTemplate;
+        this.latencyModel = latencyModel;
+        this.failureRate = failureRate;
+        this.recorder = recorder;
+    }
+
+    /**
+     * 启用异步处理
+     * @param window          每个worker的在途窗口
+     * @param blockingThreads 数据库回写线程数
+     */
+    public void enableAsync(int window, int blockingThreads) {
+        this.asyncExecutor = Executors.newFixedThreadPool(blockingThreads, r -> {
+            Thread t = new Thread(r, "loadtest-async-jdbc");
+            t.setDaemon(true);
+            return t;
+        });
+        setAsyncWindow(window);
+    }
+
+    @Override
+    protected void handleTask(SyntheticTask task) {
+        latencyModel.simulate();
+        complete(task);
+    }
+
+    @Override
+    protected CompletableFuture<Void> handleTaskAsync(SyntheticTask task) {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            return super.handleTaskAsync(task);
+        }
+        long nanos = (long) (latencyModel.sampleMillis() * TimeUnit.MILLISECONDS.toNanos(1));
+        return CompletableFuture.runAsync(() -> complete(task),
+                CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS, executor));
+    }
+
+    private void complete(SyntheticTask task) {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IllegalStateException("模拟处理失败: " + task.getId());
+        }
+        jdbcTemplate.update("UPDATE load_task SET done = 1 WHERE id = ?", task.getId());
+        recorder.record(SyntheticProducer.nowMicros() - task.getEnqueuedAtMicros());
+    }
+
+    @Override
+    protected SyntheticTask deserializeTask(String taskStr) {
+        return JacksonUtil.fromJson(taskStr, SyntheticTask.class);
+    }
+}
@@ -0,0 +1,62 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 10:10
+ * Description: 压测生产者：分页读取 load_task 表，入队时写入入队时间
+ */
+public class SyntheticProducer extends AbstractReactorProducerBatch<SyntheticTask> {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyntheticProducer(StringRedisTemplate redisTemplate, QueueBackend queueBackend, JdbcTemplate jdbcTemplate,
+                             String queueKey, int queueMaxLength, int pageSize) {
+        super(redisTemplate, queueKey, queueMaxLength, pageSize, DedupType.NONE, null, queueBackend);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    protected List<SyntheticTask> fetchBatch(int offset, int limit) {
+        return jdbcTemplate.query("SELECT id, payload FROM load_task ORDER BY id LIMIT ? OFFSET ?",
+                (rs, rowNum) -> {
+                    SyntheticTask task = new SyntheticTask();
+                    task.setId(rs.getLong("id"));
+                    task.setPayload(rs.getString("payload"));
+                    return task;
+                }, limit, offset);
+    }
+
+    @Override
+    protected long estimateTotal() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM load_task", Long.class);
+        return count != null ? count : -1L;
+    }
+
+    @Override
+    protected String toJson(SyntheticTask task) {
+        task.setEnqueuedAtMicros(nowMicros());
+        return JacksonUtil.toJson(task);
+    }
+
+    @Override
+    protected String getPrimaryKey(SyntheticTask task) {
+        return String.valueOf(task.getId());
+    }
+
+    /** 生产端与消费端同一JVM，使用单调时钟 */
+    static long nowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+    }
+}
@@ -0,0 +1,58 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactiveConsumeBatch;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 16:40
+ * Description: 压测响应式消费者：处理耗时用定时器模拟（非阻塞的远程调用），回写 load_task 卸载到阻塞线程池
+ */
+public class SyntheticReactiveConsumer extends AbstractReactiveConsumeBatch<SyntheticTask> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LatencyModel latencyModel;
+    private final double failureRate;
+    private final LatencyRecorder recorder;
+
+    public SyntheticReactiveConsumer(ReactiveRedisTemplate<String, byte[]> reactiveTemplate,
+                                     StringRedisTemplate redisTemplate, JdbcTemplate jdbcTemplate,
+                                     String queueKey, int blockingThreads, LatencyModel latencyModel,
+                                     double failureRate, LatencyRecorder recorder) {
+        super(reactiveTemplate, redisTemplate, queueKey, blockingThreads);
+        this.jdbcTemplate = jdbcTemplate;
+        this.latencyModel = latencyModel;
+        this.failureRate = failureRate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    protected Mono<Void> handleTaskReactive(SyntheticTask task) {
+        long delayNanos = (long) (latencyModel.sampleMillis() * 1_000_000L);
+        return Mono.delay(Duration.ofNanos(delayNanos))
+                .then(Mono.defer(() -> {
+                    if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                        return Mono.error(new IllegalStateException("模拟处理失败: " + task.getId()));
+                    }
+                    return offload(() -> {
+                        jdbcTemplate.update("UPDATE load_task SET done = 1 WHERE id = ?", task.getId());
+                        recorder.record(SyntheticProducer.nowMicros() - task.getEnqueuedAtMicros());
+                    });
+                }));
+    }
+
+    @Override
+    protected SyntheticTask deserializeTask(byte[] body) {
+        return JacksonUtil.fromJson(body, SyntheticTask.class);
+    }
+}
@@ -0,0 +1,28 @@
+package com.duanml.reactorservice.benchmark.loadtest;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.loadtest</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 10:00
+ * Description: 压测任务：主键 + 入队时间（计算端到端延迟） + 载荷
+ */
+public class SyntheticTask {
+
+    private Long id;
+    private Long enqueuedAtMicros;
+    private String payload;
+
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public Long getEnqueuedAtMicros() { return enqueuedAtMicros; }
+
+    public void setEnqueuedAtMicros(Long enqueuedAtMicros) { this.enqueuedAtMicros = enqueuedAtMicros; }
+
+    public String getPayload() { return payload; }
+
+    public void setPayload(String payload) { this.payload = payload; }
+}
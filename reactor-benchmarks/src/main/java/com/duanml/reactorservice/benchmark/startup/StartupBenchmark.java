@@ -0,0 +1,184 @@
+package com.duanml.reactorservice.benchmark.startup;
+
+import com.duanml.reactorservice.benchmark.BenchmarkRedis;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: com.duanml.reactorservice.benchmark.startup</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 18:00
+ * Description: 启动耗时压测：新节点从进程启动到取走第一个任务的时间
+ *
+ * 每轮先在队列中放入任务并下发全局 start 指令（模拟扩容时已有积压），再启动一个 ReactorServiceApplication 子进程，记录：
+ * - startedMillis：到 Spring 输出 "Started ReactorServiceApplication" 的时间；
+ * - firstTaskMillis：到队列长度首次减少（第一个任务出队）的时间，即扩容节点开始分担积压的时间。
+ * 子进程连接内嵌Redis（或 -Dbench.redis.host），数据库按 --appArgs 传入，未传时使用 application.yml 的配置
+ * （启动不依赖数据库，任务处理失败不影响测量）。跑完后以JSON输出每轮结果与中位数。
+ *
+ * 运行（对比默认启动与 mvn -Pfast-start package 的产物）：
+ * java -cp target/benchmarks.jar com.duanml.reactorservice.benchmark.startup.StartupBenchmark \
+ *      --jar=../reactor-service/target/reactor-service-1.0.0-SNAPSHOT-exec.jar --runs=5
+ * java -cp target/benchmarks.jar com.duanml.reactorservice.benchmark.startup.StartupBenchmark \
+ *      --jar=../reactor-service/target/fast-start/reactor-service-1.0.0-SNAPSHOT-exec.jar \
+ *      --jvmArgs="-XX:SharedArchiveFile=../reactor-service/target/fast-start/application.jsa -Dspring.aot.enabled=true" \
+ *      --appArgs="--spring.profiles.active=dev,fast-start" --runs=5
+ */
+public class StartupBenchmark {
+
+    // 与 UserTaskConsumeServiceBatch、AbstractBatchConsumeController 一致
+    private static final String QUEUE_KEY = "userTask:batch:queue";
+    private static final String GLOBAL_COMMAND_KEY = "batch:global:command";
+    private static final String STARTED_MARKER = "Started ReactorServiceApplication";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String jar = options.getOrDefault("jar", "../reactor-service/target/reactor-service-1.0.0-SNAPSHOT-exec.jar");
+        List<String> jvmArgs = split(options.getOrDefault("jvmArgs", ""));
+        List<String> appArgs = split(options.getOrDefault("appArgs", ""));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        int tasks = Integer.parseInt(options.getOrDefault("tasks", "100"));
+        long timeoutSeconds = Long.parseLong(options.getOrDefault("timeoutSeconds", "120"));
+        if (!new File(jar).isFile()) {
+            throw new IllegalArgumentException("找不到可执行jar: " + jar);
+        }
+
+        // 应用依赖的 Redisson 不接受空密码，内嵌Redis也设置密码
+        if (System.getProperty("bench.redis.password") == null) {
+            System.setProperty("bench.redis.password", "startup-bench");
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (BenchmarkRedis redis = BenchmarkRedis.start()) {
+            StringRedisTemplate redisTemplate = redis.redisTemplate();
+            for (int i = 0; i < runs; i++) {
+                Map<String, Object> result = runOnce(redisTemplate, redis.host(), redis.port(), jar, jvmArgs, appArgs, tasks, timeoutSeconds);
+                result.put("run", i + 1);
+                results.add(result);
+                System.err.println("run " + (i + 1) + ": " + result);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("jar", jar);
+        report.put("jvmArgs", jvmArgs);
+        report.put("appArgs", appArgs);
+        report.put("runs", results);
+        report.put("medianStartedMillis", median(results, "startedMillis"));
+        report.put("medianFirstTaskMillis", median(results, "firstTaskMillis"));
+        System.out.println(new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+        System.exit(0);
+    }
+
+    private static Map<String, Object> runOnce(StringRedisTemplate redisTemplate, String redisHost, int redisPort, String jar,
+                                               List<String> jvmArgs, List<String> appArgs, int tasks,
+                                               long timeoutSeconds) throws Exception {
+        redisTemplate.delete(QUEUE_KEY);
+        List<String> payloads = new ArrayList<>(tasks);
+        for (int i = 1; i <= tasks; i++) {
+            payloads.add("{\"id\":" + i + "}");
+        }
+        redisTemplate.opsForList().rightPushAll(QUEUE_KEY, payloads);
+        redisTemplate.opsForValue().set(GLOBAL_COMMAND_KEY, "start");
+
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar);
+        command.add("--server.port=" + freePort());
+        command.add("--spring.data.redis.host=" + redisHost);
+        command.add("--spring.data.redis.port=" + redisPort);
+        command.add("--spring.data.redis.password=" + System.getProperty("bench.redis.password"));
+        command.addAll(appArgs);
+
+        AtomicLong startedAt = new AtomicLong();
+        long launchedAt = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Thread pump = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (startedAt.get() == 0L && line.contains(STARTED_MARKER)) {
+                        startedAt.set(System.nanoTime());
+                    }
+                }
+            } catch (Exception ignored) {
+                // 子进程退出
+            }
+        }, "startup-output-pump");
+        pump.setDaemon(true);
+        pump.start();
+
+        long firstTaskAt = 0L;
+        long deadline = launchedAt + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        try {
+            // 消费端随控制器创建而启动，第一个任务可能早于 Started 出队，两者都记录到才结束
+            while ((firstTaskAt == 0L || startedAt.get() == 0L) && System.nanoTime() < deadline && process.isAlive()) {
+                if (firstTaskAt == 0L) {
+                    Long size = redisTemplate.opsForList().size(QUEUE_KEY);
+                    if (size != null && size < tasks) {
+                        firstTaskAt = System.nanoTime();
+                    }
+                }
+                Thread.sleep(5);
+            }
+        } finally {
+            // SIGTERM，走优雅停机
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startedMillis", startedAt.get() == 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(startedAt.get() - launchedAt));
+        result.put("firstTaskMillis", firstTaskAt == 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(firstTaskAt - launchedAt));
+        result.put("exitCode", process.exitValue());
+        return result;
+    }
+
+    private static long median(List<Map<String, Object>> results, String field) {
+        long[] values = results.stream().mapToLong(r -> (Long) r.get(field)).filter(v -> v >= 0).sorted().toArray();
+        return values.length == 0 ? -1L : values[values.length / 2];
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> split(String value) {
+        return value.isBlank() ? List.of() : Arrays.asList(value.trim().split("\\s+"));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return values;
+    }
+}
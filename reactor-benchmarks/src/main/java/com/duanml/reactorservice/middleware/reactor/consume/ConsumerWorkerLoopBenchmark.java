@@ -0,0 +1,91 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.benchmark.BenchmarkTasks;
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import com.duanml.user.UserTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 12:00
+ * Description: 消费端worker循环的单任务框架开销
+ *
+ * 出队 -> 反序列化 -> 重试框架 -> 空处理 -> 确认，队列为JVM内环形队列，不含Redis往返。
+ * 放在 consume 包内是为了直接调用包内可见的 drain()，即worker循环实际执行的代码。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsumerWorkerLoopBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"10", "100"})
+    public int popBatchSize;
+
+    private RingBufferQueueBackend queue;
+    private NoopConsumer consumer;
+    private List<String> payloads;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkTasks.initJackson();
+        queue = new RingBufferQueueBackend("bench:consume:queue", BATCH * 2);
+        consumer = new NoopConsumer(queue);
+        consumer.setPopBatchSize(popBatchSize);
+        consumer.startShared();
+        payloads = new ArrayList<>(BATCH);
+        for (UserTask task : BenchmarkTasks.page(1, BATCH)) {
+            payloads.add(JacksonUtil.toJson(task));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        consumer.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long perTask() {
+        queue.pushBatch(payloads);
+        int drained = 0;
+        while (drained < BATCH) {
+            drained += consumer.drain(1, popBatchSize);
+        }
+        return consumer.handled;
+    }
+
+    /**
+     * 空处理的消费者，反序列化与示例一致
+     */
+    static class NoopConsumer extends AbstractReactorConsumeBatch<UserTask> {
+
+        long handled;
+
+        NoopConsumer(RingBufferQueueBackend queue) {
+            super(null, queue.name(), queue);
+        }
+
+        @Override
+        protected void handleTask(UserTask task) {
+            handled += task.getId();
+        }
+
+        @Override
+        protected UserTask deserializeTask(String taskStr) {
+            return JacksonUtil.fromJson(taskStr, UserTask.class);
+        }
+    }
+}
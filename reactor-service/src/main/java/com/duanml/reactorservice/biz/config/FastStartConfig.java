@@ -0,0 +1,40 @@
+package com.duanml.reactorservice.biz.config;
+
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactiveConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactorConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.controller.AbstractBatchConsumeController;
+import com.duanml.reactorservice.middleware.reactor.controller.AbstractBatchProducerController;
+import com.duanml.reactorservice.middleware.reactor.lifecycle.ReactorGracefulShutdown;
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.config</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 17:10
+ * Description: 快速启动（fast-start 配置文件）
+ *
+ * application-fast-start.yml 开启全局懒加载，这里把批处理相关的Bean排除在外：
+ * 控制器在构造时启动指令监听线程，节点一启动就能按全局指令开始消费；其余Bean（缓存、Web接口等）首次使用时再创建。
+ * 配合 mvn -Pfast-start package 生成的AOT代码与CDS归档（见 pom.xml）：
+ * java -XX:SharedArchiveFile=target/fast-start/application.jsa -Dspring.aot.enabled=true \
+ *      -jar target/fast-start/reactor-service-1.0.0-SNAPSHOT-exec.jar --spring.profiles.active=dev,fast-start
+ */
+@Configuration
+public class FastStartConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter batchBeansEagerInit() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                AbstractBatchConsumeController.class,
+                AbstractBatchProducerController.class,
+                AbstractReactorConsumeBatch.class,
+                AbstractReactiveConsumeBatch.class,
+                AbstractReactorProducerBatch.class,
+                ReactorGracefulShutdown.class);
+    }
+}
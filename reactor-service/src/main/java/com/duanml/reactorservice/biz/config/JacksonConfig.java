@@ -1,23 +1,35 @@
 package com.duanml.reactorservice.biz.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalTimeSerializer;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
 
 /**
  * <p>Title: com.duanml.reactorstudy.biz.config</p>
@@ -30,13 +42,16 @@ import java.time.format.DateTimeFormatter;
 @Configuration
 public class JacksonConfig {
 
+    // java.util.Date 的格式，线程安全，替代每次使用都要克隆的 SimpleDateFormat
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
 
         mapper.setSerializationInclusion(JsonInclude.Include.ALWAYS);
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
 
         // 告诉 Jackson 在反序列化时，遇到 JSON 中存在但 Java 对象中没有的字段，不要报错，忽略这些多余字段，继续正常反序列化
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -55,6 +70,45 @@ public class JacksonConfig {
         longToStringModule.addSerializer(Long.TYPE, ToStringSerializer.instance);
         mapper.registerModule(longToStringModule);
 
+        SimpleModule dateModule = new SimpleModule();
+        dateModule.addSerializer(Date.class, new DateSerializer());
+        dateModule.addDeserializer(Date.class, new DateDeserializer());
+        mapper.registerModule(dateModule);
+
+        // 用生成的访问器代替反射调用 getter/setter
+        mapper.registerModule(new BlackbirdModule());
+
         return mapper;
     }
+
+    /**
+     * Date 序列化为 yyyy-MM-dd HH:mm:ss（JVM默认时区）
+     */
+    private static class DateSerializer extends JsonSerializer<Date> {
+        @Override
+        public void serialize(Date value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeString(DATE_FORMAT.format(value.toInstant()));
+        }
+    }
+
+    /**
+     * Date 反序列化：支持 yyyy-MM-dd HH:mm:ss 字符串和毫秒时间戳
+     */
+    private static class DateDeserializer extends JsonDeserializer<Date> {
+        @Override
+        public Date deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+                return new Date(p.getLongValue());
+            }
+            String text = p.getValueAsString();
+            if (text == null || text.isBlank()) {
+                return null;
+            }
+            try {
+                return Date.from(DATE_FORMAT.parse(text.trim(), Instant::from));
+            } catch (DateTimeParseException e) {
+                return (Date) ctxt.handleWeirdStringValue(Date.class, text, "日期格式应为 yyyy-MM-dd HH:mm:ss");
+            }
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.duanml.reactorservice.biz.config;
+
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.mybatis.spring.mapper.MapperScannerConfigurer;
+import org.springframework.beans.factory.aot.BeanRegistrationExcludeFilter;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.config</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 17:30
+ * Description: MyBatis Mapper 的 AOT 支持（mybatis-spring 3.0.x 本身不支持AOT）
+ *
+ * 1. AOT处理时 MapperScannerConfigurer 已经扫描并注册了各 Mapper 的 MapperFactoryBean 定义，
+ *    生成代码中不再保留扫描器，否则运行时重复扫描会与已生成的定义冲突（通过 META-INF/spring/aot.factories 注册）；
+ * 2. 扫描器以类名字符串作为构造参数，AOT不生成这种参数；改为按下标的Class参数，并声明FactoryBean产出的Mapper类型，
+ *    按类型注入Mapper时无需先实例化FactoryBean（由 MybatisPlusConfig 注册，非AOT运行时同样适用）。
+ */
+class MybatisAotSupport implements BeanRegistrationExcludeFilter {
+
+    @Override
+    public boolean isExcludedFromAotProcessing(RegisteredBean registeredBean) {
+        return MapperScannerConfigurer.class.isAssignableFrom(registeredBean.getBeanClass());
+    }
+
+    static void resolveMapperInterfaces(ConfigurableListableBeanFactory beanFactory) {
+        if (!(beanFactory instanceof BeanDefinitionRegistry registry)) {
+            return;
+        }
+        ClassLoader classLoader = beanFactory.getBeanClassLoader();
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (!MapperFactoryBean.class.getName().equals(definition.getBeanClassName())) {
+                continue;
+            }
+            ConstructorArgumentValues args = definition.getConstructorArgumentValues();
+            if (args.getGenericArgumentValues().size() != 1 || !args.getIndexedArgumentValues().isEmpty()) {
+                continue;
+            }
+            Object value = args.getGenericArgumentValues().get(0).getValue();
+            Class<?> mapperInterface = value instanceof Class<?> c ? c
+                    : ClassUtils.resolveClassName(String.valueOf(value), classLoader);
+            RootBeanDefinition resolved = ((RootBeanDefinition) beanFactory.getMergedBeanDefinition(name)).cloneBeanDefinition();
+            resolved.getConstructorArgumentValues().clear();
+            resolved.getConstructorArgumentValues().addIndexedArgumentValue(0, mapperInterface);
+            resolved.setTargetType(ResolvableType.forClassWithGenerics(MapperFactoryBean.class, mapperInterface));
+            registry.removeBeanDefinition(name);
+            registry.registerBeanDefinition(name, resolved);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.duanml.reactorservice.biz.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,4 +24,12 @@ public class MybatisPlusConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL)); // 替换成你的数据库类型
         return interceptor;
     }
+
+    /**
+     * Mapper定义支持AOT，见 MybatisAotSupport
+     */
+    @Bean
+    static BeanFactoryPostProcessor mapperAotPostProcessor() {
+        return MybatisAotSupport::resolveMapperInterfaces;
+    }
 }
@@ -0,0 +1,42 @@
+package com.duanml.reactorservice.biz.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.config</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 09:40
+ * Description: 用户两级缓存配置（user-cache.*）
+ */
+@Component
+@ConfigurationProperties(prefix = "user-cache")
+public class UserCacheProperties {
+    // 本地缓存最多条目数（按ID、按用户名各自计数）
+    private long localMaxSize = 100_000L;
+    // 本地缓存写入后过期时间，兜底其他节点的失效广播丢失
+    private long localTtlSeconds = 60L;
+    // Redis层过期时间
+    private long redisTtlSeconds = 600L;
+    // 不存在的ID的空值标记过期时间，防止缓存穿透
+    private long nullTtlSeconds = 30L;
+
+    // getter & setter
+    public long getLocalMaxSize() { return localMaxSize; }
+
+    public void setLocalMaxSize(long localMaxSize) { this.localMaxSize = localMaxSize; }
+
+    public long getLocalTtlSeconds() { return localTtlSeconds; }
+
+    public void setLocalTtlSeconds(long localTtlSeconds) { this.localTtlSeconds = localTtlSeconds; }
+
+    public long getRedisTtlSeconds() { return redisTtlSeconds; }
+
+    public void setRedisTtlSeconds(long redisTtlSeconds) { this.redisTtlSeconds = redisTtlSeconds; }
+
+    public long getNullTtlSeconds() { return nullTtlSeconds; }
+
+    public void setNullTtlSeconds(long nullTtlSeconds) { this.nullTtlSeconds = nullTtlSeconds; }
+}
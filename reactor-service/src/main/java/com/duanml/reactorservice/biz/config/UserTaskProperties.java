@@ -0,0 +1,30 @@
+package com.duanml.reactorservice.biz.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.config</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/16 20:10
+ * Description: 用户任务批处理配置（user-task.*）
+ */
+@Component
+@ConfigurationProperties(prefix = "user-task")
+public class UserTaskProperties {
+    // 定时发起生产作业的周期（秒），0为只通过 /start 手动发起
+    private long produceScheduleSeconds = 0L;
+    // 生产是否为增量模式（按ID水位只取新增用户），false为按页号全量扫描
+    private boolean produceIncremental = false;
+
+    // getter & setter
+    public long getProduceScheduleSeconds() { return produceScheduleSeconds; }
+
+    public void setProduceScheduleSeconds(long produceScheduleSeconds) { this.produceScheduleSeconds = produceScheduleSeconds; }
+
+    public boolean isProduceIncremental() { return produceIncremental; }
+
+    public void setProduceIncremental(boolean produceIncremental) { this.produceIncremental = produceIncremental; }
+}
@@ -3,8 +3,14 @@ package com.duanml.reactorservice.biz.config.env;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.env.EnvironmentPostProcessor;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.StringUtils;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.UUID;
 
 /**
  * <p>Title: com.duanml.reactorservice.biz.config.env</p>
@@ -12,21 +18,77 @@ import java.net.InetAddress;
  * <p>Copyright:Copyright(c)</p>
  * User: duanml
  * Date: 2025/7/5 08:18
- * Description: No Description
+ * Description: 生成节点ID（reactor-node.id），格式 地址:端口
+ *
+ * 已通过环境变量、启动参数显式指定 reactor-node.id 时直接使用；否则按 reactor-node.id-strategy 生成：
+ * - interface（默认）：遍历本机网卡取第一个非回环IPv4地址，不做DNS解析，启动不会卡在DNS上；
+ * - hostname：取环境变量 HOSTNAME / COMPUTERNAME（容器中即Pod名），同样不做DNS解析；
+ * - random：随机ID，适合临时扩容的节点；
+ * - dns：旧方式 InetAddress.getLocalHost()，主机名解析慢时会阻塞启动。
+ * 前三种取不到值时退化为 random。
  */
 public class ReactorNodeIdEnvProcessor implements EnvironmentPostProcessor {
 
+    private static final String NODE_ID_PROPERTY = "reactor-node.id";
+    private static final String STRATEGY_PROPERTY = "reactor-node.id-strategy";
+
     @Override
     public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (StringUtils.hasText(environment.getProperty(NODE_ID_PROPERTY))) {
+            return;
+        }
+        String strategy = environment.getProperty(STRATEGY_PROPERTY, "interface").toLowerCase(Locale.ROOT);
+        String host = switch (strategy) {
+            case "interface" -> interfaceAddress();
+            case "hostname" -> firstNonBlank(System.getenv("HOSTNAME"), System.getenv("COMPUTERNAME"));
+            case "random" -> null;
+            case "dns" -> dnsAddress();
+            default -> throw new IllegalArgumentException("Unknown " + STRATEGY_PROPERTY + ": " + strategy);
+        };
+        if (host == null) {
+            host = "node-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        // 优先读取 server.port，没有就用默认端口（如8080）
+        String port = environment.getProperty("server.port", "8080");
+        environment.getSystemProperties().put(NODE_ID_PROPERTY, host + ":" + port);
+    }
+
+    /**
+     * 第一个已启用的非回环、非虚拟网卡上的IPv4地址，只读本机网卡信息
+     */
+    private static String interfaceAddress() {
+        try {
+            for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!nic.isUp() || nic.isLoopback() || nic.isVirtual()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(nic.getInetAddresses())) {
+                    if (address instanceof Inet4Address && !address.isLoopbackAddress() && !address.isLinkLocalAddress()) {
+                        return address.getHostAddress();
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+            // 无法读取网卡时退化为随机ID
+        }
+        return null;
+    }
+
+    private static String dnsAddress() {
         try {
-            String ip = InetAddress.getLocalHost().getHostAddress();
-            // 优先读取 server.port，没有就用默认端口（如8080）
-            String port = environment.getProperty("server.port", "8080");
-            String nodeId = ip + ":" + port;
-            environment.getSystemProperties().put("reactor-node.id", nodeId);
+            return InetAddress.getLocalHost().getHostAddress();
         } catch (Exception e) {
             throw new RuntimeException("Failed to generate reactor-node.id", e);
         }
     }
 
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (StringUtils.hasText(value)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
 }
@@ -0,0 +1,359 @@
+package com.duanml.reactorservice.biz.user.cache;
+
+import com.duanml.reactorservice.biz.config.UserCacheProperties;
+import com.duanml.reactorservice.biz.user.entity.User;
+import com.duanml.reactorservice.utils.JacksonUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.user.cache</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 09:50
+ * Description: 用户两级读穿缓存（本地 Caffeine + 共享 Redis）
+ *
+ * 1. 读：本地 -> Redis -> 数据库，逐级回填；本地未命中时同一key并发只加载一次（Caffeine单飞），
+ *    不存在的ID以空值标记短期缓存，防止穿透；
+ * 2. 存储：两级都保存JSON字节，每次命中反序列化出新对象，调用方修改返回值不会污染缓存；
+ *    - ID：Redis key user:cache:id:{generation}:{id}，generation 存于 user:cache:gen；
+ *    - 用户名：Redis hash user:cache:byname，field为用户名，任何写入都整体删除
+ *      （写入方式多为条件更新，无法得知影响了哪些用户名）；
+ * 3. 写：事务提交后（无事务时立即）一次pipeline删除Redis中的key并向 user:cache:invalidate 广播，
+ *    所有节点（含本节点）收到后清理本地缓存；广播丢失时由本地过期时间兜底；
+ *    - 回填带版本校验：每个ID一个版本号 user:cache:ver:{id}（用户名hash为 user:cache:byname:ver），
+ *      失效时先递增版本再删除key；查库前记下版本，回填时Lua脚本比对版本，不一致说明查库期间发生过失效，
+ *      放弃回填，避免查库读到旧值、却在失效之后才写入Redis，使旧值一直留到TTL过期；
+ *    无法确定影响哪些ID的写入（条件更新、批量导入）递增 generation，旧代的ID key不再被读取，由TTL回收；
+ * 4. 统计：本地命中、Redis命中、数据库加载次数与命中率。
+ */
+@Slf4j
+@Component
+public class UserCache implements MessageListener {
+
+    private static final String ID_KEY_PREFIX = "user:cache:id:";
+    private static final String NAME_HASH_KEY = "user:cache:byname";
+    private static final String GEN_KEY = "user:cache:gen";
+    private static final String VER_KEY_PREFIX = "user:cache:ver:";
+    private static final String NAME_VER_KEY = "user:cache:byname:ver";
+    private static final String CHANNEL = "user:cache:invalidate";
+    // 广播消息：ids:1,2,3 失效指定ID与全部用户名；all:{generation} 失效全部并切换到新一代
+    private static final String MSG_IDS = "ids:";
+    private static final String MSG_ALL = "all:";
+    // 空值标记：空字节数组，JacksonUtil 反序列化为 null
+    private static final byte[] NULL_MARKER = new byte[0];
+
+    // 版本未变时回填：KEYS[1]=缓存key，KEYS[2]=版本key，ARGV[1]=值，ARGV[2]=过期毫秒，ARGV[3]=查库前的版本（不存在为空串）
+    private static final DefaultRedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[3] then return 0 end " +
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+            "return 1", Long.class);
+    // 同上，回填用户名hash：KEYS[1]=hash，KEYS[2]=版本key，ARGV[1]=用户名，ARGV[2]=值，ARGV[3]=过期毫秒，ARGV[4]=版本
+    private static final DefaultRedisScript<Long> FILL_NAME_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[4] then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "return 1", Long.class);
+
+    private final RedisTemplate<String, byte[]> bytesRedisTemplate;
+    private final Cache<Long, byte[]> localById;
+    private final Cache<String, byte[]> localByName;
+    private final Duration redisTtl;
+    private final Duration nullTtl;
+    // 当前代，ID key的一部分
+    private volatile long generation;
+
+    // 统计
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public UserCache(RedisTemplate<String, byte[]> bytesRedisTemplate, RedisMessageListenerContainer listenerContainer,
+                     UserCacheProperties properties) {
+        this.bytesRedisTemplate = bytesRedisTemplate;
+        this.localById = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getLocalTtlSeconds()))
+                .build();
+        this.localByName = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getLocalTtlSeconds()))
+                .build();
+        this.redisTtl = Duration.ofSeconds(properties.getRedisTtlSeconds());
+        this.nullTtl = Duration.ofSeconds(properties.getNullTtlSeconds());
+        byte[] gen = readRedis(() -> bytesRedisTemplate.opsForValue().get(GEN_KEY));
+        this.generation = gen != null ? Long.parseLong(new String(gen, StandardCharsets.UTF_8)) : 0L;
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    // ===================== 读 ========================
+
+    /**
+     * 按ID读取
+     * @param id     用户ID
+     * @param loader 数据库加载，返回null表示不存在
+     * @return 用户，不存在时为null
+     */
+    public User getById(Long id, Function<Long, User> loader) {
+        if (id == null) {
+            return null;
+        }
+        byte[] cached = localById.getIfPresent(id);
+        if (cached != null) {
+            localHits.increment();
+        } else {
+            cached = localById.get(id, key -> loadById(key, loader));
+        }
+        return JacksonUtil.fromJson(cached, User.class);
+    }
+
+    /**
+     * 按用户名读取
+     * @param username 用户名
+     * @param loader   数据库加载
+     * @return 用户列表，不会为null
+     */
+    public List<User> getByUsername(String username, Function<String, List<User>> loader) {
+        if (username == null) {
+            return new ArrayList<>();
+        }
+        byte[] cached = localByName.getIfPresent(username);
+        if (cached != null) {
+            localHits.increment();
+        } else {
+            cached = localByName.get(username, key -> loadByName(key, loader));
+        }
+        User[] users = JacksonUtil.fromJson(cached, User[].class);
+        return users != null ? new ArrayList<>(Arrays.asList(users)) : new ArrayList<>();
+    }
+
+    // ===================== 写入失效 ========================
+
+    /**
+     * 指定ID的用户已变更：失效这些ID与全部用户名缓存，事务提交后执行
+     */
+    public void evictIds(Collection<Long> ids) {
+        List<Long> nonNull = ids.stream().filter(id -> id != null).distinct().toList();
+        if (nonNull.isEmpty()) {
+            evictAll();
+            return;
+        }
+        afterCommit(() -> publish(nonNull,
+                MSG_IDS + nonNull.stream().map(String::valueOf).collect(Collectors.joining(","))));
+    }
+
+    /**
+     * 失效全部（无法确定影响哪些ID的写入）：递增generation，各节点清空本地缓存并改读新一代key，
+     * Redis中旧一代的ID key由TTL回收
+     */
+    public void evictAll() {
+        afterCommit(() -> {
+            long next;
+            try {
+                Long incremented = bytesRedisTemplate.opsForValue().increment(GEN_KEY);
+                next = incremented != null ? incremented : generation + 1;
+            } catch (Exception e) {
+                next = generation + 1;
+            }
+            publish(List.of(), MSG_ALL + next);
+        });
+    }
+
+    /**
+     * 失效广播：清理本节点本地缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        invalidations.increment();
+        localByName.invalidateAll();
+        if (body.startsWith(MSG_ALL)) {
+            long next = Long.parseLong(body.substring(MSG_ALL.length()));
+            synchronized (this) {
+                if (next > generation) {
+                    generation = next;
+                }
+            }
+            localById.invalidateAll();
+            return;
+        }
+        if (body.startsWith(MSG_IDS) && body.length() > MSG_IDS.length()) {
+            for (String id : body.substring(MSG_IDS.length()).split(",")) {
+                localById.invalidate(Long.valueOf(id));
+            }
+        }
+    }
+
+    // ===================== 统计 ========================
+
+    public Map<String, Object> stats() {
+        long local = localHits.sum();
+        long redis = redisHits.sum();
+        long db = dbLoads.sum();
+        long total = local + redis + db;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHits", local);
+        stats.put("redisHits", redis);
+        stats.put("dbLoads", db);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (local + redis) / total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("generation", generation);
+        stats.put("localIdSize", localById.estimatedSize());
+        stats.put("localNameSize", localByName.estimatedSize());
+        return stats;
+    }
+
+    // ===================== 实现 ========================
+
+    private byte[] loadById(Long id, Function<Long, User> loader) {
+        String key = idKey(id);
+        byte[] remote = readRedis(() -> bytesRedisTemplate.opsForValue().get(key));
+        if (remote != null) {
+            redisHits.increment();
+            return remote;
+        }
+        String verKey = VER_KEY_PREFIX + id;
+        byte[] version = readVersion(verKey);
+        dbLoads.increment();
+        User user = loader.apply(id);
+        byte[] value = user != null ? JacksonUtil.toJsonBytes(user) : NULL_MARKER;
+        if (version != null) {
+            long ttlMillis = (user != null ? redisTtl : nullTtl).toMillis();
+            writeRedis(() -> bytesRedisTemplate.execute(FILL_SCRIPT, List.of(key, verKey),
+                    value, bytes(String.valueOf(ttlMillis)), version));
+        }
+        return value;
+    }
+
+    private byte[] loadByName(String username, Function<String, List<User>> loader) {
+        byte[] remote = readRedis(() -> (byte[]) bytesRedisTemplate.opsForHash().get(NAME_HASH_KEY, username));
+        if (remote != null) {
+            redisHits.increment();
+            return remote;
+        }
+        byte[] version = readVersion(NAME_VER_KEY);
+        dbLoads.increment();
+        List<User> users = loader.apply(username);
+        byte[] value = JacksonUtil.toJsonBytes(users != null ? users : List.of());
+        if (version != null) {
+            writeRedis(() -> bytesRedisTemplate.execute(FILL_NAME_SCRIPT, List.of(NAME_HASH_KEY, NAME_VER_KEY),
+                    bytes(username), value, bytes(String.valueOf(redisTtl.toMillis())), version));
+        }
+        return value;
+    }
+
+    /**
+     * 递增版本号、删除Redis中的key（含用户名hash）并广播，一次往返；
+     * 先递增版本，查库期间发生失效的回填会因版本不一致而放弃
+     */
+    private void publish(List<Long> ids, String message) {
+        List<byte[]> verKeys = new ArrayList<>(ids.size() + 1);
+        byte[][] keys = new byte[ids.size() + 1][];
+        for (int i = 0; i < ids.size(); i++) {
+            verKeys.add(bytes(VER_KEY_PREFIX + ids.get(i)));
+            keys[i] = bytes(idKey(ids.get(i)));
+        }
+        verKeys.add(bytes(NAME_VER_KEY));
+        keys[ids.size()] = bytes(NAME_HASH_KEY);
+        byte[] channel = bytes(CHANNEL);
+        byte[] body = bytes(message);
+        // 版本key只需活过一次查库，随缓存TTL过期
+        long verTtlMillis = redisTtl.toMillis();
+        try {
+            bytesRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] verKey : verKeys) {
+                    connection.stringCommands().incr(verKey);
+                    connection.keyCommands().pExpire(verKey, verTtlMillis);
+                }
+                connection.keyCommands().unlink(keys);
+                connection.publish(channel, body);
+                return null;
+            });
+        } catch (Exception e) {
+            // Redis不可用时至少保证本节点不读到旧值，其他节点由本地TTL兜底
+            log.warn("用户缓存失效广播失败: {}", e.getMessage());
+            onMessage(new DefaultMessage(channel, body), null);
+        }
+    }
+
+    private String idKey(Long id) {
+        return ID_KEY_PREFIX + generation + ":" + id;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 查库前读取版本号，key不存在时为空串；Redis不可用时返回null，本次不回填
+     */
+    private byte[] readVersion(String verKey) {
+        try {
+            byte[] version = bytesRedisTemplate.opsForValue().get(verKey);
+            return version != null ? version : NULL_MARKER;
+        } catch (Exception e) {
+            log.warn("用户缓存读取版本失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Redis读失败时降级为直接查库
+     */
+    private static byte[] readRedis(Supplier<byte[]> read) {
+        try {
+            return read.get();
+        } catch (Exception e) {
+            log.warn("用户缓存读取Redis失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeRedis(Runnable write) {
+        try {
+            write.run();
+        } catch (Exception e) {
+            log.warn("用户缓存写入Redis失败: {}", e.getMessage());
+        }
+    }
+}
@@ -6,10 +6,12 @@ import com.duanml.reactorservice.biz.user.service.UserService;
 import jakarta.annotation.Resource;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>Title: com.duanml.reactorstudy.biz.user.controller</p>
@@ -26,8 +28,14 @@ public class UserController {
     @Resource
     private UserService userService;
 
+    /**
+     * 传入 id 时按ID查询（走两级缓存），不传时返回示例数据
+     */
     @GetMapping("/getUser")
-    public User getUser() {
+    public User getUser(@RequestParam(value = "id", required = false) Long id) {
+        if (id != null) {
+            return userService.getById(id);
+        }
         List<User> allUsers = userService.getAllUsers();
         User user = new User();
         user.setId(1L);
@@ -39,5 +47,12 @@ public class UserController {
         return user;
     }
 
+    /**
+     * 用户缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return userService.cacheStats();
+    }
 
 }
@@ -20,4 +20,14 @@ public interface UserMapper extends BaseMapper<User> {
 
     List<User> selectByUsername(@Param(value = "username") String username);
 
+    /**
+     * 多行INSERT：一条语句写入整块数据
+     */
+    int insertValues(@Param(value = "users") List<User> users);
+
+    /**
+     * 批量补全手机号：一条 UPDATE ... CASE 语句，只更新手机号为空的行
+     */
+    int updateEmptyPhones(@Param(value = "users") List<User> users);
+
 }
@@ -0,0 +1,66 @@
+package com.duanml.reactorservice.biz.user.service;
+
+/**
+ * <p>Title: com.duanml.reactorservice.biz.user.service</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 10:20
+ * Description: 批量导入参数
+ *
+ * 1. mode：MULTI_ROW_INSERT 多行 INSERT ... VALUES (...),(...)；
+ *          LOAD_DATA 以内存缓冲区作为 LOAD DATA LOCAL INFILE 的数据源，需要 JDBC URL 开启
+ *          allowLoadLocalInfile=true 且服务端 local_infile=ON；
+ * 2. chunkSize：每块行数，一块对应一条SQL；
+ * 3. parallelism：同时在途的块数上限（即同时占用的数据库连接数），不应超过连接池大小。
+ */
+public class BulkIngestOptions {
+
+    public enum Mode {
+        MULTI_ROW_INSERT,
+        LOAD_DATA
+    }
+
+    // 多行INSERT每行6个占位符，MySQL单条语句占位符上限65535
+    public static final int MAX_INSERT_CHUNK_SIZE = 10_000;
+
+    private final Mode mode;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public BulkIngestOptions(Mode mode, int chunkSize, int parallelism) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("chunkSize和parallelism必须大于0");
+        }
+        if (mode == Mode.MULTI_ROW_INSERT && chunkSize > MAX_INSERT_CHUNK_SIZE) {
+            throw new IllegalArgumentException("多行INSERT的chunkSize不能超过" + MAX_INSERT_CHUNK_SIZE + ": " + chunkSize);
+        }
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 默认：多行INSERT，每块2000行，4块并行
+     */
+    public static BulkIngestOptions defaults() {
+        return new BulkIngestOptions(Mode.MULTI_ROW_INSERT, 2000, 4);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkIngestOptions{mode=" + mode + ", chunkSize=" + chunkSize + ", parallelism=" + parallelism + "}";
+    }
+}
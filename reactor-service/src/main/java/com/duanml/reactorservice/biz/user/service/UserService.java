@@ -5,7 +5,10 @@ package com.duanml.reactorservice.biz.user.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.duanml.reactorservice.biz.user.entity.User;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
 
 /**
  * <p>Title: com.duanml.reactorstudy.biz.user.service</p>
@@ -19,5 +22,39 @@ public interface UserService extends IService<User> {
 
     List<User> getAllUsers();
 
+    /**
+     * 按用户名查询（走两级缓存）
+     */
+    List<User> getByUsername(String username);
+
+    /**
+     * 用户缓存统计：各级命中次数与命中率
+     */
+    Map<String, Object> cacheStats();
+
     void insertUserBatch(List<User> users);
+
+    /**
+     * 批量补全手机号：一条语句更新整批，已有手机号的行不更新（幂等），更新后失效这些用户的缓存
+     * @return 实际更新行数
+     */
+    int updateEmptyPhones(List<User> users);
+
+    /**
+     * 高速批量导入：按块切分，多块并行写入，在途块数受 options.parallelism 限制
+     * 迭代器在调用线程上顺序读取，适合文件、游标等外部数据源
+     * @param users   待导入数据
+     * @param options 导入参数
+     * @return 写入行数
+     */
+    long bulkIngest(Iterator<User> users, BulkIngestOptions options);
+
+    /**
+     * 高速批量导入（生成式）：每块的数据在写入线程上由 generator 并行生成，适合造测试数据
+     * @param total     总行数
+     * @param generator 按序号（从0开始）生成一行
+     * @param options   导入参数
+     * @return 写入行数
+     */
+    long bulkIngest(long total, LongFunction<User> generator, BulkIngestOptions options);
 }
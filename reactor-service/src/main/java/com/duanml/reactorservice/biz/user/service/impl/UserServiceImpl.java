@@ -1,17 +1,42 @@
 package com.duanml.reactorservice.biz.user.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-
+import com.duanml.reactorservice.biz.user.cache.UserCache;
 import com.duanml.reactorservice.biz.user.entity.User;
 import com.duanml.reactorservice.biz.user.mapper.UserMapper;
+import com.duanml.reactorservice.biz.user.service.BulkIngestOptions;
 import com.duanml.reactorservice.biz.user.service.UserService;
-import com.duanml.reactorservice.utils.JacksonUtil;
+import com.mysql.cj.jdbc.JdbcStatement;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.io.Serializable;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
 
 /**
  * <p>Title: com.duanml.reactorstudy.biz.user.service.impl</p>
@@ -20,25 +45,270 @@ import java.util.List;
  * User: duanml
  * Date: 2025/7/1 23:06
  * Description: No Description
+ *              读（getById、按用户名查询）走 UserCache 两级缓存，写入后失效缓存并广播到所有节点
  */
 @Slf4j
 @Service
 @Transactional(rollbackFor = Throwable.class)
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
 
+    private static final String LOAD_DATA_SQL = "LOAD DATA LOCAL INFILE 'stream' INTO TABLE user CHARACTER SET utf8mb4"
+            + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'"
+            + " (id, username, password, email, phone, created_at)";
+    private static final DateTimeFormatter DATETIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    @Resource
+    private DataSource dataSource;
+
+    @Resource
+    private UserCache userCache;
+
     @Override
     public List<User> getAllUsers() {
-        List<User> users1 = this.baseMapper.selectByUsername("bob");
-        log.info("直接XML的SQL查询返回=》》》》》》》》》》》: {}", JacksonUtil.toJson(users1));
-        QueryWrapper<User> wrapper = new QueryWrapper<>();
-        wrapper.eq("username", "bob");
-        List<User> users = this.baseMapper.selectList(wrapper);
-        log.error("QueryWrapper查询返回=》》》》》》》》》》》: {}", JacksonUtil.toJson(users));
-        return users;
+        return getByUsername("bob");
+    }
+
+    @Override
+    public List<User> getByUsername(String username) {
+        return userCache.getByUsername(username, this.baseMapper::selectByUsername);
+    }
+
+    @Override
+    public Map<String, Object> cacheStats() {
+        return userCache.stats();
     }
 
     @Override
     public void insertUserBatch(List<User> users) {
         this.saveBatch(users);
     }
+
+    @Override
+    public int updateEmptyPhones(List<User> users) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        int updated = this.baseMapper.updateEmptyPhones(users);
+        if (updated > 0) {
+            userCache.evictIds(users.stream().map(User::getId).toList());
+        }
+        return updated;
+    }
+
+    // ===================== 缓存读写 ========================
+
+    @Override
+    public User getById(Serializable id) {
+        return userCache.getById(id == null ? null : Long.valueOf(id.toString()), key -> super.getById(key));
+    }
+
+    @Override
+    public boolean save(User entity) {
+        boolean saved = super.save(entity);
+        // 插入后ID已回填，清除可能存在的空值标记
+        userCache.evictIds(Collections.singletonList(entity.getId()));
+        return saved;
+    }
+
+    @Override
+    public boolean saveBatch(Collection<User> entityList, int batchSize) {
+        boolean saved = super.saveBatch(entityList, batchSize);
+        userCache.evictIds(entityList.stream().map(User::getId).toList());
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(User entity) {
+        boolean updated = super.updateById(entity);
+        if (updated) {
+            userCache.evictIds(Collections.singletonList(entity.getId()));
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean updateBatchById(Collection<User> entityList, int batchSize) {
+        boolean updated = super.updateBatchById(entityList, batchSize);
+        userCache.evictIds(entityList.stream().map(User::getId).toList());
+        return updated;
+    }
+
+    /**
+     * 条件更新：实体带ID时只失效该ID（调用方须保证条件中限定了同一ID），否则全部失效
+     */
+    @Override
+    public boolean update(User entity, Wrapper<User> updateWrapper) {
+        boolean updated = super.update(entity, updateWrapper);
+        if (updated) {
+            if (entity != null && entity.getId() != null) {
+                userCache.evictIds(Collections.singletonList(entity.getId()));
+            } else {
+                userCache.evictAll();
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean update(Wrapper<User> updateWrapper) {
+        return update(null, updateWrapper);
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) {
+            userCache.evictIds(Collections.singletonList(Long.valueOf(id.toString())));
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean removeByIds(Collection<?> list) {
+        boolean removed = super.removeByIds(list);
+        if (removed) {
+            userCache.evictIds(list.stream()
+                    .map(id -> id instanceof User user ? user.getId() : Long.valueOf(id.toString())).toList());
+        }
+        return removed;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long bulkIngest(Iterator<User> users, BulkIngestOptions options) {
+        long start = System.currentTimeMillis();
+        AtomicLong written = new AtomicLong(0L);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(options.getParallelism());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (users.hasNext() && failure.get() == null) {
+                List<User> chunk = new ArrayList<>(options.getChunkSize());
+                while (chunk.size() < options.getChunkSize() && users.hasNext()) {
+                    chunk.add(users.next());
+                }
+                // 在途块数达到上限时阻塞读取，读取速度自动匹配写库速度
+                inFlight.acquireUninterruptibly();
+                submitChunk(executor, inFlight, () -> chunk, options, written, failure);
+            }
+        }
+        return finish(start, written.get(), failure.get(), options);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long bulkIngest(long total, LongFunction<User> generator, BulkIngestOptions options) {
+        long start = System.currentTimeMillis();
+        AtomicLong written = new AtomicLong(0L);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(options.getParallelism());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long from = 0; from < total && failure.get() == null; from += options.getChunkSize()) {
+                long begin = from;
+                long end = Math.min(total, from + options.getChunkSize());
+                inFlight.acquireUninterruptibly();
+                // 数据在写入线程上生成，生成与写库都并行
+                submitChunk(executor, inFlight, () -> {
+                    List<User> chunk = new ArrayList<>((int) (end - begin));
+                    for (long i = begin; i < end; i++) {
+                        chunk.add(generator.apply(i));
+                    }
+                    return chunk;
+                }, options, written, failure);
+            }
+        }
+        return finish(start, written.get(), failure.get(), options);
+    }
+
+    // ===================== 批量导入实现 ========================
+
+    private void submitChunk(ExecutorService executor, Semaphore inFlight, ChunkSupplier supplier,
+                             BulkIngestOptions options, AtomicLong written, AtomicReference<Throwable> failure) {
+        executor.execute(() -> {
+            try {
+                if (failure.get() != null) {
+                    return; // 已有块失败，剩余块不再写入
+                }
+                List<User> chunk = supplier.get();
+                if (chunk.isEmpty()) {
+                    return;
+                }
+                if (options.getMode() == BulkIngestOptions.Mode.LOAD_DATA) {
+                    written.addAndGet(loadData(chunk));
+                } else {
+                    written.addAndGet(this.baseMapper.insertValues(chunk));
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private long finish(long start, long written, Throwable failure, BulkIngestOptions options) {
+        long cost = Math.max(1, System.currentTimeMillis() - start);
+        // 导入行数可能很多，不逐个失效ID，整体切换到新一代缓存（失败时已写入的部分同样需要失效）
+        if (written > 0) {
+            userCache.evictAll();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("批量导入失败, 已写入 " + written + " 行, " + options, failure);
+        }
+        log.info("批量导入完成: {} 行, 耗时 {} ms, {} 行/秒, {}", written, cost, written * 1000 / cost, options);
+        return written;
+    }
+
+    /**
+     * 把一块数据编码为制表符分隔的内存缓冲区，作为 LOAD DATA LOCAL INFILE 的输入流
+     */
+    private long loadData(List<User> chunk) throws SQLException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(chunk.size() * 96);
+        StringBuilder line = new StringBuilder(128);
+        for (User user : chunk) {
+            line.setLength(0);
+            appendField(line, user.getId() == null ? null : user.getId().toString()).append('\t');
+            appendField(line, user.getUsername()).append('\t');
+            appendField(line, user.getPassword()).append('\t');
+            appendField(line, user.getEmail()).append('\t');
+            appendField(line, user.getPhone()).append('\t');
+            appendField(line, formatDate(user.getCreatedAt())).append('\n');
+            buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+            return statement.executeUpdate(LOAD_DATA_SQL);
+        }
+    }
+
+    /**
+     * 按 LOAD DATA 默认转义规则写入字段，null 写为 \N
+     */
+    private static StringBuilder appendField(StringBuilder line, String value) {
+        if (value == null) {
+            return line.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> line.append("\\\\");
+                case '\t' -> line.append("\\t");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\0' -> line.append("\\0");
+                default -> line.append(c);
+            }
+        }
+        return line;
+    }
+
+    private static String formatDate(Date date) {
+        return date == null ? null : DATETIME_FORMAT.format(date.toInstant());
+    }
+
+    @FunctionalInterface
+    private interface ChunkSupplier {
+        List<User> get();
+    }
 }
@@ -1,9 +1,10 @@
 package com.duanml.reactorservice.example.user.controller;
 
+import com.duanml.reactorservice.biz.config.NodeProperties;
+import com.duanml.reactorservice.biz.config.UserTaskProperties;
 import com.duanml.reactorservice.example.user.service.UserTaskProducerServiceBatch;
 import com.duanml.reactorservice.middleware.reactor.controller.AbstractBatchProducerController;
 import com.duanml.user.UserTask;
-import org.redisson.api.RedissonClient;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,9 +22,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserTaskProducerController extends AbstractBatchProducerController<UserTask> {
 
     public UserTaskProducerController(UserTaskProducerServiceBatch batchProducer,
-                                      RedissonClient redissonClient,
-                                      StringRedisTemplate redisTemplate) {
+                                      StringRedisTemplate redisTemplate,
+                                      NodeProperties nodeProperties,
+                                      UserTaskProperties userTaskProperties) {
 
-        super(batchProducer, redissonClient, redisTemplate);
+        super(batchProducer, redisTemplate, nodeProperties.getId());
+        leaderElection.setScheduleIntervalMillis(userTaskProperties.getProduceScheduleSeconds() * 1000L);
     }
 }
@@ -1,20 +1,31 @@
 package com.duanml.reactorservice.example.user.service;
 
-import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
-import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.duanml.reactorservice.biz.user.entity.User;
 import com.duanml.reactorservice.biz.user.service.UserService;
 import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactorConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.consume.IdempotencyStore;
+import com.duanml.reactorservice.middleware.reactor.consume.ResultSink;
+import com.duanml.reactorservice.middleware.reactor.consume.StagedPipeline;
+import com.duanml.reactorservice.middleware.reactor.log.HotPathLog;
 import com.duanml.reactorservice.utils.JacksonUtil;
 import com.duanml.user.UserTask;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * <p>Title: com.duanml.reactorservice.example.user.service</p>
@@ -29,36 +40,78 @@ import java.util.Random;
 @Transactional(rollbackFor = Throwable.class)
 public class UserTaskConsumeServiceBatch extends AbstractReactorConsumeBatch<UserTask> {
 
+    private static final HotPathLog ALREADY_DONE_LOG = HotPathLog.sampled(log, "user-task.already-done", 1000);
+    private static final HotPathLog TASK_ERROR_LOG = HotPathLog.rateLimited(log, "user-task.error", 20, 10_000L);
+
     @Resource
     private UserService userService;
 
     private final static String QUEUE_KEY = "userTask:batch:queue";
 
-    public UserTaskConsumeServiceBatch(StringRedisTemplate redisTemplate) {
-        super(redisTemplate, QUEUE_KEY);
+    private final ResultSink<User> phoneSink;
+
+    public UserTaskConsumeServiceBatch(StringRedisTemplate redisTemplate, RedisTemplate<String, byte[]> bytesRedisTemplate) {
+        super(redisTemplate, QUEUE_KEY, bytesRedisTemplate);
+        // 已完成ID：本地保留100万个，Redis Set（用户ID为雪花ID，超出位图偏移量上限）保留1天，重复任务不再进入 handleTask
+        setIdempotencyStore(new IdempotencyStore(QUEUE_KEY, 1_000_000L, Duration.ofHours(1),
+                redisTemplate, IdempotencyStore.RedisMode.SET, Duration.ofDays(1)));
+        // 手机号写后汇聚：攒满500条或等待50ms写一次（一条 UPDATE ... CASE），未写出超过5000条时背压
+        this.phoneSink = registerResultSink(new ResultSink<>("user-phone", this::writePhones, 500, 50L, 5_000));
+        // 两阶段流水线：生成手机号（CPU，parallel调度器）-> 写入汇聚，批次写出后任务才确认；
+        // 每个worker最多64个任务在途，8个worker合计512
+        setPipeline(StagedPipeline.<UserTask>builder(QUEUE_KEY)
+                .map("phone", Runtime.getRuntime().availableProcessors(), Schedulers.parallel(), this::generatePhone)
+                .sink("write", phoneSink, 5_000)
+                .build());
+        setAsyncWindow(64);
+    }
+
+    /**
+     * 队列中为打包的用户ID：每批一次查询，只取仍需处理（手机号为空）的用户，已处理的不再进入 handleTask
+     */
+    @Override
+    protected Map<Long, UserTask> resolveTasks(long[] ids) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id")
+                .in("id", Arrays.stream(ids).boxed().toList())
+                .and(w -> w.isNull("phone").or().eq("phone", ""));
+        Map<Long, UserTask> tasks = new HashMap<>(ids.length * 2);
+        for (User user : userService.list(queryWrapper)) {
+            UserTask task = new UserTask();
+            task.setId(user.getId());
+            tasks.put(user.getId(), task);
+        }
+        return tasks;
+    }
+
+    @Override
+    protected String idempotencyKey(UserTask task) {
+        return task.getId() != null ? String.valueOf(task.getId()) : null;
     }
 
     /**
      * 需要幂等消费，必须这样做，避免重复消费
+     * 重复任务大多已被幂等存储过滤；漏过的（本地淘汰、Redis过期）由条件更新兜底：只更新手机号为空的行，
+     * 不再逐条查询整行
+     * 异步窗口>1 时走流水线；同步模式下生成后写入汇聚，等待所在批次写出
      * @param task
      * @throws Exception
      */
     @Override
     protected void handleTask(UserTask task) throws Exception {
-        User serviceById = userService.getById(task.getId());
-        if (StringUtils.isNotBlank(serviceById.getPhone())) {
-            // 如果手机号已存在，跳过处理,已经处理过了不再处理，达到幂等消费的目的
-            log.warn("手机号已存在，跳过处理: {}", serviceById.getId());
-            return;
-        }
-        // 模拟实际耗时，这里睡眠500毫秒
-        Thread.sleep(50);
+        phoneSink.emit(generatePhone(task)).get();
+    }
+
+    /**
+     * 流水线阶段一（CPU）：生成随机手机号
+     */
+    private User generatePhone(UserTask task) {
         // 常见运营商号段（简化，仅列举部分）
         String[] prefixes = {"133", "149", "153", "173", "177", "180", "181", "189", // 电信
                 "130", "131", "132", "145", "155", "156", "166", "175", "176", "185", "186", // 联通
                 "134", "135", "136", "137", "138", "139", "147", "150", "151", "152", "157", "158", "159", "178", "182", "183", "184", "187", "188", "198"}; // 移动
 
-        Random random = new Random();
+        Random random = ThreadLocalRandom.current();
         String prefix = prefixes[random.nextInt(prefixes.length)];
 
         // 生成后8位随机数字
@@ -69,12 +122,22 @@ public class UserTaskConsumeServiceBatch extends AbstractReactorConsumeBatch<Use
         String phone = prefix + suffix;
 
         User user = new User();
+        // ID不参与SET，仅供 UserService 更新后精确失效该用户的缓存
+        user.setId(task.getId());
         user.setPhone(phone);
         user.setCreatedAt(new Date());
+        return user;
+    }
 
-        UpdateWrapper<User> updateWrapper = new UpdateWrapper<>();
-        updateWrapper.eq("id", task.getId());
-        userService.update(user, updateWrapper);
+    /**
+     * 汇聚批量写出：只更新手机号为空的行
+     */
+    private void writePhones(List<User> users) {
+        int updated = userService.updateEmptyPhones(users);
+        if (updated < users.size()) {
+            // 手机号已存在，已经处理过了，达到幂等消费的目的
+            ALREADY_DONE_LOG.warn("{} 个用户手机号已存在，跳过处理", users.size() - updated);
+        }
     }
 
     @Override
@@ -88,11 +151,16 @@ public class UserTaskConsumeServiceBatch extends AbstractReactorConsumeBatch<Use
 
     @Override
     protected void onTaskError(UserTask task, Exception e, int retryCount) {
-        log.error("任务处理失败: {}, 第{}次: {}", JacksonUtil.toJson(task), retryCount, e.getMessage());
+        TASK_ERROR_LOG.error("任务处理失败: {}, 第{}次: {}", task.getId(), retryCount, e.getMessage());
     }
 
     @Override
     protected UserTask deserializeTask(String taskStr) {
         return JacksonUtil.fromJson(taskStr, UserTask.class);
     }
+
+    @Override
+    protected UserTask deserializeTask(byte[] body) {
+        return JacksonUtil.fromJson(body, UserTask.class);
+    }
 }
@@ -2,13 +2,16 @@ package com.duanml.reactorservice.example.user.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.duanml.reactorservice.biz.config.UserTaskProperties;
 import com.duanml.reactorservice.biz.user.entity.User;
 import com.duanml.reactorservice.biz.user.service.UserService;
 import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import com.duanml.reactorservice.middleware.reactor.produce.ChangeWatermark;
 import com.duanml.reactorservice.utils.JacksonUtil;
 import com.duanml.user.UserTask;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -22,6 +25,11 @@ import java.util.stream.Collectors;
  * User: duanml
  * Date: 2025/7/3 20:50
  * Description: 用户批量生产者服务 入队列
+ *
+ * 消费端只用到用户ID，队列中只放打包的ID（每个元素 IDS_PER_ELEMENT 个），实体由消费端批量查询，
+ * 账号、密码等字段不再写入Redis。
+ * 增量模式（user-task.produce-incremental=true 开启，默认全量）：按自增ID水位只取上次之后新增的待处理用户
+ * （键集分页，不用 OFFSET），周期性作业只扫描新增部分；第一次作业（或 /watermark/reset 之后）即全量。
  */
 @Slf4j
 @Service
@@ -38,8 +46,13 @@ public class UserTaskProducerServiceBatch extends AbstractReactorProducerBatch<U
 
     private final static String BLOOM_KEY = "userTask:batch:dedup:bloom";
 
-    public UserTaskProducerServiceBatch(StringRedisTemplate redisTemplate) {
-        super(redisTemplate, QUEUE_KEY, QUEUE_SIZE, PAGE_SIZE, DedupType.BLOOM, BLOOM_KEY);
+    private final static int IDS_PER_ELEMENT = 500;
+
+    public UserTaskProducerServiceBatch(StringRedisTemplate redisTemplate, RedisTemplate<String, byte[]> bytesRedisTemplate,
+                                        UserTaskProperties userTaskProperties) {
+        super(redisTemplate, QUEUE_KEY, QUEUE_SIZE, PAGE_SIZE, DedupType.BLOOM, BLOOM_KEY, bytesRedisTemplate);
+        setPackedIds(IDS_PER_ELEMENT);
+        setIncremental(userTaskProperties.isProduceIncremental());
     }
 
     @Override
@@ -49,7 +62,9 @@ public class UserTaskProducerServiceBatch extends AbstractReactorProducerBatch<U
         // 构造分页对象：MyBatis-Plus 的 Page 默认页码从 1 开始
         int page = offset / limit + 1;
         Page<User> userPage = new Page<>(page, limit);
+        // 只入队ID，只查ID列
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
         queryWrapper.isNull("phone");
         queryWrapper.orderByAsc("id");
 
@@ -57,20 +72,66 @@ public class UserTaskProducerServiceBatch extends AbstractReactorProducerBatch<U
         List<UserTask> collect = userListPage.getRecords().stream().map(user -> {
             UserTask userTask = new UserTask();
             userTask.setId(user.getId());
-            userTask.setUsername(user.getUsername());
-            userTask.setPassword(user.getPassword());
-            userTask.setEmail(user.getEmail());
-            userTask.setCreatedAt(user.getCreatedAt());
             return userTask;
         }).collect(Collectors.toList());
         return collect;
     }
 
+    /**
+     * 水位之后的待处理用户：id > 水位，按id升序取一页，不做 COUNT
+     */
+    @Override
+    protected List<UserTask> fetchChangedBatch(ChangeWatermark after, int limit) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id");
+        queryWrapper.gt("id", after.id);
+        queryWrapper.isNull("phone");
+        queryWrapper.orderByAsc("id");
+
+        List<User> users = userService.page(new Page<>(1, limit, false), queryWrapper).getRecords();
+        return users.stream().map(user -> {
+            UserTask userTask = new UserTask();
+            userTask.setId(user.getId());
+            return userTask;
+        }).collect(Collectors.toList());
+    }
+
+    @Override
+    protected ChangeWatermark watermarkOf(UserTask task) {
+        return ChangeWatermark.ofId(task.getId());
+    }
+
+    /**
+     * 本次增量作业总量：水位之后待处理的用户数
+     */
+    @Override
+    protected long estimateChanged(ChangeWatermark after) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.gt("id", after.id);
+        queryWrapper.isNull("phone");
+        return userService.count(queryWrapper);
+    }
+
+    /**
+     * 本次作业总量：待处理（phone为空）的用户数
+     */
+    @Override
+    protected long estimateTotal() {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.isNull("phone");
+        return userService.count(queryWrapper);
+    }
+
     @Override
     protected String toJson(UserTask task) {
         return JacksonUtil.toJson(task);
     }
 
+    @Override
+    protected byte[] toJsonBytes(UserTask task) {
+        return JacksonUtil.toJsonBytes(task);
+    }
+
     /**
      * 这里返回的key  是用来redis做防止消息重复入队列用的
      * @param task
@@ -81,5 +142,10 @@ public class UserTaskProducerServiceBatch extends AbstractReactorProducerBatch<U
         return String.valueOf(task.getId());
     }
 
+    @Override
+    protected long packedId(UserTask task) {
+        return task.getId();
+    }
+
 
 }
@@ -0,0 +1,446 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.job.JobProgressTracker;
+import com.duanml.reactorservice.middleware.reactor.log.HotPathLog;
+import com.duanml.reactorservice.middleware.reactor.monitor.LatencyHistogram;
+import com.duanml.reactorservice.middleware.reactor.queue.TaskEnvelope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 16:10
+ * Description: 全响应式批量消费基类（AbstractReactorConsumeBatch 的响应式版本）
+ *
+ * 1. 整条消费链路是一个 Flux：ReactiveRedisTemplate 批量 LPOP -> 反序列化 -> flatMap 并发处理；
+ * 2. 背压由下游需求驱动：flatMap 的 concurrency 即同时在途的任务上限，只有在途任务完成才会继续拉取，
+ *    队列中最多多取一批（popBatchSize）暂存在本地；
+ * 3. 队列为空时用定时器延迟 idlePollMillis 再拉取，不占用线程，也不使用 BLPOP 阻塞连接；
+ * 4. 任务处理实现 handleTaskReactive 返回 Mono（如 R2DBC、响应式Redis、WebClient），
+ *    只有阻塞实现时覆盖 handleTask 即可，默认卸载到有界的阻塞线程池（blockingThreads）执行；
+ * 5. 重试、超时、监控计数、作业进度与 AbstractReactorConsumeBatch 保持一致；
+ * 6. 停止时不再拉取新任务，等待已拉取的任务处理完（最长 stopTimeoutMillis）；
+ *    停止期间失败、超时后被取消以及尚未开始的任务不计失败，全部放回队列。
+ *
+ * 队列数据格式与 RedisListQueueBackend 相同（含可选的任务信封 TaskEnvelope），可与同步版本的生产端/消费端混用；
+ * 信封任务的过期丢弃、排队时长统计与同步版本一致。
+ *
+ * @param <T> 任务类型
+ */
+@Slf4j
+public abstract class AbstractReactiveConsumeBatch<T> {
+
+    private static final HotPathLog DESERIALIZE_LOG = HotPathLog.rateLimited(log, "reactive-consume.deserialize", 10, 10_000L);
+    private static final HotPathLog RETRY_LOG = HotPathLog.rateLimited(log, "reactive-consume.retry", 20, 10_000L);
+    private static final HotPathLog FAILED_LOG = HotPathLog.rateLimited(log, "reactive-consume.failed", 10, 10_000L);
+    private static final HotPathLog POP_ERROR_LOG = HotPathLog.rateLimited(log, "reactive-consume.pop", 1, 10_000L);
+    private static final int LOG_TASK_MAX_LENGTH = 256;
+
+    protected final ReactiveRedisTemplate<String, byte[]> reactiveTemplate;
+    protected final String queueKey;
+    // 作业进度跟踪（集群聚合），无Redis时为null
+    protected final JobProgressTracker jobTracker;
+
+    // 任务最大重试次数
+    protected volatile int maxRetry = 2;
+    // 任务处理超时时间，0为不限
+    protected volatile long taskTimeoutMillis = 0L;
+    // 每次批量出队条数
+    protected volatile int popBatchSize = 100;
+    // 队列为空时再次拉取的间隔
+    protected volatile long idlePollMillis = 200L;
+    // 停止时等待在途任务完成的最长时间
+    protected volatile long stopTimeoutMillis = 30_000L;
+    // 阻塞处理（handleTask）卸载线程数上限
+    protected final int blockingThreads;
+
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private final AtomicInteger concurrency = new AtomicInteger(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final Scheduler blockingScheduler;
+    private volatile Disposable subscription;
+    private volatile CountDownLatch terminated = new CountDownLatch(0);
+    // 已出队、尚未得出结果的任务（按引用区分），停止时放回队列
+    private final Set<byte[]> held = ConcurrentHashMap.newKeySet();
+
+    // 监控指标
+    private final AtomicInteger completed = new AtomicInteger(0); // 完成数
+    private final AtomicInteger failed = new AtomicInteger(0);    // 失败数
+    private final AtomicInteger retried = new AtomicInteger(0);   // 重试数
+    private final AtomicInteger discarded = new AtomicInteger(0); // 反序列化丢弃数
+    private final AtomicInteger expired = new AtomicInteger(0);   // 超过截止时间的丢弃数
+    // 信封任务从入队到出队的排队时长
+    private final LatencyHistogram queueWaitLatency = new LatencyHistogram();
+
+    /**
+     * 构造方法
+     * @param reactiveTemplate 字节值响应式模板
+     * @param redisTemplate    用于作业进度统计，可为null
+     * @param queueKey         队列key
+     * @param blockingThreads  阻塞处理卸载线程数上限
+     */
+    public AbstractReactiveConsumeBatch(ReactiveRedisTemplate<String, byte[]> reactiveTemplate,
+                                        StringRedisTemplate redisTemplate, String queueKey, int blockingThreads) {
+        this.reactiveTemplate = reactiveTemplate;
+        this.queueKey = queueKey;
+        this.blockingThreads = blockingThreads;
+        this.jobTracker = redisTemplate != null ? new JobProgressTracker(redisTemplate, queueKey) : null;
+        if (!overrides("handleTaskReactive", Object.class) && !overrides("handleTask", Object.class)) {
+            throw new IllegalStateException("须覆盖 handleTaskReactive 或 handleTask: " + getClass().getName());
+        }
+        this.blockingScheduler = Schedulers.newBoundedElastic(blockingThreads, Integer.MAX_VALUE,
+                "reactive-consume-" + queueKey, 60, true);
+    }
+
+    /**
+     * 启动响应式消费
+     * 会先调用stop()，保证不会重复启动
+     * @param concurrency 同时在途的任务数上限
+     */
+    public synchronized void start(int concurrency) {
+        stop();
+        this.concurrency.set(concurrency);
+        completed.set(0);
+        failed.set(0);
+        retried.set(0);
+        discarded.set(0);
+        expired.set(0);
+        isRunning.set(true);
+        CountDownLatch latch = new CountDownLatch(1);
+        terminated = latch;
+        subscription = pipeline(concurrency)
+                .doFinally(signal -> latch.countDown())
+                .subscribe(null, e -> log.error("响应式消费链路异常终止: {}", e.getMessage(), e));
+        log.info("响应式批处理启动, queue={}, concurrency={}, blockingThreads={}", queueKey, concurrency, blockingThreads);
+    }
+
+    /**
+     * 优雅停止：不再拉取新任务，等待已拉取的任务处理完成
+     */
+    public synchronized void stop() {
+        if (!isRunning.compareAndSet(true, false)) {
+            return;
+        }
+        log.info("响应式批处理停止中，等待 {} 个在途任务...", inFlight.get());
+        try {
+            if (!terminated.await(stopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("响应式批处理停止超时，强制取消，在途任务数: {}", inFlight.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+        }
+        subscription = null;
+        requeueHeld();
+        onFinish();
+        log.info("响应式批处理已停止");
+    }
+
+    /**
+     * 停止并释放后台资源（阻塞卸载线程池、作业进度刷新线程），之后不能再启动；应用关闭时调用
+     */
+    public synchronized void shutdown() {
+        stop();
+        blockingScheduler.dispose();
+        if (jobTracker != null) {
+            jobTracker.shutdown();
+        }
+    }
+
+    /**
+     * 未得出结果的任务放回队头，信封任务投递次数加1
+     */
+    private void requeueHeld() {
+        if (held.isEmpty()) {
+            return;
+        }
+        List<byte[]> bodies = new ArrayList<>(held.size());
+        for (byte[] body : held) {
+            bodies.add(TaskEnvelope.requeued(body));
+        }
+        held.clear();
+        try {
+            reactiveTemplate.opsForList().leftPushAll(queueKey, bodies).block(Duration.ofSeconds(10));
+            log.info("响应式批处理停止，{} 个未完成任务已放回队列", bodies.size());
+        } catch (Exception e) {
+            log.error("响应式批处理放回 {} 个未完成任务失败: {}", bodies.size(), e.getMessage(), e);
+        }
+    }
+
+    // ===================== 消费链路 ========================
+
+    private Flux<Void> pipeline(int concurrency) {
+        // 每次订阅拉取一批，处理方有需求时才会重新订阅；停止后不再重复
+        Flux<byte[]> source = Mono.defer(this::popBatch)
+                .repeat(isRunning::get)
+                .flatMapIterable(Function.identity(), 1);
+        return source.flatMap(this::processTask, concurrency);
+    }
+
+    /**
+     * 拉取一批任务，队列为空时延迟后返回空批
+     */
+    private Mono<List<byte[]>> popBatch() {
+        return reactiveTemplate.opsForList().leftPop(queueKey, popBatchSize)
+                .collectList()
+                .doOnNext(held::addAll)
+                .onErrorResume(e -> {
+                    POP_ERROR_LOG.warn("响应式批处理拉取队列 {} 失败: {}", queueKey, e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .flatMap(batch -> batch.isEmpty()
+                        ? Mono.delay(Duration.ofMillis(idlePollMillis)).thenReturn(batch)
+                        : Mono.just(batch));
+    }
+
+    /**
+     * 单个任务：反序列化、处理、超时、重试，任何结果都不向链路传播错误
+     */
+    private Mono<Void> processTask(byte[] body) {
+        T task;
+        try {
+            TaskEnvelope envelope = TaskEnvelope.parse(body);
+            if (envelope == null) {
+                task = deserializeTask(body);
+            } else {
+                long now = System.currentTimeMillis();
+                queueWaitLatency.record(TimeUnit.MILLISECONDS.toNanos(envelope.queueWaitMillis(now)));
+                if (envelope.isExpired(now)) {
+                    expired.incrementAndGet();
+                    if (jobTracker != null) {
+                        jobTracker.recordFailed(1);
+                    }
+                    held.remove(body);
+                    onTaskExpired(new String(body, StandardCharsets.UTF_8), envelope);
+                    return Mono.empty();
+                }
+                task = deserializeTask(envelope.body);
+            }
+        } catch (Exception ex) {
+            String taskStr = new String(body, StandardCharsets.UTF_8);
+            DESERIALIZE_LOG.error("响应式任务反序列化失败: {}, 任务: {}", ex.getMessage(),
+                    HotPathLog.abbreviate(taskStr, LOG_TASK_MAX_LENGTH), ex);
+            discarded.incrementAndGet();
+            if (jobTracker != null) {
+                jobTracker.recordFailed(1);
+            }
+            held.remove(body);
+            onTaskDiscarded(taskStr, ex);
+            return Mono.empty();
+        }
+
+        Mono<Void> attempt = Mono.defer(() -> handleTaskReactive(task));
+        if (taskTimeoutMillis > 0) {
+            attempt = attempt.timeout(Duration.ofMillis(taskTimeoutMillis));
+        }
+        return attempt
+                .retryWhen(Retry.fixedDelay(maxRetry, Duration.ofMillis(200))
+                        .filter(e -> isRunning.get())
+                        .doBeforeRetry(signal -> {
+                            int retryCount = (int) signal.totalRetries() + 1;
+                            retried.incrementAndGet();
+                            onTaskError(task, toException(signal.failure()), retryCount);
+                            RETRY_LOG.warn("响应式任务 {} 处理异常，第{}次: {}",
+                                    HotPathLog.abbreviate(String.valueOf(task), LOG_TASK_MAX_LENGTH),
+                                    retryCount, signal.failure().getMessage());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .doOnSuccess(ignored -> {
+                    held.remove(body);
+                    completed.incrementAndGet();
+                    if (jobTracker != null) {
+                        jobTracker.recordConsumed(1);
+                    }
+                })
+                .onErrorResume(e -> {
+                    if (!isRunning.get()) {
+                        // 停止期间失败：保留在held中，由stop放回队列，不计失败
+                        return Mono.empty();
+                    }
+                    held.remove(body);
+                    FAILED_LOG.error("响应式任务最终失败: {}",
+                            HotPathLog.abbreviate(String.valueOf(task), LOG_TASK_MAX_LENGTH), e);
+                    failed.incrementAndGet();
+                    if (jobTracker != null) {
+                        jobTracker.recordFailed(1);
+                    }
+                    onTaskFailed(task, toException(e));
+                    return Mono.empty();
+                })
+                .doOnSubscribe(s -> inFlight.incrementAndGet())
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private static Exception toException(Throwable e) {
+        return e instanceof Exception ex ? ex : new RuntimeException(e);
+    }
+
+    // ===================== 配置及监控相关 ========================
+
+    /** 设置最大重试次数 */
+    public void setMaxRetry(int maxRetry) {
+        this.maxRetry = maxRetry;
+    }
+
+    /** 设置单任务超时时间，单位ms */
+    public void setTaskTimeoutMillis(long taskTimeoutMillis) {
+        this.taskTimeoutMillis = taskTimeoutMillis;
+    }
+
+    /** 设置每次批量出队条数 */
+    public void setPopBatchSize(int popBatchSize) {
+        this.popBatchSize = popBatchSize;
+    }
+
+    /** 设置队列为空时的拉取间隔，单位ms */
+    public void setIdlePollMillis(long idlePollMillis) {
+        this.idlePollMillis = idlePollMillis;
+    }
+
+    /** 设置停止时等待在途任务的最长时间，单位ms */
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getRetried() {
+        return retried.get();
+    }
+
+    public int getDiscarded() {
+        return discarded.get();
+    }
+
+    public int getExpired() {
+        return expired.get();
+    }
+
+    /** 信封任务排队时长（入队到出队）分布，非信封任务不计入 */
+    public LatencyHistogram getQueueWaitLatency() {
+        return queueWaitLatency;
+    }
+
+    /** 当前在途任务数 */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** 在途任务上限 */
+    public int getConcurrency() {
+        return concurrency.get();
+    }
+
+    public boolean isRunning() {
+        return isRunning.get();
+    }
+
+    /** 当前作业的集群进度，无作业返回null */
+    public JobProgressTracker.JobProgress getJobProgress() {
+        return jobTracker != null ? jobTracker.progress() : null;
+    }
+
+    // =================== 子类需实现/可扩展 ===================
+
+    /**
+     * 任务处理（响应式），返回的 Mono 完成即成功，出错即失败
+     * 默认把阻塞的 handleTask 卸载到有界线程池执行
+     */
+    protected Mono<Void> handleTaskReactive(T task) {
+        return offload(() -> handleTask(task));
+    }
+
+    /**
+     * 把阻塞调用（如JDBC、MyBatis）卸载到有界阻塞线程池，不占用事件循环线程
+     */
+    protected Mono<Void> offload(BlockingCall call) {
+        return Mono.<Void>fromRunnable(() -> {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }).subscribeOn(blockingScheduler);
+    }
+
+    /**
+     * 任务处理（阻塞），未覆盖 handleTaskReactive 时必须实现；两者都未覆盖时构造即抛出 IllegalStateException
+     */
+    protected void handleTask(T task) throws Exception {
+        throw new IllegalStateException("未实现 handleTask: " + getClass().getName());
+    }
+
+    /**
+     * 子类（含匿名类）是否覆盖了基类的钩子方法
+     */
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(getClass(), name, parameterTypes);
+        return method != null && method.getDeclaringClass() != AbstractReactiveConsumeBatch.class;
+    }
+
+    /** 任务反序列化，必须实现 */
+    protected abstract T deserializeTask(byte[] body);
+
+    /** 可选：消费停止时钩子 */
+    protected void onFinish() {
+    }
+
+    /** 可选：单任务处理出错时钩子 */
+    protected void onTaskError(T task, Exception e, int retryCount) {
+    }
+
+    /** 可选：任务最终失败时钩子 */
+    protected void onTaskFailed(T task, Exception e) {
+    }
+
+    /** 可选：反序列化失败丢弃钩子 */
+    protected void onTaskDiscarded(String rawTask, Exception e) {
+    }
+
+    /** 可选：任务超过截止时间被丢弃时钩子，rawTask 为含信封头部的原始消息 */
+    protected void onTaskExpired(String rawTask, TaskEnvelope envelope) {
+    }
+
+    /**
+     * 可抛出受检异常的阻塞调用
+     */
+    @FunctionalInterface
+    protected interface BlockingCall {
+        void run() throws Exception;
+    }
+}
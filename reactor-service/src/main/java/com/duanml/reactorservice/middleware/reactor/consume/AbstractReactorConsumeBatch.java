@@ -1,29 +1,77 @@
 package com.duanml.reactorservice.middleware.reactor.consume;
 
+import com.duanml.reactorservice.middleware.reactor.job.JobProgressTracker;
+import com.duanml.reactorservice.middleware.reactor.log.HotPathLog;
+import com.duanml.reactorservice.middleware.reactor.monitor.LatencyHistogram;
+import com.duanml.reactorservice.middleware.reactor.queue.PackedIds;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueMessage;
+import com.duanml.reactorservice.middleware.reactor.queue.RedisListQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.TaskEnvelope;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.ReflectionUtils;
 import reactor.core.Disposable;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
-import java.util.Collections;
-import java.util.Set;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 通用Reactor并发批处理抽象基类
  * ================================================
- * 1. 支持分布式场景下多线程批量消费Redis队列
+ * 1. 支持分布式场景下多线程批量消费队列（默认Redis LIST，可通过QueueBackend替换）
  * 2. 支持worker动态调整
  * 3. 支持优雅停机
  * 4. 内置简单监控
+ * 5. 批量出队、批量确认，停机时未处理的任务放回队列
+ * 6. 可注册到 WeightedConsumePool，由多队列共享的线程池驱动（startShared）
+ * 7. 字节队列（QueueBackend.nativeBytes）出队的消息直接交给 deserializeTask(byte[])，不经过String
+ * 8. 异步处理：asyncWindow>1 时改为调用 handleTaskAsync，每个worker最多同时有 asyncWindow 个任务在途，
+ *    按出队顺序确认，重试在专用的重试调度器上延迟执行，不占用worker线程和公共ForkJoinPool；
+ *    超时的尝试其future被取消（流水线中尚未开始的阶段不再执行），已在执行且不响应取消的处理可能与重试重叠，
+ *    与同步模式中断超时线程相同，业务处理须保持幂等
+ * 9. 幂等过滤：设置 IdempotencyStore 并实现 idempotencyKey 后，每批先反序列化并批量查询已完成ID，
+ *    重复任务直接确认、不进入 handleTask，成功的任务记入存储
+ * 10. 停机：唤醒阻塞中的出队，等待在途任务最长 stopTimeoutMillis，超时后中断worker；
+ *    停机期间失败或未开始的任务不计失败，全部放回队列，滚动发布不丢任务
+ * 11. 任务信封（TaskEnvelope，生产端 setEnvelopeEnabled 开启）：出队时解包，超过截止时间的任务不做任何处理，
+ *    计入过期数并回调 onTaskExpired；入队到出队的排队时长单独统计（getQueueWaitLatency），与处理耗时分开；
+ *    放回队列的信封任务投递次数加1
+ * 12. 打包ID（PackedIds，生产端 setPackedIds 开启）：出队后把每个元素拆成单ID任务，每批未判重、未过期的ID
+ *    一次交给 resolveTasks 批量查出实体，查不到的视为已完成（计入重复数）；停机时未处理的ID逐个放回队列
+ * 13. 多阶段流水线（StagedPipeline，setPipeline 设置）：异步模式下任务交给流水线，CPU与I/O阶段各自的
+ *    调度器、并发度、批量和缓冲，分别打满；重试、超时、确认与 handleTaskAsync 相同
+ * 14. 写后结果汇聚（ResultSink，registerResultSink 登记）：处理结果攒批写出，异步模式下任务在结果写出后才确认；
+ *    优雅停机时等待剩余结果写出，shutdown 时关闭刷新线程
  *
  * @param <T> 任务类型，如订单、消息等
  */
 @Slf4j
 public abstract class AbstractReactorConsumeBatch<T> {
+    // 热点路径日志：按调用点限流，被抑制的条数定期汇总
+    private static final HotPathLog IDLE_LOG = HotPathLog.rateLimited(log, "consume.idle", 1, 30_000L);
+    private static final HotPathLog DESERIALIZE_LOG = HotPathLog.rateLimited(log, "consume.deserialize", 10, 10_000L);
+    private static final HotPathLog RETRY_LOG = HotPathLog.rateLimited(log, "consume.retry", 20, 10_000L);
+    private static final HotPathLog FAILED_LOG = HotPathLog.rateLimited(log, "consume.failed", 10, 10_000L);
+    // 日志中任务原文的最大长度
+    private static final int LOG_TASK_MAX_LENGTH = 256;
+
     // 当前worker数量（线程数），可动态调整
     private final AtomicInteger workerCount = new AtomicInteger(8);
 
@@ -33,23 +81,68 @@ public abstract class AbstractReactorConsumeBatch<T> {
     // Reactor调度器，适合I/O密集型任务调度
     private final Scheduler scheduler = Schedulers.boundedElastic();
 
-    // 记录所有worker的句柄，用于停止和管理
-    private final Set<Disposable> workerHandles = Collections.synchronizedSet(new java.util.HashSet<>());
+    // 存活的自有worker：编号 -> 句柄，worker退出时移除自己；增删及退出判断均持有 workerLock
+    private final Map<Integer, WorkerSlot> workers = new HashMap<>();
+    private final Object workerLock = new Object();
+    // 共享线程池拉取时每个队列元素平均拆出的任务数（打包ID），据此缩小出队元素数，使一次授权的任务数接近额度
+    private volatile int drainExpansion = 1;
 
     // 监控指标
     private final AtomicInteger completed = new AtomicInteger(0); // 完成数
     private final AtomicInteger failed = new AtomicInteger(0);    // 失败数
     private final AtomicInteger retried = new AtomicInteger(0);   // 重试数
     private final AtomicInteger discarded = new AtomicInteger(0); // 反序列化丢弃数
+    private final AtomicInteger duplicates = new AtomicInteger(0); // 幂等过滤的重复数
+    private final AtomicInteger expired = new AtomicInteger(0);    // 超过截止时间的丢弃数
+    // 单任务处理耗时（含重试），由指标推送周期取走
+    private final LatencyHistogram taskLatency = new LatencyHistogram();
+    // 信封任务从入队到出队的排队时长
+    private final LatencyHistogram queueWaitLatency = new LatencyHistogram();
 
     // Redis队列
     protected final StringRedisTemplate redisTemplate;
     protected final String queueKey;
+    // 实际使用的队列实现
+    protected final QueueBackend queueBackend;
+    // 作业进度跟踪（集群聚合），无Redis时为null
+    protected final JobProgressTracker jobTracker;
 
     // 任务最大重试次数
     protected volatile int maxRetry = 2;
     // 任务处理超时时间，0为不限
     protected volatile long taskTimeoutMillis = 0L;
+    // 每次批量出队条数
+    protected volatile int popBatchSize = 10;
+    // 队列为空时出队阻塞时长
+    protected volatile long popTimeoutMillis = 2000L;
+    // 幂等存储，null为不做幂等过滤
+    protected volatile IdempotencyStore idempotencyStore;
+    // 每个worker的异步在途窗口，<=1 为同步处理
+    protected volatile int asyncWindow = 1;
+    // 多阶段流水线，null为不使用；非null时异步模式的任务交给流水线
+    protected volatile StagedPipeline<T> pipeline;
+    // 已登记的结果汇聚，停机时刷新
+    private final List<ResultSink<?>> resultSinks = new CopyOnWriteArrayList<>();
+    // 停机时等待异步在途任务完成的最长时间
+    protected volatile long asyncDrainTimeoutMillis = 30_000L;
+    // 停机时等待worker退出的最长时间，超时后中断worker线程
+    protected volatile long stopTimeoutMillis = 30_000L;
+    // 中断worker后再等待其放回任务的时间
+    private static final long STOP_INTERRUPT_GRACE_MILLIS = 5_000L;
+
+    // 异步在途任务数（所有worker合计）
+    private final AtomicInteger asyncInFlight = new AtomicInteger(0);
+    // 批量解码结果中的占位：反序列化失败（已计入丢弃）、幂等过滤的重复任务、已过截止时间
+    private static final Object DISCARDED = new Object();
+    private static final Object DUPLICATE = new Object();
+    private static final Object EXPIRED = new Object();
+    // 异步模式重试间隔
+    private static final long RETRY_DELAY_MILLIS = 200L;
+    // 异步模式的重试与超时调度器：重试可能在其线程上执行阻塞的 handleTask，shutdown 时释放
+    private final Scheduler retryScheduler;
+
+    // 子类是否实现了 resolveTasks（能否处理打包ID任务）
+    private final boolean resolvesPackedIds;
 
     // 当前活跃worker数
     private final AtomicInteger activeWorkers = new AtomicInteger(0);
@@ -61,8 +154,34 @@ public abstract class AbstractReactorConsumeBatch<T> {
      * @param queueKey 队列key
      */
     public AbstractReactorConsumeBatch(StringRedisTemplate redisTemplate, String queueKey) {
+        this(redisTemplate, queueKey, new RedisListQueueBackend(redisTemplate, queueKey));
+    }
+
+    /**
+     * 构造方法（字节模式Redis LIST）
+     * @param redisTemplate Redis操作模板
+     * @param queueKey 队列key
+     * @param bytesTemplate 字节值模板，队列读写不经过String
+     */
+    public AbstractReactorConsumeBatch(StringRedisTemplate redisTemplate, String queueKey,
+                                       RedisTemplate<String, byte[]> bytesTemplate) {
+        this(redisTemplate, queueKey, new RedisListQueueBackend(redisTemplate, queueKey, bytesTemplate));
+    }
+
+    /**
+     * 构造方法（自定义队列实现）
+     * @param redisTemplate Redis操作模板
+     * @param queueKey 队列key
+     * @param queueBackend 队列实现，如Redis Stream、JVM内环形队列
+     */
+    public AbstractReactorConsumeBatch(StringRedisTemplate redisTemplate, String queueKey, QueueBackend queueBackend) {
         this.redisTemplate = redisTemplate;
         this.queueKey = queueKey;
+        this.queueBackend = queueBackend;
+        this.jobTracker = redisTemplate != null ? new JobProgressTracker(redisTemplate, queueKey) : null;
+        this.retryScheduler = Schedulers.newBoundedElastic(Math.max(4, Runtime.getRuntime().availableProcessors()),
+                Integer.MAX_VALUE, "consume-retry-" + queueKey, 60, true);
+        this.resolvesPackedIds = overrides("resolveTasks", long[].class);
     }
 
     /**
@@ -71,6 +190,7 @@ public abstract class AbstractReactorConsumeBatch<T> {
      * @param workerNum 启动worker线程数
      */
     public synchronized void start(int workerNum) {
+        checkTaskHandler();
         stop(); // 先停再启，防止重复启动
         workerCount.set(workerNum);
         isRunning.set(true);
@@ -78,154 +198,809 @@ public abstract class AbstractReactorConsumeBatch<T> {
         failed.set(0);
         retried.set(0);
         discarded.set(0);
-        for (int i = 0; i < workerCount.get(); i++) {
-            Disposable handle = scheduler.schedule(workerRunnable(i + 1));
-            workerHandles.add(handle);
+        duplicates.set(0);
+        expired.set(0);
+        synchronized (workerLock) {
+            for (int i = 1; i <= workerNum; i++) {
+                spawnWorker(i);
+            }
         }
         log.info("分布式批处理启动, workerNum={}", workerNum);
     }
 
     /**
-     * 优雅停机：通知所有worker自然退出，并等待全部退出
+     * 以共享线程池模式启动：只标记为运行中，不创建自有worker，
+     * 任务由 WeightedConsumePool 调用 drain 拉取处理；停机仍调用 stop()
+     */
+    public synchronized void startShared() {
+        checkTaskHandler();
+        stop();
+        workerCount.set(0);
+        isRunning.set(true);
+        completed.set(0);
+        failed.set(0);
+        retried.set(0);
+        discarded.set(0);
+        duplicates.set(0);
+        expired.set(0);
+        log.info("分布式批处理以共享线程池模式启动, queue={}", queueBackend.name());
+    }
+
+    /**
+     * 启动前校验任务处理钩子：同步模式须覆盖 handleTask，异步模式须覆盖 handleTask、handleTaskAsync 之一或设置流水线
+     */
+    private void checkTaskHandler() {
+        if (overrides("handleTask", Object.class)) {
+            return;
+        }
+        if (asyncWindow <= 1) {
+            throw new IllegalStateException("同步模式（asyncWindow<=1）须覆盖 handleTask: " + getClass().getName());
+        }
+        if (pipeline == null && !overrides("handleTaskAsync", Object.class)) {
+            throw new IllegalStateException("须覆盖 handleTask、handleTaskAsync 之一或设置流水线: " + getClass().getName());
+        }
+    }
+
+    /**
+     * 子类（含匿名类）是否覆盖了基类的钩子方法
+     */
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(getClass(), name, parameterTypes);
+        return method != null && method.getDeclaringClass() != AbstractReactorConsumeBatch.class;
+    }
+
+    /**
+     * 优雅停机：唤醒阻塞在出队上的worker，等待在途任务处理完并退出；
+     * 超过 stopTimeoutMillis 仍未退出的worker被中断，其持有的任务放回队列
      */
     public void stop() {
         if (!isRunning.compareAndSet(true, false)) {
             return; // 已经停止
         }
+        long start = System.currentTimeMillis();
         log.info("分布式批处理优雅停机中，通知worker退出...");
+        try {
+            queueBackend.wakeup();
+        } catch (Exception e) {
+            log.warn("唤醒阻塞出队失败，worker将在出队超时后退出: {}", e.getMessage());
+        }
 
-        // 等待所有worker自然退出
+        // 等待所有worker退出，超时则中断
+        if (!awaitWorkers(stopTimeoutMillis)) {
+            boolean ownWorkers;
+            synchronized (workerLock) {
+                ownWorkers = !workers.isEmpty();
+            }
+            if (ownWorkers) {
+                log.warn("等待worker退出超时({}ms)，中断 {} 个仍在处理的worker", stopTimeoutMillis, activeWorkers.get());
+                disposeWorkers();
+                if (!awaitWorkers(STOP_INTERRUPT_GRACE_MILLIS)) {
+                    log.error("{} 个worker中断后仍未退出", activeWorkers.get());
+                }
+            } else {
+                // 共享线程池模式：处理中的是线程池的worker，由 WeightedConsumePool.stop() 超时后中断
+                log.warn("等待共享线程池处理超时({}ms)，{} 个任务批次仍在处理", stopTimeoutMillis, activeWorkers.get());
+            }
+        }
+        // 清理worker句柄
+        disposeWorkers();
+        synchronized (workerLock) {
+            workers.clear();
+        }
+        for (ResultSink<?> sink : resultSinks) {
+            if (!sink.flush(stopTimeoutMillis)) {
+                log.warn("结果汇聚 {} 停机时未能写出全部结果，剩余 {} 条", sink.getName(), sink.getPending());
+            }
+        }
+        if (idempotencyStore != null) {
+            idempotencyStore.flush();
+        }
+        onFinish();
+        log.info("分布式批处理已优雅停止，耗时 {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 停机并释放后台资源（作业进度刷新线程、流水线调度器），之后不能再启动；应用关闭时调用
+     */
+    public void shutdown() {
+        stop();
+        StagedPipeline<T> current = pipeline;
+        if (current != null) {
+            current.dispose();
+        }
+        for (ResultSink<?> sink : resultSinks) {
+            sink.close(stopTimeoutMillis);
+        }
+        retryScheduler.dispose();
+        if (jobTracker != null) {
+            jobTracker.shutdown();
+        }
+    }
+
+    /**
+     * 等待活跃worker数归零
+     * @return 是否在超时前全部退出
+     */
+    private boolean awaitWorkers(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
         synchronized (shutdownLock) {
             while (activeWorkers.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
                 try {
-                    shutdownLock.wait(200);
-                } catch (InterruptedException ignored) {
+                    shutdownLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return activeWorkers.get() == 0;
                 }
             }
         }
-        // 清理worker句柄
-        workerHandles.forEach(Disposable::dispose);
-        workerHandles.clear();
-        onFinish();
-        log.info("分布式批处理已优雅停止");
+        return true;
     }
 
     /**
-     * 动态调整worker线程数
+     * 动态调整worker线程数（运行中生效）
+     * 减少时编号大于新数量的worker处理完手头一批后自行退出；增加时补齐 1..newCount 中不存活的编号，
+     * 尚未退出的同编号worker继续运行，不会重复创建
      * @param newCount 新线程总数
      */
     public synchronized void adjustWorkerCount(int newCount) {
-        int oldCount = workerCount.get();
-        if (newCount == oldCount) return;
-        log.info("调整worker数量：{} -> {}", oldCount, newCount);
-        if (newCount > oldCount) {
-            // 增加新worker
-            for (int i = oldCount; i < newCount; i++) {
-                Disposable handle = scheduler.schedule(workerRunnable(i + 1));
-                workerHandles.add(handle);
+        if (newCount < 0) {
+            throw new IllegalArgumentException("worker数量不能小于0: " + newCount);
+        }
+        synchronized (workerLock) {
+            int oldCount = workerCount.getAndSet(newCount);
+            if (newCount == oldCount) return;
+            log.info("调整worker数量：{} -> {}", oldCount, newCount);
+            if (!isRunning.get()) {
+                return;
+            }
+            for (int i = 1; i <= newCount; i++) {
+                if (!workers.containsKey(i)) {
+                    spawnWorker(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * 登记并调度一个worker，调用方须持有 workerLock
+     */
+    private void spawnWorker(int workerId) {
+        WorkerSlot slot = new WorkerSlot();
+        workers.put(workerId, slot);
+        slot.handle = scheduler.schedule(workerRunnable(workerId, slot));
+    }
+
+    /**
+     * 判断worker是否应退出，应退出时同时注销；与 adjustWorkerCount 互斥，
+     * 避免“已决定退出但仍登记为存活”导致增加时漏补该编号
+     */
+    private boolean retireWorker(int workerId, WorkerSlot slot) {
+        synchronized (workerLock) {
+            boolean running = isRunning.get();
+            if (running && workerId <= workerCount.get()) {
+                return false;
+            }
+            workers.remove(workerId, slot);
+            if (running) {
+                log.info("Worker-{} 超出当前worker数量限制, 退出", workerId);
+            }
+            return true;
+        }
+    }
+
+    /** 中断全部自有worker */
+    private void disposeWorkers() {
+        synchronized (workerLock) {
+            for (WorkerSlot slot : workers.values()) {
+                Disposable handle = slot.handle;
+                if (handle != null) {
+                    handle.dispose();
+                }
             }
-            workerCount.set(newCount);
-        } else if (newCount < oldCount) {
-            // worker数量减少，多余worker自动检测到自己编号超限后自行退出
-            workerCount.set(newCount);
         }
     }
 
     /**
      * worker线程处理主循环
      * @param workerId worker编号（1开始）
+     * @param slot     登记的句柄，退出时据此注销（同编号可能已有新worker）
      */
-    private Runnable workerRunnable(int workerId) {
+    private Runnable workerRunnable(int workerId, WorkerSlot slot) {
         return () -> {
             activeWorkers.incrementAndGet();
+            AsyncTaskWindow window = asyncWindow > 1 ? new AsyncTaskWindow(queueBackend, asyncWindow) : null;
             try {
-                while (isRunning.get() && workerHandles.size() <= workerCount.get()) {
-                    // 如果worker数量减少，超出worker自动退出
-                    if (workerId > workerCount.get()) {
-                        log.info("Worker-{} 超出当前worker数量限制, 退出", workerId);
+                while (true) {
+                    // 停机或worker数量减少后编号超限，退出
+                    if ((!isRunning.get() || workerId > workerCount.get()) && retireWorker(workerId, slot)) {
                         break;
                     }
-                    // 从Redis队列拉取任务
-                    String taskStr = redisTemplate.opsForList().leftPop(queueKey, 2, TimeUnit.SECONDS);
-                    if (taskStr == null) {
+                    // 从队列批量拉取任务；有异步在途任务时不阻塞，以便及时确认
+                    boolean hasInFlight = window != null && !window.isEmpty();
+                    List<QueueMessage> messages = expandPacked(queueBackend.popBatch(popBatchSize, hasInFlight ? 0 : popTimeoutMillis));
+                    if (messages.isEmpty()) {
+                        if (hasInFlight) {
+                            // 队列暂空，等待最早的在途任务结束
+                            window.awaitHead(200);
+                            window.ackCompleted();
+                            continue;
+                        }
+                        if (!isRunning.get()) {
+                            break; // 停机唤醒，不再休眠
+                        }
                         // 无任务，短暂休眠
                         try {
                             Thread.sleep(200);
-                            log.warn("Worker-{} 无任务，休眠中...", workerId);
+                            IDLE_LOG.info("Worker-{} 无任务，休眠中...", workerId);
                         } catch (InterruptedException ignored) {
                         }
                         continue;
                     }
+                    if (window != null) {
+                        processBatchAsync(workerId, messages, window);
+                    } else {
+                        processBatch(workerId, messages);
+                    }
+                }
+            } finally {
+                if (window != null) {
+                    awaitWindow(workerId, window);
+                }
+                synchronized (workerLock) {
+                    workers.remove(workerId, slot);
+                }
+                activeWorkers.decrementAndGet();
+                synchronized (shutdownLock) {
+                    shutdownLock.notifyAll();
+                }
+                log.info("Worker-{} 退出", workerId);
+            }
+        };
+    }
 
-                    // 反序列化任务
-                    T task = null;
-                    try {
-                        task = deserializeTask(taskStr);
-                    } catch (Exception ex) {
-                        log.error("Worker-{} 任务反序列化失败: {}", workerId, ex.getMessage(), ex);
-                        discarded.incrementAndGet();
-                        onTaskDiscarded(taskStr, ex);
+    /**
+     * 供共享线程池调用：不阻塞地拉取最多maxCount个任务并处理
+     * 处理期间计入活跃worker，stop()会等待其完成
+     * @param workerId 共享线程池的worker编号
+     * @param maxCount 本次最多处理的任务数
+     * @return 实际处理的任务数（打包ID按拆分后计），0表示队列为空或未运行；可能超过maxCount，由线程池计入额度
+     */
+    int drain(int workerId, int maxCount) {
+        if (!isRunning.get()) {
+            return 0;
+        }
+        activeWorkers.incrementAndGet();
+        try {
+            List<QueueMessage> popped = queueBackend.popBatch(Math.max(1, maxCount / drainExpansion), 0);
+            List<QueueMessage> messages = expandPacked(popped);
+            if (!popped.isEmpty()) {
+                drainExpansion = Math.max(1, (messages.size() + popped.size() - 1) / popped.size());
+            }
+            if (!messages.isEmpty()) {
+                int window = asyncWindow;
+                if (window > 1) {
+                    // 本次授权内的任务异步并发处理，返回前全部结束
+                    AsyncTaskWindow taskWindow = new AsyncTaskWindow(queueBackend, window);
+                    processBatchAsync(workerId, messages, taskWindow);
+                    awaitWindow(workerId, taskWindow);
+                } else {
+                    processBatch(workerId, messages);
+                }
+            }
+            return messages.size();
+        } finally {
+            activeWorkers.decrementAndGet();
+            synchronized (shutdownLock) {
+                shutdownLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 把打包ID元素拆成单ID消息（保留信封头部），拆分后确认原元素；没有打包元素时原样返回
+     * 打包元素只出现在字节队列，现有字节队列出队即删除，确认为空操作
+     */
+    private List<QueueMessage> expandPacked(List<QueueMessage> messages) {
+        List<QueueMessage> expanded = null;
+        List<QueueMessage> elements = null;
+        for (int i = 0; i < messages.size(); i++) {
+            QueueMessage message = messages.get(i);
+            byte[] inner = message.body;
+            TaskEnvelope envelope = null;
+            if (inner != null && inner.length > 0 && inner[0] != PackedIds.MARKER) {
+                try {
+                    envelope = TaskEnvelope.parse(inner);
+                } catch (IllegalArgumentException e) {
+                    // 头部损坏，留给 decodeBatch 丢弃
+                }
+                inner = envelope != null ? envelope.body : null;
+            }
+            if (!PackedIds.isPacked(inner)) {
+                if (expanded != null) {
+                    expanded.add(message);
+                }
+                continue;
+            }
+            if (expanded == null) {
+                expanded = new ArrayList<>(messages.subList(0, i));
+                elements = new ArrayList<>();
+            }
+            for (long id : PackedIds.unpack(inner)) {
+                byte[] single = PackedIds.pack(id);
+                expanded.add(QueueMessage.ofBytes(null, envelope == null ? single
+                        : TaskEnvelope.wrap(single, envelope.enqueuedAt, envelope.attempt, envelope.deadline, envelope.jobId)));
+            }
+            elements.add(message);
+        }
+        if (expanded == null) {
+            return messages;
+        }
+        queueBackend.ack(elements);
+        return expanded;
+    }
+
+    /**
+     * 逐个处理一批任务，处理完后批量确认；停机时未处理的任务放回队列
+     * @param workerId worker编号
+     * @param messages 出队的一批任务
+     */
+    @SuppressWarnings("unchecked")
+    private void processBatch(int workerId, List<QueueMessage> messages) {
+        Object[] decoded = decodeBatch(workerId, messages);
+        IdempotencyStore store = idempotencyStore;
+        int processed = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (!isRunning.get()) {
+                break;
+            }
+            Object task = decoded[i];
+            if (!isSkipped(task)) {
+                Boolean success = processTask(workerId, messages.get(i), (T) task);
+                if (success == null) {
+                    break; // 停机时中断，该任务及之后的放回队列
+                }
+                if (success && store != null) {
+                    store.markDone(idempotencyKey((T) task));
+                }
+            }
+            processed++;
+        }
+        if (store != null) {
+            store.flush();
+        }
+        settle(workerId, messages, decoded, processed);
+    }
+
+    /**
+     * 批量反序列化，并按幂等存储过滤已完成的任务
+     * @return 与messages等长：任务对象、DISCARDED、DUPLICATE 或 EXPIRED
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] decodeBatch(int workerId, List<QueueMessage> messages) {
+        Object[] decoded = new Object[messages.size()];
+        long now = System.currentTimeMillis();
+        // 打包ID任务先收集，循环结束后一次批量查询
+        int[] packedIndex = null;
+        long[] packedIds = null;
+        int packedCount = 0;
+        for (int i = 0; i < decoded.length; i++) {
+            QueueMessage message = messages.get(i);
+            try {
+                TaskEnvelope envelope = TaskEnvelope.of(message);
+                byte[] body = message.body;
+                String payload = message.payload;
+                if (envelope != null) {
+                    queueWaitLatency.record(TimeUnit.MILLISECONDS.toNanos(envelope.queueWaitMillis(now)));
+                    if (envelope.isExpired(now)) {
+                        expire(message, envelope);
+                        decoded[i] = EXPIRED;
                         continue;
                     }
+                    body = envelope.body;
+                    payload = envelope.payload;
+                }
+                if (PackedIds.isPacked(body)) {
+                    if (packedIndex == null) {
+                        packedIndex = new int[decoded.length];
+                        packedIds = new long[decoded.length];
+                    }
+                    packedIndex[packedCount] = i;
+                    packedIds[packedCount++] = PackedIds.unpack(body)[0];
+                    continue;
+                }
+                decoded[i] = body != null ? deserializeTask(body) : deserializeTask(payload);
+            } catch (Exception ex) {
+                discard(workerId, message, ex);
+                decoded[i] = DISCARDED;
+            }
+        }
+        if (packedCount > 0) {
+            resolvePacked(workerId, messages, decoded, packedIndex, Arrays.copyOf(packedIds, packedCount));
+        }
+        IdempotencyStore store = idempotencyStore;
+        if (store == null) {
+            return decoded;
+        }
+        List<String> keys = new ArrayList<>(decoded.length);
+        for (Object task : decoded) {
+            keys.add(isSkipped(task) ? null : idempotencyKey((T) task));
+        }
+        boolean[] done = store.isDone(keys);
+        for (int i = 0; i < decoded.length; i++) {
+            if (done[i]) {
+                decoded[i] = DUPLICATE;
+                duplicates.incrementAndGet();
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * 打包ID任务批量查询实体，查询失败按 maxRetry 重试，仍失败的计为丢弃；查不到的视为已完成
+     * 未覆盖 resolveTasks 时（生产端开启了打包ID而消费端不支持）不重试，直接丢弃
+     * @param packedIndex 每个ID在本批中的位置
+     */
+    private void resolvePacked(int workerId, List<QueueMessage> messages, Object[] decoded, int[] packedIndex, long[] ids) {
+        Map<Long, T> resolved = null;
+        Exception lastEx = null;
+        if (!resolvesPackedIds) {
+            lastEx = new IllegalStateException("未实现 resolveTasks，无法处理打包ID任务: " + getClass().getName());
+        }
+        for (int attempt = 0; attempt <= maxRetry && resolved == null && resolvesPackedIds; attempt++) {
+            try {
+                resolved = resolveTasks(ids);
+            } catch (Exception e) {
+                lastEx = e;
+                if (attempt < maxRetry && isRunning.get()) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < ids.length; k++) {
+            int i = packedIndex[k];
+            if (resolved == null) {
+                discard(workerId, messages.get(i), lastEx);
+                decoded[i] = DISCARDED;
+                continue;
+            }
+            T task = resolved.get(ids[k]);
+            if (task != null) {
+                decoded[i] = task;
+            } else {
+                decoded[i] = DUPLICATE;
+                duplicates.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 确认已处理的任务；停机时未处理的放回队列（其中已丢弃、重复、过期的直接确认）
+     * @param processed 已处理（或已提交）的前缀长度
+     */
+    private void settle(int workerId, List<QueueMessage> messages, Object[] decoded, int processed) {
+        if (processed == messages.size()) {
+            queueBackend.ack(messages);
+            return;
+        }
+        List<QueueMessage> acked = new ArrayList<>(messages.subList(0, processed));
+        List<QueueMessage> unprocessed = new ArrayList<>(messages.size() - processed);
+        for (int i = processed; i < messages.size(); i++) {
+            if (isSkipped(decoded[i])) {
+                acked.add(messages.get(i));
+            } else {
+                unprocessed.add(messages.get(i));
+            }
+        }
+        // worker可能已被停机中断，先清除中断标记，保证放回队列的Redis调用不被打断
+        boolean interrupted = Thread.interrupted();
+        try {
+            queueBackend.ack(acked);
+            if (!unprocessed.isEmpty()) {
+                queueBackend.nack(TaskEnvelope.requeued(unprocessed));
+                log.info("Worker-{} 停机，{} 个未处理任务已放回队列", workerId, unprocessed.size());
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-                    // 单个任务处理及重试
-                    int retryCount = 0;
-                    boolean success = false;
-                    Exception lastEx = null;
-                    do {
+    /**
+     * 单个任务：处理及重试
+     * @param workerId worker编号
+     * @param message 出队的任务消息
+     * @param task 反序列化后的任务
+     * @return 是否处理成功；停机期间失败返回null，由调用方放回队列
+     */
+    private Boolean processTask(int workerId, QueueMessage message, T task) {
+        // 单个任务处理及重试
+        long startNanos = System.nanoTime();
+        int retryCount = 0;
+        boolean success = false;
+        Exception lastEx = null;
+        do {
+            try {
+                if (taskTimeoutMillis > 0) {
+                    // 带超时的处理
+                    final T finalTask = task;
+                    final Exception[] exHolder = new Exception[1];
+                    Thread t = new Thread(() -> {
                         try {
-                            if (taskTimeoutMillis > 0) {
-                                // 带超时的处理
-                                final T finalTask = task;
-                                final Exception[] exHolder = new Exception[1];
-                                Thread t = new Thread(() -> {
-                                    try {
-                                        handleTask(finalTask);
-                                    } catch (Exception ex) {
-                                        exHolder[0] = ex;
-                                    }
-                                });
-                                t.start();
-                                t.join(taskTimeoutMillis);
-                                if (t.isAlive()) {
-                                    t.interrupt();
-                                    throw new RuntimeException("任务超时" + taskTimeoutMillis + "ms");
-                                }
-                                if (exHolder[0] != null) throw exHolder[0];
-                            } else {
-                                handleTask(task);
-                            }
-                            success = true;
-                            completed.incrementAndGet();
-                        } catch (Exception e) {
-                            lastEx = e;
-                            retryCount++;
-                            retried.incrementAndGet();
-                            onTaskError(task, e, retryCount);
-                            log.error("Worker-{} -对应的任务为：{}, 处理任务异常，第{}次: {}",
-                                    workerId, taskStr, retryCount, e.getMessage(), e);
-                            if (retryCount <= maxRetry) {
-                                try {
-                                    Thread.sleep(200);
-                                } catch (InterruptedException ignored) {
-                                }
-                            }
+                            handleTask(finalTask);
+                        } catch (Exception ex) {
+                            exHolder[0] = ex;
                         }
-                    } while (!success && retryCount <= maxRetry && isRunning.get());
-                    if (!success) {
-                        failed.incrementAndGet();
-                        onTaskFailed(task, lastEx);
-                        // TODO: 可扩展：失败任务入库、告警等
+                    });
+                    t.start();
+                    t.join(taskTimeoutMillis);
+                    if (t.isAlive()) {
+                        t.interrupt();
+                        throw new RuntimeException("任务超时" + taskTimeoutMillis + "ms");
                     }
+                    if (exHolder[0] != null) throw exHolder[0];
+                } else {
+                    handleTask(task);
+                }
+                success = true;
+                completed.incrementAndGet();
+                if (jobTracker != null) {
+                    jobTracker.recordConsumed(1);
+                }
+            } catch (Exception e) {
+                if (!isRunning.get()) {
+                    // 停机中失败（多为停机中断），不再重试，也不计失败
+                    return null;
                 }
+                lastEx = e;
+                retryCount++;
+                retried.incrementAndGet();
+                onTaskError(task, e, retryCount);
+                // 中间重试只记异常信息，堆栈留给最终失败
+                RETRY_LOG.warn("Worker-{} -对应的任务为：{}, 处理任务异常，第{}次: {}",
+                        workerId, HotPathLog.abbreviate(message.text(), LOG_TASK_MAX_LENGTH), retryCount, e.getMessage());
+                if (retryCount <= maxRetry && isRunning.get()) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        } while (!success && retryCount <= maxRetry);
+        taskLatency.record(System.nanoTime() - startNanos);
+        if (!success) {
+            FAILED_LOG.error("Worker-{} 任务最终失败, 共{}次: {}",
+                    workerId, retryCount, HotPathLog.abbreviate(message.text(), LOG_TASK_MAX_LENGTH), lastEx);
+            failed.incrementAndGet();
+            if (jobTracker != null) {
+                jobTracker.recordFailed(1);
+            }
+            onTaskFailed(task, lastEx);
+            // TODO: 可扩展：失败任务入库、告警等
+        }
+        return success;
+    }
+
+    /**
+     * 异步处理一批任务：窗口满时等待最早的在途任务结束，结束的任务按出队顺序确认；
+     * 停机时未提交的任务放回队列，已提交的由 awaitWindow 等待
+     * @param workerId worker编号
+     * @param messages 出队的一批任务
+     * @param window   该worker的在途窗口
+     */
+    @SuppressWarnings("unchecked")
+    private void processBatchAsync(int workerId, List<QueueMessage> messages, AsyncTaskWindow window) {
+        Object[] decoded = decodeBatch(workerId, messages);
+        int submitted = 0;
+        List<QueueMessage> skipped = null; // 已丢弃、重复、过期的任务，不占窗口直接确认
+        for (int i = 0; i < messages.size(); i++) {
+            if (!isRunning.get()) {
+                break;
+            }
+            QueueMessage message = messages.get(i);
+            Object task = decoded[i];
+            submitted++;
+            if (isSkipped(task)) {
+                if (skipped == null) {
+                    skipped = new ArrayList<>();
+                }
+                skipped.add(message);
+                continue;
+            }
+            while (window.isFull()) {
+                window.awaitHead(200);
+                window.ackCompleted();
+            }
+            asyncInFlight.incrementAndGet();
+            CompletableFuture<Boolean> done = processTaskAsync(workerId, message, (T) task);
+            done.whenComplete((v, ex) -> asyncInFlight.decrementAndGet());
+            window.add(message, done);
+        }
+        if (skipped != null) {
+            queueBackend.ack(skipped);
+        }
+        window.ackCompleted();
+        if (idempotencyStore != null) {
+            idempotencyStore.flush();
+        }
+        if (submitted < messages.size()) {
+            settle(workerId, messages.subList(submitted, messages.size()),
+                    Arrays.copyOfRange(decoded, submitted, decoded.length), 0);
+        }
+    }
+
+    /**
+     * 等待窗口内在途任务全部结束并确认，超时仍未结束的放回队列（之后可能重复处理，由幂等兜底）
+     */
+    private void awaitWindow(int workerId, AsyncTaskWindow window) {
+        int remaining = window.awaitAll(asyncDrainTimeoutMillis);
+        if (idempotencyStore != null) {
+            idempotencyStore.flush();
+        }
+        if (remaining > 0) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                window.requeueRemaining();
             } finally {
-                activeWorkers.decrementAndGet();
-                synchronized (shutdownLock) {
-                    shutdownLock.notifyAll();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
                 }
-                log.info("Worker-{} 退出", workerId);
             }
-        };
+            log.warn("Worker-{} 等待异步在途任务超时({}ms)，{} 个任务已放回队列", workerId, asyncDrainTimeoutMillis, remaining);
+        }
+    }
+
+    /**
+     * 单个任务异步处理：调用 handleTaskAsync 并按需重试
+     * @return 任务结束信号，不会异常完成：true 为已处理（成功或最终失败），false 为停机中断需放回队列
+     */
+    private CompletableFuture<Boolean> processTaskAsync(int workerId, QueueMessage message, T task) {
+        long startNanos = System.nanoTime();
+        return attemptAsync(workerId, message, task, 0)
+                .whenComplete((v, ex) -> taskLatency.record(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * 一次异步尝试，失败时经延迟调度重试，重试次数与同步模式一致
+     * 回调在 handleTaskAsync 返回的future完成的线程上执行
+     */
+    private CompletableFuture<Boolean> attemptAsync(int workerId, QueueMessage message, T task, int retryCount) {
+        CompletableFuture<Void> attempt;
+        try {
+            attempt = handleTaskAsync(task);
+        } catch (Exception e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        if (taskTimeoutMillis > 0) {
+            attempt = withTimeout(attempt, taskTimeoutMillis);
+        }
+        return attempt.handle((v, ex) -> {
+            if (ex == null) {
+                completed.incrementAndGet();
+                if (jobTracker != null) {
+                    jobTracker.recordConsumed(1);
+                }
+                IdempotencyStore store = idempotencyStore;
+                if (store != null) {
+                    store.markDone(idempotencyKey(task));
+                }
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+            }
+            if (!isRunning.get()) {
+                // 停机中失败，不再重试，也不计失败
+                return CompletableFuture.completedFuture(Boolean.FALSE);
+            }
+            Exception e = unwrap(ex);
+            int nextRetry = retryCount + 1;
+            retried.incrementAndGet();
+            try {
+                onTaskError(task, e, nextRetry);
+            } catch (Exception hookEx) {
+                log.warn("Worker-{} onTaskError钩子异常: {}", workerId, hookEx.getMessage());
+            }
+            RETRY_LOG.warn("Worker-{} -对应的任务为：{}, 处理任务异常，第{}次: {}",
+                    workerId, HotPathLog.abbreviate(message.text(), LOG_TASK_MAX_LENGTH), nextRetry, e.getMessage());
+            if (nextRetry <= maxRetry) {
+                return retryLater(workerId, message, task, nextRetry);
+            }
+            FAILED_LOG.error("Worker-{} 任务最终失败, 共{}次: {}",
+                    workerId, nextRetry, HotPathLog.abbreviate(message.text(), LOG_TASK_MAX_LENGTH), e);
+            failed.incrementAndGet();
+            if (jobTracker != null) {
+                jobTracker.recordFailed(1);
+            }
+            try {
+                onTaskFailed(task, e);
+            } catch (Exception hookEx) {
+                log.warn("Worker-{} onTaskFailed钩子异常: {}", workerId, hookEx.getMessage());
+            }
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }).thenCompose(f -> f);
+    }
+
+    /**
+     * 超时控制：超时后返回的future以 TimeoutException 失败，并取消原future。
+     * 支持取消的实现（流水线中尚未开始的阶段、Mono.toFuture()）随之停止，其余的可能仍在执行
+     */
+    private CompletableFuture<Void> withTimeout(CompletableFuture<Void> attempt, long timeoutMillis) {
+        if (attempt.isDone()) {
+            return attempt;
+        }
+        CompletableFuture<Void> timed = attempt.copy();
+        Disposable timer;
+        try {
+            timer = retryScheduler.schedule(() -> {
+                if (timed.completeExceptionally(new TimeoutException("任务超时" + timeoutMillis + "ms"))) {
+                    attempt.cancel(true);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return attempt; // 已 shutdown
+        }
+        timed.whenComplete((v, ex) -> timer.dispose());
+        return timed;
+    }
+
+    /**
+     * 延迟 RETRY_DELAY_MILLIS 后在重试调度器上再次尝试；调度器已释放时按停机处理，任务放回队列
+     */
+    private CompletableFuture<Boolean> retryLater(int workerId, QueueMessage message, T task, int retryCount) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        try {
+            retryScheduler.schedule(() -> attemptAsync(workerId, message, task, retryCount)
+                    .whenComplete((v, ex) -> {
+                        if (ex != null) {
+                            result.completeExceptionally(ex);
+                        } else {
+                            result.complete(v);
+                        }
+                    }), RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.complete(Boolean.FALSE);
+        }
+        return result;
+    }
+
+    private static Exception unwrap(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof Exception e ? e : new RuntimeException(cause);
+    }
+
+    /**
+     * 反序列化失败：计数、记录并回调丢弃钩子
+     */
+    private void discard(int workerId, QueueMessage message, Exception ex) {
+        String taskStr = message.text();
+        DESERIALIZE_LOG.error("Worker-{} 任务反序列化失败: {}, 任务: {}", workerId, ex.getMessage(),
+                HotPathLog.abbreviate(taskStr, LOG_TASK_MAX_LENGTH), ex);
+        discarded.incrementAndGet();
+        if (jobTracker != null) {
+            jobTracker.recordFailed(1);
+        }
+        onTaskDiscarded(taskStr, ex);
+    }
+
+    /**
+     * 超过截止时间：计数并回调过期钩子，不做任何处理
+     */
+    private void expire(QueueMessage message, TaskEnvelope envelope) {
+        expired.incrementAndGet();
+        if (jobTracker != null) {
+            jobTracker.recordFailed(1);
+        }
+        onTaskExpired(message.text(), envelope);
+    }
+
+    /** 解码结果是否为占位（丢弃、重复、过期），不进入处理 */
+    private static boolean isSkipped(Object task) {
+        return task == DISCARDED || task == DUPLICATE || task == EXPIRED;
     }
 
     // ===================== 配置及监控相关 ========================
@@ -240,6 +1015,63 @@ public abstract class AbstractReactorConsumeBatch<T> {
         this.taskTimeoutMillis = millis;
     }
 
+    /**
+     * 设置每个worker的异步在途窗口，>1 时使用 handleTaskAsync；
+     * 在下次 start/startShared 时对自有worker生效，共享线程池模式立即生效
+     */
+    public void setAsyncWindow(int asyncWindow) {
+        this.asyncWindow = asyncWindow;
+    }
+
+    /** 设置停机时等待worker退出的最长时间，超时后中断worker，单位ms */
+    public void setStopTimeoutMillis(long millis) {
+        this.stopTimeoutMillis = millis;
+    }
+
+    /** 设置停机时等待异步在途任务的最长时间，单位ms */
+    public void setAsyncDrainTimeoutMillis(long millis) {
+        this.asyncDrainTimeoutMillis = millis;
+    }
+
+    /**
+     * 设置多阶段流水线，需同时 setAsyncWindow(>1)：每个worker最多 asyncWindow 个任务在流水线中，
+     * 窗口总量（worker数 × asyncWindow）应不小于各阶段并发度之和，否则后面的阶段打不满
+     */
+    public void setPipeline(StagedPipeline<T> pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * 登记结果汇聚：优雅停机时等待其剩余结果写出，shutdown 时关闭
+     * 处理逻辑中 emit 结果；异步模式下返回 emit 的future，任务在结果写出后才确认
+     */
+    public <R> ResultSink<R> registerResultSink(ResultSink<R> sink) {
+        resultSinks.add(sink);
+        return sink;
+    }
+
+    /** 已登记的结果汇聚 */
+    public List<ResultSink<?>> getResultSinks() {
+        return resultSinks;
+    }
+
+    /**
+     * 设置幂等存储，需同时覆盖 idempotencyKey；null为关闭幂等过滤
+     */
+    public void setIdempotencyStore(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    /** 设置每次批量出队条数 */
+    public void setPopBatchSize(int popBatchSize) {
+        this.popBatchSize = popBatchSize;
+    }
+
+    /** 设置队列为空时出队阻塞时长，单位ms */
+    public void setPopTimeoutMillis(long popTimeoutMillis) {
+        this.popTimeoutMillis = popTimeoutMillis;
+    }
+
     public int getCompleted() {
         return completed.get();
     }
@@ -256,6 +1088,28 @@ public abstract class AbstractReactorConsumeBatch<T> {
         return discarded.get();
     }
 
+    public int getDuplicates() {
+        return duplicates.get();
+    }
+
+    public int getExpired() {
+        return expired.get();
+    }
+
+    public int getAsyncWindow() {
+        return asyncWindow;
+    }
+
+    /** 多阶段流水线，未设置返回null */
+    public StagedPipeline<T> getPipeline() {
+        return pipeline;
+    }
+
+    /** 当前异步在途任务数 */
+    public int getAsyncInFlight() {
+        return asyncInFlight.get();
+    }
+
     public int getActiveWorkers() {
         return activeWorkers.get();
     }
@@ -268,14 +1122,92 @@ public abstract class AbstractReactorConsumeBatch<T> {
         return workerCount.get();
     }
 
+    public int getPopBatchSize() {
+        return popBatchSize;
+    }
+
+    /** 当前队列积压数（每次调用访问一次队列） */
+    public long getQueueSize() {
+        return queueBackend.size();
+    }
+
+    /** 单任务处理耗时分布，供指标采样周期性 snapshotAndReset */
+    public LatencyHistogram getTaskLatency() {
+        return taskLatency;
+    }
+
+    /** 信封任务排队时长（入队到出队）分布，非信封任务不计入 */
+    public LatencyHistogram getQueueWaitLatency() {
+        return queueWaitLatency;
+    }
+
+    public String getQueueName() {
+        return queueBackend.name();
+    }
+
+    /** 当前作业的集群进度，无作业返回null */
+    public JobProgressTracker.JobProgress getJobProgress() {
+        return jobTracker != null ? jobTracker.progress() : null;
+    }
+
     // =================== 子类需实现/可扩展 ===================
 
-    /** 任务处理主逻辑，必须实现 */
-    protected abstract void handleTask(T task) throws Exception;
+    /**
+     * 任务处理主逻辑（同步），asyncWindow<=1 时使用
+     * 只实现 handleTaskAsync 或设置了流水线的子类可不覆盖；都未提供时 start 直接抛出 IllegalStateException
+     */
+    protected void handleTask(T task) throws Exception {
+        throw new IllegalStateException("未实现 handleTask: " + getClass().getName());
+    }
+
+    /**
+     * 任务处理主逻辑（异步），asyncWindow>1 时使用
+     * 返回的future正常完成即成功，异常完成即失败并按 maxRetry 重试；Mono 可用 toFuture() 转换。
+     * 实现不应阻塞调用线程，下游调用应使用异步客户端（WebClient、Lettuce、R2DBC等）。
+     * 默认：设置了流水线时提交给流水线（入口缓冲满时阻塞worker，即背压），否则在调用线程上同步执行 handleTask。
+     */
+    protected CompletableFuture<Void> handleTaskAsync(T task) {
+        StagedPipeline<T> current = pipeline;
+        if (current != null) {
+            return current.submit(task);
+        }
+        try {
+            handleTask(task);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
     /** 任务反序列化，必须实现 */
     protected abstract T deserializeTask(String taskStr);
 
+    /**
+     * 任务反序列化（字节队列），默认转为字符串后调用 deserializeTask(String)
+     * 子类可覆盖为 JacksonUtil.fromJson(body, Xxx.class) 直接解析字节
+     */
+    protected T deserializeTask(byte[] body) {
+        return deserializeTask(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 打包ID任务：按主键批量查出实体（如一次 WHERE id IN (...)），使用打包ID队列时必须实现
+     * 可在查询中顺带过滤已处理完的实体，返回结果中没有的ID视为已完成，直接确认；
+     * 未覆盖时打包ID任务不会调用本方法，出队即计为丢弃（onTaskDiscarded）
+     * @param ids 本批待处理的主键
+     * @return 主键 -> 任务
+     */
+    protected Map<Long, T> resolveTasks(long[] ids) {
+        throw new IllegalStateException("未实现 resolveTasks: " + getClass().getName());
+    }
+
+    /**
+     * 可选：任务的幂等键（一般为业务主键），配合 IdempotencyStore 使用，返回null表示该任务不做幂等过滤
+     */
+    protected String idempotencyKey(T task) {
+        return null;
+    }
+
     /** 可选：批处理全部完成时钩子 */
     protected void onFinish() {
     }
@@ -291,4 +1223,12 @@ public abstract class AbstractReactorConsumeBatch<T> {
     /** 可选：反序列化失败丢弃钩子 */
     protected void onTaskDiscarded(String rawTask, Exception e) {
     }
+
+    /** 可选：任务超过截止时间被丢弃时钩子，rawTask 为含信封头部的原始消息 */
+    protected void onTaskExpired(String rawTask, TaskEnvelope envelope) {
+    }
+
+    private static final class WorkerSlot {
+        volatile Disposable handle;
+    }
 }
@@ -0,0 +1,155 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueMessage;
+import com.duanml.reactorservice.middleware.reactor.queue.TaskEnvelope;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/13 20:30
+ * Description: 单个worker的异步在途窗口
+ *
+ * 1. 按出队顺序记录已提交的任务及其完成信号，窗口满时worker等待最早的任务完成；
+ * 2. 只确认“从队头开始连续已完成”的任务，确认顺序与出队顺序一致；
+ *    队列记录待确认消息时（RedisStreamQueueBackend 的PEL），进程异常退出后未确认的（含队头之后已完成的）
+ *    由其他消费者接管重新投递，不会丢失；LIST、环形、内存映射队列出队即删除、确认为空操作，
+ *    进程异常退出（如 kill -9）时窗口内的在途任务会丢失，优雅停机不受影响（见3）；
+ * 3. 结束信号为 false 的任务（停机中断）放回队列；停机等待超时仍未结束的由 requeueRemaining 放回队列；
+ * 4. 只由所属worker线程访问，不需要加锁。
+ */
+final class AsyncTaskWindow {
+
+    private final QueueBackend queueBackend;
+    private final int capacity;
+    private final ArrayDeque<Entry> entries;
+
+    AsyncTaskWindow(QueueBackend queueBackend, int capacity) {
+        this.queueBackend = queueBackend;
+        this.capacity = capacity;
+        this.entries = new ArrayDeque<>(capacity);
+    }
+
+    boolean isFull() {
+        return entries.size() >= capacity;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * 记录一个已提交的任务
+     * @param message 出队消息
+     * @param done    任务结束信号：true 已处理（成功或最终失败），false 需放回队列
+     */
+    void add(QueueMessage message, CompletableFuture<Boolean> done) {
+        entries.addLast(new Entry(message, done));
+    }
+
+    /**
+     * 批量确认队头连续已结束的任务，其中需放回队列的批量放回
+     * @return 本次结束数
+     */
+    int ackCompleted() {
+        List<QueueMessage> acked = null;
+        List<QueueMessage> requeued = null;
+        int count = 0;
+        while (!entries.isEmpty() && entries.peekFirst().done.isDone()) {
+            Entry entry = entries.pollFirst();
+            count++;
+            if (Boolean.FALSE.equals(entry.done.getNow(Boolean.TRUE))) {
+                if (requeued == null) {
+                    requeued = new ArrayList<>();
+                }
+                requeued.add(entry.message);
+            } else {
+                if (acked == null) {
+                    acked = new ArrayList<>();
+                }
+                acked.add(entry.message);
+            }
+        }
+        if (acked != null) {
+            queueBackend.ack(acked);
+        }
+        if (requeued != null) {
+            queueBackend.nack(TaskEnvelope.requeued(requeued));
+        }
+        return count;
+    }
+
+    /**
+     * 把仍未结束的任务全部放回队列并清空窗口（这些任务之后仍可能完成，即可能重复处理）
+     * @return 放回数
+     */
+    int requeueRemaining() {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<QueueMessage> requeued = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            requeued.add(entry.message);
+        }
+        entries.clear();
+        queueBackend.nack(TaskEnvelope.requeued(requeued));
+        return requeued.size();
+    }
+
+    /**
+     * 等待队头任务结束，最多等待timeoutMillis
+     */
+    void awaitHead(long timeoutMillis) {
+        Entry head = entries.peekFirst();
+        if (head == null) {
+            return;
+        }
+        try {
+            head.done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待全部在途任务结束并确认，超过deadline仍未结束的保持未确认
+     * @return 仍未结束的任务数
+     */
+    int awaitAll(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!entries.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            awaitHead(remaining);
+            ackCompleted();
+        }
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final QueueMessage message;
+        final CompletableFuture<Boolean> done;
+
+        Entry(QueueMessage message, CompletableFuture<Boolean> done) {
+            this.message = message;
+            this.done = done;
+        }
+    }
+}
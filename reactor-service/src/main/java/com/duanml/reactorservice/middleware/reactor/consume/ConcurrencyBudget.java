@@ -0,0 +1,199 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/18 10:00
+ * Description: 集群并发预算：全局worker总数存于Redis，按存活节点的实测吞吐加权分配
+ *
+ * 1. 预算 reactor:budget:{queue}:total 为全集群worker总数上限（即同时访问数据库的最大并发），0或不存在为不限制，
+ *    各节点仍按自己的 workerNum；
+ * 2. 心跳：每个节点定期上报“每worker吞吐”（EWMA平滑），Lua脚本原子地登记心跳、剔除超过 staleMillis 未上报的节点，
+ *    并返回预算与全部存活节点的吞吐；节点加入、退出（leave）或宕机（心跳过期）后，下一次心跳即重新分配；
+ * 3. 分配：每个节点用同一份快照各自计算，结果一致：预算不小于节点数时每节点至少1个，其余按吞吐权重以最大余数法分配，
+ *    合计恰好等于预算；尚无吞吐的新节点按平均权重，权重下限为平均值的 MIN_WEIGHT_RATIO，慢节点不会被饿死；
+ * 4. 按“每worker吞吐”而不是节点总吞吐加权，避免“worker多 -> 吞吐高 -> 分到更多worker”的正反馈；
+ *    各节点心跳时刻不同，重新分配期间合计可能短暂偏离预算（最多一个心跳周期）。
+ *
+ * 异步模式下每个worker最多 asyncWindow 个任务在途，数据库并发约为 预算 × asyncWindow。
+ */
+@Slf4j
+public class ConcurrencyBudget {
+
+    private static final String KEY_PREFIX = "reactor:budget:";
+    // 权重下限：平均权重的比例
+    static final double MIN_WEIGHT_RATIO = 0.1;
+
+    // 登记心跳并剔除过期节点，返回 {预算, 节点1, 吞吐1, 节点2, 吞吐2, ...}
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> HEARTBEAT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1]) " +
+            "redis.call('HSET', KEYS[2], ARGV[1], ARGV[3]) " +
+            "local stale = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[4]) " +
+            "for _, node in ipairs(stale) do redis.call('HDEL', KEYS[2], node) end " +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[4]) " +
+            "local result = {redis.call('GET', KEYS[3]) or '0'} " +
+            "for _, node in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do " +
+            "  table.insert(result, node) " +
+            "  table.insert(result, redis.call('HGET', KEYS[2], node) or '0') " +
+            "end " +
+            "return result", List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final String membersKey; // ZSET 节点 -> 最近心跳时间
+    private final String ratesKey;   // HASH 节点 -> 每worker吞吐
+    private final String totalKey;   // 预算
+
+    private volatile long staleMillis = 10_000L;
+    // 最近一次心跳得到的预算与分配，供状态查询
+    private volatile int lastBudget = 0;
+    private volatile Map<String, Double> lastRates = Collections.emptyMap();
+    private volatile Map<String, Integer> lastShares = Collections.emptyMap();
+
+    public ConcurrencyBudget(StringRedisTemplate redisTemplate, String queue, String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId;
+        String prefix = KEY_PREFIX + queue + ":";
+        this.membersKey = prefix + "members";
+        this.ratesKey = prefix + "rates";
+        this.totalKey = prefix + "total";
+    }
+
+    /**
+     * 上报本节点每worker吞吐，并计算本节点分到的worker数
+     * @param perWorkerRate 本节点每worker每秒完成数（平滑后），未知传0
+     * @return 本节点worker数；未设置预算时返回null
+     */
+    public Integer heartbeat(double perWorkerRate) {
+        long now = System.currentTimeMillis();
+        List<?> result = redisTemplate.execute(HEARTBEAT_SCRIPT, Arrays.asList(membersKey, ratesKey, totalKey),
+                nodeId, String.valueOf(now), String.valueOf(perWorkerRate), String.valueOf(now - staleMillis));
+        if (result == null || result.isEmpty()) {
+            return null;
+        }
+        int budget = Integer.parseInt(String.valueOf(result.get(0)));
+        Map<String, Double> rates = new TreeMap<>();
+        for (int i = 1; i + 1 < result.size(); i += 2) {
+            rates.put(String.valueOf(result.get(i)), Double.parseDouble(String.valueOf(result.get(i + 1))));
+        }
+        Map<String, Integer> shares = allocate(budget, rates);
+        lastBudget = budget;
+        lastRates = rates;
+        lastShares = shares;
+        return budget > 0 ? shares.getOrDefault(nodeId, 0) : null;
+    }
+
+    /**
+     * 退出分配（优雅停机、本节点停止消费时），其余节点下一次心跳即分走本节点的份额
+     */
+    public void leave() {
+        redisTemplate.opsForZSet().remove(membersKey, nodeId);
+        redisTemplate.opsForHash().delete(ratesKey, nodeId);
+    }
+
+    /**
+     * 设置全局预算，0为不限制
+     */
+    public void setBudget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("预算不能小于0: " + budget);
+        }
+        redisTemplate.opsForValue().set(totalKey, String.valueOf(budget));
+    }
+
+    /** 设置心跳过期时间，应为心跳间隔的3倍左右 */
+    public void setStaleMillis(long staleMillis) {
+        this.staleMillis = staleMillis;
+    }
+
+    /**
+     * 最近一次心跳看到的预算、各节点每worker吞吐与分到的worker数
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("budget", lastBudget);
+        status.put("nodeId", nodeId);
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        Map<String, Integer> shares = lastShares;
+        lastRates.forEach((node, rate) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("nodeId", node);
+            entry.put("perWorkerRate", rate);
+            entry.put("workers", shares.getOrDefault(node, 0));
+            nodes.add(entry);
+        });
+        status.put("nodes", nodes);
+        return status;
+    }
+
+    /**
+     * 按权重分配预算：预算不小于节点数时每节点保底1个，其余按权重以最大余数法分配，余数相同按节点ID顺序
+     * @param budget 全局预算，<=0 返回空
+     * @param rates  节点 -> 每worker吞吐（0为尚无数据）
+     * @return 节点 -> worker数，合计等于预算
+     */
+    static Map<String, Integer> allocate(int budget, Map<String, Double> rates) {
+        Map<String, Integer> shares = new LinkedHashMap<>();
+        if (budget <= 0 || rates.isEmpty()) {
+            return shares;
+        }
+        List<String> nodes = new ArrayList<>(new TreeMap<>(rates).keySet());
+        double measuredSum = 0;
+        int measured = 0;
+        for (String node : nodes) {
+            double rate = rates.get(node);
+            if (rate > 0) {
+                measuredSum += rate;
+                measured++;
+            }
+        }
+        double average = measured > 0 ? measuredSum / measured : 1.0;
+        double[] weights = new double[nodes.size()];
+        double weightSum = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            double rate = rates.get(nodes.get(i));
+            weights[i] = rate > 0 ? Math.max(rate, average * MIN_WEIGHT_RATIO) : average;
+            weightSum += weights[i];
+        }
+
+        int floor = budget >= nodes.size() ? 1 : 0;
+        int distributable = budget - floor * nodes.size();
+        int[] counts = new int[nodes.size()];
+        double[] remainders = new double[nodes.size()];
+        int assigned = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            double exact = distributable * weights[i] / weightSum;
+            counts[i] = (int) Math.floor(exact);
+            remainders[i] = exact - counts[i];
+            assigned += counts[i];
+        }
+        // 剩余的按余数从大到小各补1个
+        Integer[] order = new Integer[nodes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(remainders[b], remainders[a]));
+        for (int k = 0; assigned < distributable; k++, assigned++) {
+            counts[order[k % order.length]]++;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            shares.put(nodes.get(i), floor + counts[i]);
+        }
+        return shares;
+    }
+}
@@ -0,0 +1,269 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/14 19:20
+ * Description: 消费端幂等存储（已完成任务ID的近端缓存）
+ *
+ * 1. 本地层：Caffeine（W-TinyLFU淘汰）保存已完成ID，容量有上限，可设置过期时间，命中只需微秒级；
+ * 2. Redis层（可选，跨节点/重启后仍有效）：
+ *    - SET：batch:idem:{name} 集合，适合任意字符串ID；
+ *    - BITMAP：batch:idem:{name} 位图，ID为非负整数且较稠密时内存最省（1亿ID约12MB）；
+ *      SETBIT 偏移量上限为 2^32-1，超出范围或非整数的ID不写入也不查询Redis（只走本地层）并计入 rejected，
+ *      雪花ID等大整数应使用 SET；
+ *    TTL作用于整个key，每次写入刷新，最后一次写入后经过TTL整体过期；
+ * 3. 查询按批进行：先查本地，本地未命中的ID一次pipeline查Redis，命中的回填本地；
+ * 4. 标记先写本地，Redis写入攒在待刷新队列中，由消费端每批结束时 flush 一次pipeline写入。
+ *
+ * 本地层淘汰或Redis过期后，重复任务仍会到达业务处理，业务自身仍应保持幂等（如条件更新）。
+ */
+@Slf4j
+public class IdempotencyStore {
+
+    private static final String KEY_PREFIX = "batch:idem:";
+
+    /**
+     * Redis层存储方式
+     */
+    public enum RedisMode {
+        NONE,   // 只用本地缓存
+        SET,    // Redis Set
+        BITMAP  // Redis 位图（ID须为 0 ~ 2^32-1 的整数）
+    }
+
+    // 位图偏移量上限（Redis SETBIT 限制 512MB）
+    static final long MAX_BIT_OFFSET = (1L << 32) - 1;
+
+    private final Cache<String, Boolean> local;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMode redisMode;
+    private final String redisKey;
+    private final long redisTtlSeconds;
+
+    // 待写入Redis的ID
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+
+    // 统计
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 只用本地缓存
+     * @param maxLocalEntries 本地最多保存的ID数
+     */
+    public IdempotencyStore(long maxLocalEntries) {
+        this(null, maxLocalEntries, null, null, RedisMode.NONE, null);
+    }
+
+    /**
+     * @param name            名称，Redis key为 batch:idem:{name}，一般用队列key
+     * @param maxLocalEntries 本地最多保存的ID数
+     * @param localTtl        本地过期时间，null为不过期（只按容量淘汰）
+     * @param redisTemplate   Redis模板，redisMode为NONE时可为null
+     * @param redisMode       Redis层存储方式
+     * @param redisTtl        Redis key过期时间，null为不过期
+     */
+    public IdempotencyStore(String name, long maxLocalEntries, Duration localTtl,
+                            StringRedisTemplate redisTemplate, RedisMode redisMode, Duration redisTtl) {
+        if (redisMode != RedisMode.NONE && (redisTemplate == null || name == null)) {
+            throw new IllegalArgumentException("Redis层需要redisTemplate和name");
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maxLocalEntries);
+        if (localTtl != null) {
+            builder.expireAfterWrite(localTtl);
+        }
+        this.local = builder.build();
+        this.redisTemplate = redisTemplate;
+        this.redisMode = redisMode;
+        this.redisKey = name != null ? KEY_PREFIX + name : null;
+        this.redisTtlSeconds = redisTtl != null ? redisTtl.toSeconds() : -1L;
+    }
+
+    /**
+     * 批量查询是否已完成
+     * @param ids 任务ID，元素为null的视为未完成
+     * @return 与ids等长，true表示已完成
+     */
+    public boolean[] isDone(List<String> ids) {
+        boolean[] done = new boolean[ids.size()];
+        List<Integer> remoteIndexes = null;
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            if (id == null) {
+                continue;
+            }
+            if (local.getIfPresent(id) != null) {
+                done[i] = true;
+                localHits.increment();
+            } else if (redisMode != RedisMode.NONE && acceptsRedis(id)) {
+                if (remoteIndexes == null) {
+                    remoteIndexes = new ArrayList<>();
+                }
+                remoteIndexes.add(i);
+            } else {
+                misses.increment();
+            }
+        }
+        if (remoteIndexes != null) {
+            lookupRedis(ids, remoteIndexes, done);
+        }
+        return done;
+    }
+
+    /**
+     * 标记已完成：立即写本地，Redis写入等待 flush
+     */
+    public void markDone(String id) {
+        if (id == null) {
+            return;
+        }
+        local.put(id, Boolean.TRUE);
+        if (redisMode != RedisMode.NONE && acceptsRedis(id)) {
+            pending.add(id);
+        }
+    }
+
+    /**
+     * 把待写入的ID一次pipeline写入Redis，失败时记录日志（本地层不受影响）
+     */
+    public void flush() {
+        if (redisMode == RedisMode.NONE || pending.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        String id;
+        while ((id = pending.poll()) != null) {
+            ids.add(id);
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                if (redisMode == RedisMode.SET) {
+                    conn.sAdd(redisKey, ids.toArray(new String[0]));
+                } else {
+                    for (String each : ids) {
+                        conn.setBit(redisKey, bitOffset(each), true);
+                    }
+                }
+                if (redisTtlSeconds > 0) {
+                    conn.expire(redisKey, redisTtlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("幂等ID写入Redis失败, {} 条: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 清空本地与Redis中的记录（如重新执行整个作业前）
+     */
+    public void clear() {
+        local.invalidateAll();
+        pending.clear();
+        if (redisMode != RedisMode.NONE) {
+            redisTemplate.delete(redisKey);
+        }
+    }
+
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    public long getRedisHits() {
+        return redisHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** BITMAP模式下因超出偏移量范围或非整数而未写入/查询Redis的ID数 */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getLocalSize() {
+        return local.estimatedSize();
+    }
+
+    /**
+     * ID能否存入Redis层：BITMAP模式须为 0 ~ MAX_BIT_OFFSET 的整数，否则拒绝并记录
+     */
+    private boolean acceptsRedis(String id) {
+        if (redisMode != RedisMode.BITMAP || bitOffset(id) >= 0) {
+            return true;
+        }
+        rejected.increment();
+        if (rejected.sum() == 1) {
+            log.warn("幂等存储 {} 为BITMAP模式，ID {} 超出位图偏移量范围[0, {}]，只保存在本地，大整数ID请使用SET模式",
+                    redisKey, id, MAX_BIT_OFFSET);
+        }
+        return false;
+    }
+
+    /**
+     * 位图偏移量
+     * @return 不是 0 ~ MAX_BIT_OFFSET 的整数时返回-1
+     */
+    static long bitOffset(String id) {
+        try {
+            long offset = Long.parseLong(id);
+            return offset >= 0 && offset <= MAX_BIT_OFFSET ? offset : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 本地未命中的ID一次pipeline查询Redis，命中的回填本地；Redis异常时按未完成处理
+     */
+    private void lookupRedis(List<String> ids, List<Integer> indexes, boolean[] done) {
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (int index : indexes) {
+                    if (redisMode == RedisMode.SET) {
+                        conn.sIsMember(redisKey, ids.get(index));
+                    } else {
+                        conn.getBit(redisKey, bitOffset(ids.get(index)));
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("幂等ID查询Redis失败: {}", e.getMessage());
+            misses.add(indexes.size());
+            return;
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            if (Boolean.TRUE.equals(results.get(i))) {
+                done[index] = true;
+                local.put(ids.get(index), Boolean.TRUE);
+                redisHits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.monitor.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/17 19:10
+ * Description: 写后（write-behind）结果汇聚：处理结果先进入内存分段缓冲，按批量大小或等待时长批量写出
+ *
+ * 1. 分段：按线程分到多个段（stripes），各段独立加锁，多个worker同时 emit 不争同一把锁；
+ * 2. 刷新：单个刷新线程，某段攒满 batchSize 时立即刷新，否则每段最早一条等待超过 maxAgeMillis 后刷新；
+ *    写出由 ResultWriter 实现（如一条多行 UPDATE/INSERT、Redis pipeline），失败按 maxRetry 重试；
+ * 3. 背压：未写出的结果超过 maxPending 时 emit 阻塞，直到刷新线程写出一批；
+ * 4. 确认：emit 返回的future在所在批次写出后完成，写出最终失败时异常完成。异步模式（asyncWindow>1）下
+ *    handleTaskAsync 直接返回该future，任务在结果落库后才确认、才记入幂等存储；
+ *    配合记录待确认消息的队列（RedisStreamQueueBackend）宕机不丢结果，出队即删除的队列宕机时在途任务仍会丢失；
+ *    只 emit 不等待的同步处理，任务确认早于结果写出，宕机时缓冲中的结果会丢失；
+ * 5. 停止：消费端 registerResultSink 后，优雅停机时 flush 剩余结果，shutdown 时 close。
+ *
+ * @param <R> 结果类型
+ */
+@Slf4j
+public class ResultSink<R> {
+
+    /**
+     * 批量写出，抛出异常即整批失败
+     */
+    @FunctionalInterface
+    public interface ResultWriter<R> {
+        void write(List<R> batch) throws Exception;
+    }
+
+    // 写出失败后重试的间隔
+    private static final long RETRY_DELAY_MILLIS = 200L;
+
+    private final String name;
+    private final ResultWriter<R> writer;
+    private final Stripe<R>[] stripes;
+    private final int stripeMask;
+    private final int batchSize;
+    private final long maxAgeMillis;
+    private final int maxPending;
+    private final Semaphore permits;
+    private final ScheduledExecutorService flusher;
+    // 是否已有立即刷新的任务在排队，避免攒满时重复提交
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private volatile int maxRetry = 2;
+
+    // 监控指标
+    private final AtomicLong emitted = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong batches = new AtomicLong(0);
+    // 每批写出耗时（含重试）
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    /**
+     * @param name         名称，用于刷新线程名与日志
+     * @param writer       批量写出实现
+     * @param batchSize    每批最多条数
+     * @param maxAgeMillis 结果在缓冲中最长等待时间
+     * @param maxPending   未写出结果上限，超过时 emit 阻塞
+     */
+    @SuppressWarnings("unchecked")
+    public ResultSink(String name, ResultWriter<R> writer, int batchSize, long maxAgeMillis, int maxPending) {
+        if (batchSize <= 0 || maxAgeMillis <= 0 || maxPending < batchSize) {
+            throw new IllegalArgumentException("batchSize、maxAgeMillis须大于0，maxPending不能小于batchSize");
+        }
+        this.name = name;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = stripeCount - 1;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "result-sink-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.max(1L, maxAgeMillis / 2);
+        flusher.scheduleWithFixedDelay(() -> flushQuietly(false), tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入一条结果，未写出的结果达到 maxPending 时阻塞
+     * @return 所在批次写出后完成，写出最终失败时异常完成
+     */
+    public CompletableFuture<Void> emit(R result) {
+        boolean acquired = false;
+        try {
+            while (!(acquired = permits.tryAcquire(100, TimeUnit.MILLISECONDS))) {
+                if (closed) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new IllegalStateException("结果汇聚 " + name + " 写入被中断", e));
+        }
+        if (!acquired || closed) {
+            return rejectClosed(acquired);
+        }
+        Entry<R> entry = new Entry<>(result);
+        Stripe<R> stripe = stripes[(int) Thread.currentThread().threadId() & stripeMask];
+        boolean full;
+        synchronized (stripe) {
+            // close 先置 closed 再逐段取出剩余结果，段锁内再次检查，保证加入的结果一定会被写出或由 close 完成
+            if (closed) {
+                return rejectClosed(true);
+            }
+            if (stripe.entries.isEmpty()) {
+                stripe.firstAt = System.currentTimeMillis();
+            }
+            stripe.entries.add(entry);
+            full = stripe.entries.size() >= batchSize;
+        }
+        emitted.incrementAndGet();
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly(false);
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+        return entry.done;
+    }
+
+    private CompletableFuture<Void> rejectClosed(boolean acquired) {
+        if (acquired) {
+            permits.release(1);
+        }
+        return CompletableFuture.failedFuture(new IllegalStateException("结果汇聚 " + name + " 已关闭"));
+    }
+
+    /**
+     * 写出全部缓冲结果并等待完成（在刷新线程上执行，与定时刷新串行）
+     * @return 是否在超时前全部写出
+     */
+    public boolean flush(long timeoutMillis) {
+        try {
+            flusher.submit(() -> flushQuietly(true)).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return getPending() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("结果汇聚 {} 刷新未在 {}ms 内完成: {}", name, timeoutMillis, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 写出剩余结果并停止刷新线程，之后 emit 直接失败
+     */
+    public void close(long timeoutMillis) {
+        flush(timeoutMillis);
+        closed = true;
+        flusher.shutdownNow();
+        List<Entry<R>> remaining = new ArrayList<>();
+        for (Stripe<R> stripe : stripes) {
+            synchronized (stripe) {
+                remaining.addAll(stripe.entries);
+                stripe.entries.clear();
+            }
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("结果汇聚 {} 关闭时 {} 条结果未写出", name, remaining.size());
+            complete(remaining, new IllegalStateException("结果汇聚 " + name + " 已关闭"));
+        }
+    }
+
+    /**
+     * 刷新线程上执行，任何异常都不向外抛出（否则定时刷新会被取消）
+     */
+    private void flushQuietly(boolean force) {
+        try {
+            flushStripes(force);
+        } catch (Exception e) {
+            log.error("结果汇聚 {} 刷新异常: {}", name, e.getMessage(), e);
+        }
+    }
+
+    private void flushStripes(boolean force) {
+        long now = System.currentTimeMillis();
+        for (Stripe<R> stripe : stripes) {
+            while (true) {
+                List<Entry<R>> batch;
+                synchronized (stripe) {
+                    int size = stripe.entries.size();
+                    if (size == 0 || (!force && size < batchSize && now - stripe.firstAt < maxAgeMillis)) {
+                        break;
+                    }
+                    batch = drain(stripe);
+                }
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * 从段中取出最多 batchSize 条，剩余的从现在开始计时
+     */
+    private List<Entry<R>> drain(Stripe<R> stripe) {
+        List<Entry<R>> entries = stripe.entries;
+        if (entries.size() <= batchSize) {
+            stripe.entries = new ArrayList<>();
+            return entries;
+        }
+        List<Entry<R>> batch = new ArrayList<>(entries.subList(0, batchSize));
+        entries.subList(0, batchSize).clear();
+        stripe.firstAt = System.currentTimeMillis();
+        return batch;
+    }
+
+    private void write(List<Entry<R>> batch) {
+        List<R> values = new ArrayList<>(batch.size());
+        for (Entry<R> entry : batch) {
+            values.add(entry.value);
+        }
+        long start = System.nanoTime();
+        Exception failure = null;
+        for (int attempt = 0; attempt <= maxRetry; attempt++) {
+            try {
+                writer.write(values);
+                failure = null;
+                break;
+            } catch (Exception e) {
+                failure = e;
+                log.warn("结果汇聚 {} 写出 {} 条失败，第{}次: {}", name, values.size(), attempt + 1, e.getMessage());
+                if (attempt < maxRetry && !sleepBeforeRetry()) {
+                    break;
+                }
+            }
+        }
+        writeLatency.record(System.nanoTime() - start);
+        batches.incrementAndGet();
+        if (failure == null) {
+            written.addAndGet(values.size());
+        } else {
+            failed.addAndGet(values.size());
+            log.error("结果汇聚 {} 写出 {} 条最终失败", name, values.size(), failure);
+        }
+        complete(batch, failure);
+    }
+
+    /**
+     * 重试前等待，刷新线程被中断（关闭）时返回false
+     */
+    private static boolean sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void complete(List<Entry<R>> batch, Exception failure) {
+        permits.release(batch.size());
+        for (Entry<R> entry : batch) {
+            if (failure == null) {
+                entry.done.complete(null);
+            } else {
+                entry.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // ===================== 配置及监控相关 ========================
+
+    /** 设置每批写出失败后的重试次数 */
+    public void setMaxRetry(int maxRetry) {
+        this.maxRetry = maxRetry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** 已 emit、尚未写出（含写出中）的结果数 */
+    public int getPending() {
+        return maxPending - permits.availablePermits();
+    }
+
+    /** 每批写出耗时分布 */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * 当前状态：累计 emit/写出/失败条数、批次数、平均每批条数、未写出数
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batchCount = batches.get();
+        stats.put("sink", name);
+        stats.put("emitted", emitted.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount > 0 ? (written.get() + failed.get()) / (double) batchCount : 0.0);
+        stats.put("pending", getPending());
+        stats.put("maxPending", maxPending);
+        return stats;
+    }
+
+    private static final class Stripe<R> {
+        List<Entry<R>> entries = new ArrayList<>();
+        long firstAt;
+    }
+
+    private static final class Entry<R> {
+        final R value;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(R value) {
+            this.value = value;
+        }
+    }
+}
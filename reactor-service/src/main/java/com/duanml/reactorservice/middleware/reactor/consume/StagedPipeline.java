@@ -0,0 +1,378 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.consume</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/17 14:20
+ * Description: 多阶段任务流水线：阶段A -> 阶段B -> 阶段C，每个阶段独立的并发度、调度器、批量和有界缓冲
+ *
+ * 1. 每个阶段是一段 publishOn(调度器, 缓冲大小) + flatMap(并发度)：CPU阶段放在 Schedulers.parallel()，
+ *    I/O阶段放在有界弹性线程池或虚拟线程（ioScheduler / virtualThreads），各类资源分别打满，互不占用线程；
+ * 2. 背压由下游需求驱动：下游阶段缓冲满时上游阶段不再继续，最终 submit 在入口缓冲满时阻塞调用线程（消费worker）；
+ * 3. 批量阶段（batch）按 batchSize 或 maxWait 攒批后一次处理（如批量写库），整批失败时批内任务全部失败；
+ * 4. 任一阶段失败（抛异常）的任务不再进入后续阶段，submit 返回的future异常完成；
+ * 5. 结果汇聚阶段（sink）：把任务当前值写入 ResultSink，批次写出后任务才完成，写出由汇聚的刷新线程批量执行；
+ * 6. 阶段的调度器归流水线所有，dispose 时一并释放（共享的 Schedulers.parallel()/boundedElastic() 不受影响）；
+ * 7. 取消：submit 返回的future被取消（如消费端处理超时）后，该任务尚未开始的阶段不再执行，
+ *    已在执行的阶段不会被中断。
+ *
+ * 与 AbstractReactorConsumeBatch 配合：setPipeline 后异步模式（asyncWindow>1）的每个任务交给 submit，
+ * 重试、超时、确认、幂等与 handleTaskAsync 相同；重试时任务从第一个阶段重新开始。
+ *
+ * 示例：
+ * StagedPipeline.<UserTask>builder("user-task")
+ *         .map("phone", 4, Schedulers.parallel(), this::generatePhone)
+ *         .map("update", 32, StagedPipeline.ioScheduler("user-task-io", 32), this::updatePhone)
+ *         .build();
+ *
+ * @param <I> 入口任务类型
+ */
+@Slf4j
+public final class StagedPipeline<I> {
+
+    // 入口缓冲满时 submit 的重试间隔
+    private static final long SUBMIT_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final List<Stage> stages;
+    private final Sinks.Many<Item> entry;
+    private final Disposable subscription;
+    private volatile boolean disposed = false;
+
+    private StagedPipeline(String name, List<Stage> stages, List<Function<Flux<Item>, Flux<Item>>> operators,
+                           int entryBufferSize) {
+        this.name = name;
+        this.stages = stages;
+        this.entry = Sinks.many().unicast().onBackpressureBuffer(Queues.<Item>get(entryBufferSize).get());
+        Flux<Item> flux = entry.asFlux();
+        for (Function<Flux<Item>, Flux<Item>> operator : operators) {
+            flux = operator.apply(flux);
+        }
+        this.subscription = flux.subscribe(item -> item.done.complete(null),
+                e -> log.error("流水线 {} 异常终止: {}", name, e.getMessage(), e));
+    }
+
+    public static <T> Builder<T, T> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    /**
+     * 提交一个任务，入口缓冲满时阻塞等待
+     * @return 所有阶段完成时正常完成，任一阶段失败时异常完成
+     */
+    public CompletableFuture<Void> submit(I task) {
+        Item item = new Item(task);
+        synchronized (entry) { // 单播sink不允许并发发射
+            while (true) {
+                if (disposed) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("流水线 " + name + " 已关闭"));
+                }
+                Sinks.EmitResult result = entry.tryEmitNext(item);
+                if (result.isSuccess()) {
+                    return item.done;
+                }
+                if (result != Sinks.EmitResult.FAIL_OVERFLOW) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("流水线 " + name + " 提交失败: " + result));
+                }
+                LockSupport.parkNanos(SUBMIT_PARK_NANOS);
+                if (Thread.currentThread().isInterrupted()) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("流水线 " + name + " 提交被中断"));
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭流水线并释放各阶段调度器，缓冲中尚未完成的任务其future不再完成（由调用方超时处理）
+     */
+    public void dispose() {
+        disposed = true;
+        subscription.dispose();
+        Set<Scheduler> schedulers = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Stage stage : stages) {
+            if (stage.scheduler != null && schedulers.add(stage.scheduler)) {
+                stage.scheduler.dispose();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 各阶段当前状态：排队数（已进入本阶段缓冲、尚未开始）、执行中、累计完成/失败数
+     * 排队数持续较高的阶段即瓶颈，应提高其并发度或批量
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> result = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("stage", stage.name);
+            stat.put("parallelism", stage.parallelism);
+            stat.put("batchSize", stage.batchSize);
+            stat.put("queued", stage.queued.get());
+            stat.put("active", stage.active.get());
+            stat.put("processed", stage.processed.get());
+            stat.put("failed", stage.failed.get());
+            result.add(stat);
+        }
+        return result;
+    }
+
+    /**
+     * 有界弹性线程池，适合阻塞I/O阶段（JDBC、MyBatis）
+     */
+    public static Scheduler ioScheduler(String name, int threads) {
+        return Schedulers.newBoundedElastic(threads, Integer.MAX_VALUE, name, 60, true);
+    }
+
+    /**
+     * 每个任务一个虚拟线程，适合高延迟的阻塞I/O阶段，并发度由阶段的 parallelism 限制
+     */
+    public static Scheduler virtualThreads(String name) {
+        return Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), name);
+    }
+
+    /**
+     * 流水线中的一个任务：当前阶段的值和完成信号
+     */
+    private static final class Item {
+        Object value;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Item(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * 阶段定义与运行计数
+     */
+    private static final class Stage {
+        final String name;
+        final int parallelism;
+        final int batchSize;          // 1 为逐个处理
+        final Scheduler scheduler;
+        final AtomicInteger queued = new AtomicInteger(0);
+        final AtomicInteger active = new AtomicInteger(0);
+        final AtomicLong processed = new AtomicLong(0);
+        final AtomicLong failed = new AtomicLong(0);
+
+        Stage(String name, int parallelism, int batchSize, Scheduler scheduler) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.batchSize = batchSize;
+            this.scheduler = scheduler;
+        }
+    }
+
+    /**
+     * 可抛出受检异常的阶段函数
+     */
+    @FunctionalInterface
+    public interface StageFunction<A, B> {
+        B apply(A value) throws Exception;
+    }
+
+    /**
+     * 可抛出受检异常的一次阶段调用
+     */
+    @FunctionalInterface
+    private interface BlockingCall {
+        void run() throws Exception;
+    }
+
+    /**
+     * 可抛出受检异常的批量阶段
+     */
+    @FunctionalInterface
+    public interface BatchConsumer<A> {
+        void accept(List<A> values) throws Exception;
+    }
+
+    /**
+     * 流水线构建器，每次 map/batch 追加一个阶段
+     * @param <I> 入口任务类型
+     * @param <O> 当前最后一个阶段的输出类型
+     */
+    public static final class Builder<I, O> {
+        private final String name;
+        private final List<Stage> stages = new ArrayList<>();
+        private final List<Function<Flux<Item>, Flux<Item>>> operators = new ArrayList<>();
+        private int bufferSize = 256;
+        private int entryBufferSize;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 设置之后追加的阶段的输入缓冲大小（第一个阶段的缓冲即 submit 的入口缓冲），默认256
+         */
+        public Builder<I, O> bufferSize(int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("bufferSize 必须大于0: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * 逐个处理的阶段：在 scheduler 上同时最多执行 parallelism 个
+         */
+        @SuppressWarnings("unchecked")
+        public <R> Builder<I, R> map(String stageName, int parallelism, Scheduler scheduler, StageFunction<O, R> fn) {
+            Stage stage = addStage(stageName, parallelism, 1, scheduler);
+            int prefetch = bufferSize;
+            operators.add(flux -> flux
+                    .doOnNext(item -> stage.queued.incrementAndGet())
+                    .publishOn(scheduler, prefetch)
+                    .flatMap(item -> {
+                        stage.queued.decrementAndGet();
+                        if (item.done.isDone()) {
+                            return Mono.empty(); // 已取消
+                        }
+                        return run(stage, Collections.singletonList(item), () -> item.value = fn.apply((O) item.value))
+                                .map(ok -> item);
+                    }, parallelism));
+            return (Builder<I, R>) this;
+        }
+
+        /**
+         * 批量阶段：攒够 batchSize 个或等待 maxWait 后一次处理，同时最多 parallelism 批在 scheduler 上执行；
+         * 任务原样进入下一阶段
+         */
+        @SuppressWarnings("unchecked")
+        public Builder<I, O> batch(String stageName, int batchSize, Duration maxWait, int parallelism,
+                                   Scheduler scheduler, BatchConsumer<O> fn) {
+            Stage stage = addStage(stageName, parallelism, batchSize, scheduler);
+            int prefetch = Math.max(bufferSize, batchSize);
+            operators.add(flux -> flux
+                    .doOnNext(item -> stage.queued.incrementAndGet())
+                    .publishOn(scheduler, prefetch)
+                    .bufferTimeout(batchSize, maxWait, scheduler, true)
+                    .flatMap(batch -> {
+                        stage.queued.addAndGet(-batch.size());
+                        List<Item> live = new ArrayList<>(batch.size());
+                        List<O> values = new ArrayList<>(batch.size());
+                        for (Item item : batch) {
+                            if (!item.done.isDone()) { // 跳过已取消的
+                                live.add(item);
+                                values.add((O) item.value);
+                            }
+                        }
+                        if (live.isEmpty()) {
+                            return Flux.<Item>empty();
+                        }
+                        return run(stage, live, () -> fn.accept(values))
+                                .flatMapMany(ok -> Flux.fromIterable(live));
+                    }, parallelism));
+            return this;
+        }
+
+        /**
+         * 结果汇聚阶段：当前值写入 ResultSink，所在批次写出后进入下一阶段（通常为最后一个阶段）；
+         * 同时最多 maxPending 个在途，独占该汇聚时 emit 不会阻塞阶段线程
+         */
+        @SuppressWarnings("unchecked")
+        public Builder<I, O> sink(String stageName, ResultSink<O> sink, int maxPending) {
+            Stage stage = addStage(stageName, maxPending, 1, null);
+            operators.add(flux -> flux
+                    .doOnNext(item -> stage.queued.incrementAndGet())
+                    .flatMap(item -> {
+                        stage.queued.decrementAndGet();
+                        if (item.done.isDone()) {
+                            return Mono.<Item>empty(); // 已取消
+                        }
+                        stage.active.incrementAndGet();
+                        return Mono.fromFuture(sink.emit((O) item.value))
+                                .then(Mono.fromCallable(() -> {
+                                    stage.processed.incrementAndGet();
+                                    return item;
+                                }))
+                                .onErrorResume(e -> {
+                                    fail(stage, Collections.singletonList(item), e);
+                                    return Mono.empty();
+                                })
+                                .doFinally(signal -> stage.active.decrementAndGet());
+                    }, maxPending));
+            return this;
+        }
+
+        public StagedPipeline<I> build() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("流水线 " + name + " 至少需要一个阶段");
+            }
+            return new StagedPipeline<>(name, List.copyOf(stages), List.copyOf(operators), entryBufferSize);
+        }
+
+        private Stage addStage(String stageName, int parallelism, int batchSize, Scheduler scheduler) {
+            if (parallelism <= 0 || batchSize <= 0) {
+                throw new IllegalArgumentException("阶段 " + stageName + " 的并发度和批量必须大于0");
+            }
+            if (stages.isEmpty()) {
+                entryBufferSize = Math.max(bufferSize, batchSize);
+            }
+            Stage stage = new Stage(stageName, parallelism, batchSize, scheduler);
+            stages.add(stage);
+            return stage;
+        }
+
+        /**
+         * 在阶段调度器上执行一次（逐个或整批）
+         * @return 成功时发出 TRUE；失败时批内任务全部失败，返回空，不再向下游传递
+         */
+        private static Mono<Boolean> run(Stage stage, List<Item> items, BlockingCall call) {
+            return Mono.fromCallable(() -> {
+                        stage.active.addAndGet(items.size());
+                        try {
+                            call.run();
+                        } finally {
+                            stage.active.addAndGet(-items.size());
+                        }
+                        stage.processed.addAndGet(items.size());
+                        return Boolean.TRUE;
+                    })
+                    .subscribeOn(stage.scheduler)
+                    .onErrorResume(e -> {
+                        fail(stage, items, e);
+                        return Mono.empty();
+                    });
+        }
+
+        private static void fail(Stage stage, List<Item> items, Throwable e) {
+            stage.failed.addAndGet(items.size());
+            for (Item item : items) {
+                item.done.completeExceptionally(e);
+            }
+        }
+    }
+}
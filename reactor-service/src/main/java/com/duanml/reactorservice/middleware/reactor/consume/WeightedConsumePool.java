@@ -0,0 +1,434 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.log.HotPathLog;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多队列共享的消费线程池（加权差额轮询 Deficit Round Robin）
+ * ================================================
+ * 1. 多个 AbstractReactorConsumeBatch 注册为不同的“车道”，共用一组worker，
+ *    也可以把同一逻辑队列的多个优先级子队列分别注册为车道；
+ * 2. 每轮轮到某车道时给它加 weight * quantum 个任务额度，worker按额度批量拉取，
+ *    额度用完才轮到下一个车道；队列为空的车道清空额度并短暂跳过；
+ * 3. 每个车道可设置最大并发（同时处理该车道的worker数上限）；
+ * 4. 权重、并发上限、worker数均可运行时调整；worker按编号登记，减少后再增加时只补齐已退出的编号；
+ * 5. 停机：先停止各车道，再等待worker退出，最长为各车道 stopTimeoutMillis 的最大值，超时后中断worker。
+ *
+ * 注册到池中的批处理通过 startShared() 启动，不再创建自有worker。
+ */
+@Slf4j
+public class WeightedConsumePool {
+
+    private static final HotPathLog LANE_ERROR_LOG = HotPathLog.rateLimited(log, "pool.lane-error", 10, 10_000L);
+    // 中断worker后再等待其退出的时长
+    private static final long STOP_INTERRUPT_GRACE_MILLIS = 5_000L;
+
+    // 每单位权重每轮的任务额度
+    private final int quantum;
+    // 所有车道都无任务时worker的休眠时长
+    private final long idleSleepMillis;
+
+    private final List<Lane> lanes = new CopyOnWriteArrayList<>();
+    private final Object scheduleLock = new Object();
+    private int cursor = 0; // 当前轮到的车道下标，受scheduleLock保护
+
+    private final AtomicInteger workerCount = new AtomicInteger(0);
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private final Scheduler scheduler = Schedulers.boundedElastic();
+    // 存活的worker：编号 -> 句柄，worker退出时移除自己；增删及退出判断均持有 workerLock
+    private final Map<Integer, WorkerSlot> workers = new HashMap<>();
+    private final Object workerLock = new Object();
+    private final Object shutdownLock = new Object(); // 等待worker退出用锁
+
+    public WeightedConsumePool() {
+        this(10, 200L);
+    }
+
+    /**
+     * @param quantum         每单位权重每轮的任务额度
+     * @param idleSleepMillis 全部车道空闲时的休眠时长
+     */
+    public WeightedConsumePool(int quantum, long idleSleepMillis) {
+        this.quantum = quantum;
+        this.idleSleepMillis = idleSleepMillis;
+    }
+
+    // ===================== 车道管理 ========================
+
+    /**
+     * 注册车道
+     * @param name           车道名称（唯一）
+     * @param batch          批处理实现
+     * @param weight         权重（>=1）
+     * @param maxConcurrency 最大并发worker数
+     */
+    public void register(String name, AbstractReactorConsumeBatch<?> batch, int weight, int maxConcurrency) {
+        if (findLane(name) != null) {
+            throw new IllegalArgumentException("车道已存在: " + name);
+        }
+        lanes.add(new Lane(name, batch, Math.max(1, weight), Math.max(1, maxConcurrency)));
+        if (isRunning.get()) {
+            batch.startShared();
+        }
+        log.info("共享线程池注册车道: {}, weight={}, maxConcurrency={}", name, weight, maxConcurrency);
+    }
+
+    /**
+     * 注销车道，并优雅停止该车道的批处理
+     */
+    public void unregister(String name) {
+        Lane lane = findLane(name);
+        if (lane == null) {
+            return;
+        }
+        synchronized (scheduleLock) {
+            lanes.remove(lane);
+            cursor = 0;
+        }
+        lane.batch.stop();
+    }
+
+    /** 运行时调整车道权重 */
+    public void setWeight(String name, int weight) {
+        requireLane(name).weight = Math.max(1, weight);
+    }
+
+    /** 运行时调整车道最大并发 */
+    public void setMaxConcurrency(String name, int maxConcurrency) {
+        requireLane(name).maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    // ===================== 启停 ========================
+
+    /**
+     * 启动共享线程池
+     * @param workerNum worker总数
+     */
+    public synchronized void start(int workerNum) {
+        stop();
+        isRunning.set(true);
+        lanes.forEach(lane -> lane.batch.startShared());
+        workerCount.set(0);
+        adjustWorkerCount(workerNum);
+        log.info("共享线程池启动, workerNum={}, lanes={}", workerNum, lanes.size());
+    }
+
+    /**
+     * 动态调整worker数：减少时编号超限的worker处理完手头授权后自行退出；
+     * 增加时补齐 1..newCount 中不存活的编号，尚未退出的同编号worker继续运行，不会重复创建
+     */
+    public synchronized void adjustWorkerCount(int newCount) {
+        if (newCount < 0) {
+            throw new IllegalArgumentException("worker数量不能小于0: " + newCount);
+        }
+        synchronized (workerLock) {
+            workerCount.set(newCount);
+            if (!isRunning.get()) {
+                return;
+            }
+            for (int i = 1; i <= newCount; i++) {
+                if (!workers.containsKey(i)) {
+                    spawnWorker(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止：先停止所有车道（等待在途任务完成），再等待worker退出，
+     * 超过各车道 stopTimeoutMillis 的最大值仍未退出的worker被中断
+     */
+    public synchronized void stop() {
+        if (!isRunning.compareAndSet(true, false)) {
+            return;
+        }
+        long timeoutMillis = 0L;
+        for (Lane lane : lanes) {
+            lane.batch.stop();
+            timeoutMillis = Math.max(timeoutMillis, lane.batch.stopTimeoutMillis);
+        }
+        if (!awaitWorkers(timeoutMillis)) {
+            log.warn("等待共享线程池worker退出超时({}ms)，中断 {} 个仍在处理的worker", timeoutMillis, activeWorkers.get());
+            disposeWorkers();
+            if (!awaitWorkers(STOP_INTERRUPT_GRACE_MILLIS)) {
+                log.error("共享线程池 {} 个worker中断后仍未退出", activeWorkers.get());
+            }
+        }
+        disposeWorkers();
+        synchronized (workerLock) {
+            workers.clear();
+        }
+        log.info("共享线程池已停止");
+    }
+
+    /**
+     * 等待活跃worker数归零
+     * @return 是否在超时前全部退出
+     */
+    private boolean awaitWorkers(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (shutdownLock) {
+            while (activeWorkers.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    shutdownLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return activeWorkers.get() == 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 登记并调度一个worker，调用方须持有 workerLock
+     */
+    private void spawnWorker(int workerId) {
+        WorkerSlot slot = new WorkerSlot();
+        workers.put(workerId, slot);
+        slot.handle = scheduler.schedule(workerRunnable(workerId, slot));
+    }
+
+    /**
+     * 判断worker是否应退出，应退出时同时注销；与 adjustWorkerCount 互斥，
+     * 避免“已决定退出但仍登记为存活”导致增加时漏补该编号
+     */
+    private boolean retireWorker(int workerId, WorkerSlot slot) {
+        synchronized (workerLock) {
+            if (isRunning.get() && workerId <= workerCount.get()) {
+                return false;
+            }
+            workers.remove(workerId, slot);
+            return true;
+        }
+    }
+
+    /** 中断全部worker */
+    private void disposeWorkers() {
+        synchronized (workerLock) {
+            for (WorkerSlot slot : workers.values()) {
+                Disposable handle = slot.handle;
+                if (handle != null) {
+                    handle.dispose();
+                }
+            }
+        }
+    }
+
+    // ===================== 调度 ========================
+
+    /**
+     * worker主循环
+     * @param workerId worker编号（1开始）
+     * @param slot     登记的句柄，退出时据此注销（同编号可能已有新worker）
+     */
+    private Runnable workerRunnable(int workerId, WorkerSlot slot) {
+        return () -> {
+            activeWorkers.incrementAndGet();
+            try {
+                while (true) {
+                    // 停机或worker数量减少后编号超限，退出
+                    if ((!isRunning.get() || workerId > workerCount.get()) && retireWorker(workerId, slot)) {
+                        break;
+                    }
+                    Grant grant = acquire();
+                    if (grant == null) {
+                        try {
+                            Thread.sleep(idleSleepMillis);
+                        } catch (InterruptedException e) {
+                            // 停机超时中断，保留中断标记并退出
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        continue;
+                    }
+                    int drained = 0;
+                    try {
+                        drained = grant.lane.batch.drain(workerId, grant.count);
+                    } catch (Exception e) {
+                        LANE_ERROR_LOG.error("共享线程池 Worker-{} 处理车道 {} 异常: {}", workerId, grant.lane.name, e.getMessage(), e);
+                    } finally {
+                        release(grant, drained);
+                    }
+                }
+            } finally {
+                synchronized (workerLock) {
+                    workers.remove(workerId, slot);
+                }
+                activeWorkers.decrementAndGet();
+                synchronized (shutdownLock) {
+                    shutdownLock.notifyAll();
+                }
+                log.info("共享线程池 Worker-{} 退出", workerId);
+            }
+        };
+    }
+
+    /**
+     * 按DRR选出下一个可服务的车道并扣减额度
+     * @return 授权，null表示当前没有可服务的车道
+     */
+    private Grant acquire() {
+        synchronized (scheduleLock) {
+            int size = lanes.size();
+            if (size == 0) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            // 最多转两圈：第一圈可能都在消耗上一轮残余额度
+            for (int visited = 0; visited < size * 2; visited++) {
+                cursor %= size;
+                Lane lane = lanes.get(cursor);
+                boolean serviceable = lane.isServiceable(now);
+                if (serviceable && lane.deficit >= 1) {
+                    int count = (int) Math.min(lane.deficit, lane.batch.getPopBatchSize());
+                    lane.deficit -= count;
+                    lane.inFlight.incrementAndGet();
+                    return new Grant(lane, count);
+                }
+                if (!serviceable && lane.idleUntil > now) {
+                    lane.deficit = 0; // 空队列不累积额度
+                }
+                // 轮到下一个车道，给它本轮额度（上限为两轮，避免受限车道无限累积）
+                cursor = (cursor + 1) % size;
+                Lane next = lanes.get(cursor);
+                long credit = (long) next.weight * quantum;
+                next.deficit = Math.min(next.deficit + credit, credit * 2);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 归还授权：队列已空则清零额度并短暂跳过该车道；
+     * 打包ID拆分后超出授权的任务数从额度中扣除（可为负），该车道之后几轮让出，整体仍按权重分配
+     */
+    private void release(Grant grant, int drained) {
+        Lane lane = grant.lane;
+        lane.inFlight.decrementAndGet();
+        lane.served.addAndGet(drained);
+        if (drained > grant.count) {
+            synchronized (scheduleLock) {
+                lane.deficit -= drained - grant.count;
+            }
+        } else if (drained < grant.count) {
+            synchronized (scheduleLock) {
+                lane.deficit = 0;
+                if (drained == 0) {
+                    lane.idleUntil = System.currentTimeMillis() + idleSleepMillis;
+                }
+            }
+        }
+    }
+
+    // ===================== 监控 ========================
+
+    /**
+     * 各车道状态：权重、并发上限、在途worker数、累计拉取任务数
+     */
+    public List<Map<String, Object>> status() {
+        List<Map<String, Object>> result = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes) {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("lane", lane.name);
+            stat.put("queue", lane.batch.getQueueName());
+            stat.put("weight", lane.weight);
+            stat.put("maxConcurrency", lane.maxConcurrency);
+            stat.put("inFlight", lane.inFlight.get());
+            stat.put("served", lane.served.get());
+            stat.put("completed", lane.batch.getCompleted());
+            stat.put("failed", lane.batch.getFailed());
+            result.add(stat);
+        }
+        return result;
+    }
+
+    public boolean isRunning() {
+        return isRunning.get();
+    }
+
+    public int getWorkerCount() {
+        return workerCount.get();
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    private Lane findLane(String name) {
+        for (Lane lane : lanes) {
+            if (lane.name.equals(name)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private Lane requireLane(String name) {
+        Lane lane = findLane(name);
+        if (lane == null) {
+            throw new IllegalArgumentException("车道不存在: " + name);
+        }
+        return lane;
+    }
+
+    /**
+     * 车道：一个批处理及其调度参数
+     */
+    private static class Lane {
+        final String name;
+        final AbstractReactorConsumeBatch<?> batch;
+        volatile int weight;
+        volatile int maxConcurrency;
+        final AtomicInteger inFlight = new AtomicInteger(0);
+        final AtomicLong served = new AtomicLong(0L);
+        long deficit = 0;   // 剩余额度，打包ID超额时可为负，受scheduleLock保护
+        long idleUntil = 0; // 队列为空后的跳过截止时间，受scheduleLock保护
+
+        Lane(String name, AbstractReactorConsumeBatch<?> batch, int weight, int maxConcurrency) {
+            this.name = name;
+            this.batch = batch;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        boolean isServiceable(long now) {
+            return batch.isRunning() && inFlight.get() < maxConcurrency && now >= idleUntil;
+        }
+    }
+
+    private static final class WorkerSlot {
+        volatile Disposable handle;
+    }
+
+    /**
+     * 一次调度授权：车道 + 本次可拉取的任务数
+     */
+    private static class Grant {
+        final Lane lane;
+        final int count;
+
+        Grant(Lane lane, int count) {
+            this.lane = lane;
+            this.count = count;
+        }
+    }
+}
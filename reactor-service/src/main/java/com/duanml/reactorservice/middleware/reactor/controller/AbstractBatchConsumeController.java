@@ -1,11 +1,19 @@
 package com.duanml.reactorservice.middleware.reactor.controller;
 
 import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactorConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.consume.ConcurrencyBudget;
+import com.duanml.reactorservice.middleware.reactor.consume.ResultSink;
+import com.duanml.reactorservice.middleware.reactor.consume.StagedPipeline;
+import com.duanml.reactorservice.middleware.reactor.job.JobProgressTracker;
+import com.duanml.reactorservice.middleware.reactor.monitor.LatencyHistogram;
+import com.duanml.reactorservice.middleware.reactor.monitor.MetricsStreamHub;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -18,6 +26,11 @@ import java.util.stream.Collectors;
  * 2. 自动监听全局指令(redis)，可动态调整worker数量。
  * 3. 状态自动上报，任意节点可聚合获取全局状态。
  * 4. 业务批处理节点只需继承本类即可，无需重复造轮子。
+ * 5. /metrics/stream 以SSE每秒推送本节点指标增量，一次采样广播给所有订阅者。
+ * 6. 应用关闭时由 ReactorGracefulShutdown 调用 shutdown，停止后台线程并删除本节点状态。
+ * 7. 集群并发预算（/setBudget）：全集群worker总数上限，由指令监听线程按各存活节点的每worker吞吐加权分配，
+ *    节点加入、退出后自动重新分配，见 ConcurrencyBudget；设置预算后 /setWorkerNum 不再生效，预算为0时恢复。
+ * 8. 使用多阶段流水线时，/stages 查看各阶段排队与执行情况，定位瓶颈阶段；/sinks 查看结果汇聚的批量写出情况。
  *
  * @param <T> 业务数据类型（如订单、用户等）
  * @param <E> 具体批处理实现（需继承AbstractReactorConsumeBatch<T>）
@@ -38,8 +51,24 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
     // 节点状态/workerNum等key前缀
     private static final String STATUS_KEY_PREFIX = "batch:node:";
 
+    // 指令监听线程的检查间隔，也是预算心跳间隔
+    private static final long WATCH_INTERVAL_MILLIS = 3000L;
+    // 每worker吞吐的EWMA平滑系数
+    private static final double RATE_EWMA_ALPHA = 0.3;
+
+    // 集群并发预算
+    protected final ConcurrencyBudget budget;
+
     // 控制自感知线程的生命周期
     private final AtomicBoolean loopFlag = new AtomicBoolean(true);
+    private final Thread commandWatcher;
+    private final Thread statusReporter;
+
+    // 指标推送：每秒采样一次，广播给所有SSE订阅者
+    private final MetricsStreamHub metricsHub;
+    // 上一次采样的累计值，只由采样线程访问
+    private long lastSampleAt = 0L;
+    private int lastCompleted, lastFailed, lastRetried, lastDiscarded, lastDuplicates, lastExpired;
 
     /**
      * 构造方法，注入具体批处理实现、redis模板、节点ID
@@ -48,8 +77,35 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
         this.executor = executor;
         this.redisTemplate = redisTemplate;
         this.nodeId = nodeId;
-        startCommandWatcher();   // 启动指令监听线程
-        startStatusReporter();   // 启动状态上报线程
+        this.metricsHub = new MetricsStreamHub("consume-" + nodeId, this::sampleMetrics, 1000L, 100);
+        this.budget = new ConcurrencyBudget(redisTemplate, executor.getQueueName(), nodeId);
+        this.commandWatcher = startCommandWatcher();   // 启动指令监听线程
+        this.statusReporter = startStatusReporter();   // 启动状态上报线程
+    }
+
+    /**
+     * 停止本节点的指令监听、状态上报和指标推送线程，并删除本节点状态（不再出现在 statusAll 中）
+     * 批处理本身由 ReactorGracefulShutdown 随后停止；先停指令监听，避免停机过程中被全局指令重新启动
+     */
+    public void shutdown() {
+        if (!loopFlag.compareAndSet(true, false)) {
+            return;
+        }
+        for (Thread thread : List.of(commandWatcher, statusReporter)) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        metricsHub.shutdown();
+        try {
+            budget.leave();
+            redisTemplate.delete(STATUS_KEY_PREFIX + nodeId + ":status");
+        } catch (Exception e) {
+            System.err.println("Status cleanup error: " + e.getMessage());
+        }
     }
 
     // ================= 全局操作API =================
@@ -84,6 +140,26 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
         return "节点 " + nodeId + " 的 workerNum 已设置为 " + workerNum + "（由本节点" + this.nodeId + "发起）";
     }
 
+    /**
+     * 设置集群并发预算：全集群worker总数上限，按各节点每worker吞吐加权分配；0为不限制（恢复各节点 workerNum）
+     *
+     * @param budget 全集群worker总数
+     */
+    @PostMapping("/setBudget")
+    public String setBudget(@RequestParam int budget) {
+        this.budget.setBudget(budget);
+        return budget > 0 ? "集群并发预算已设置为 " + budget + "（由本节点" + nodeId + "发起），各节点将在下一次心跳后重新分配"
+                : "集群并发预算已取消，各节点恢复各自的 workerNum";
+    }
+
+    /**
+     * 集群并发预算及本节点最近一次看到的分配：各节点每worker吞吐、分到的worker数
+     */
+    @GetMapping("/budget")
+    public Map<String, Object> budget() {
+        return budget.status();
+    }
+
     /**
      * 聚合查询所有节点的状态
      *
@@ -140,34 +216,180 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
                 "completed", executor.getCompleted(),
                 "failed", executor.getFailed(),
                 "retried", executor.getRetried(),
-                "discarded", executor.getDiscarded()
+                "discarded", executor.getDiscarded(),
+                "duplicates", executor.getDuplicates(),
+                "expired", executor.getExpired()
         );
     }
 
+    /**
+     * 多阶段流水线各阶段的排队数、执行中、完成/失败数，未使用流水线返回空列表
+     */
+    @GetMapping("/stages")
+    public List<Map<String, Object>> stages() {
+        StagedPipeline<T> pipeline = executor.getPipeline();
+        return pipeline != null ? pipeline.stats() : List.of();
+    }
+
+    /**
+     * 已登记的结果汇聚：累计写出条数、批次数、平均每批条数、未写出数
+     */
+    @GetMapping("/sinks")
+    public List<Map<String, Object>> sinks() {
+        return executor.getResultSinks().stream().map(ResultSink::stats).toList();
+    }
+
+    /**
+     * 查询当前作业的集群进度：总量、已处理/失败数、集群处理速率、预计剩余时间
+     */
+    @GetMapping("/progress")
+    public JobProgressTracker.JobProgress progress() {
+        return executor.getJobProgress();
+    }
+
+    /**
+     * 本节点指标实时推送（SSE，事件名 metrics，每秒一帧）
+     * 每帧为上一秒的增量：吞吐、处理耗时分位数、排队时长分位数（信封任务）、队列积压、worker数
+     */
+    @GetMapping(value = "/metrics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter metricsStream() {
+        return metricsHub.subscribe();
+    }
+
+    /**
+     * 采样一帧指标（只由推送线程调用）
+     */
+    private Map<String, Object> sampleMetrics() {
+        long now = System.currentTimeMillis();
+        int completed = executor.getCompleted();
+        int failed = executor.getFailed();
+        int retried = executor.getRetried();
+        int discarded = executor.getDiscarded();
+        int duplicates = executor.getDuplicates();
+        int expired = executor.getExpired();
+        LatencyHistogram.Snapshot latency = executor.getTaskLatency().snapshotAndReset();
+        LatencyHistogram.Snapshot queueWait = executor.getQueueWaitLatency().snapshotAndReset();
+        if (lastSampleAt == 0L) {
+            // 首帧只建立基线
+            lastSampleAt = now;
+            lastCompleted = completed;
+            lastFailed = failed;
+            lastRetried = retried;
+            lastDiscarded = discarded;
+            lastDuplicates = duplicates;
+            lastExpired = expired;
+        }
+        long intervalMillis = Math.max(1L, now - lastSampleAt);
+        int completedDelta = delta(completed, lastCompleted);
+        int failedDelta = delta(failed, lastFailed);
+        long queueDepth;
+        try {
+            queueDepth = executor.getQueueSize();
+        } catch (Exception e) {
+            queueDepth = -1L;
+        }
+
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("nodeId", nodeId);
+        frame.put("timestamp", now);
+        frame.put("intervalMillis", intervalMillis);
+        frame.put("isRunning", executor.isRunning());
+        frame.put("workerNum", executor.getWorkerCount());
+        frame.put("activeWorkers", executor.getActiveWorkers());
+        frame.put("asyncInFlight", executor.getAsyncInFlight());
+        frame.put("queueDepth", queueDepth);
+        frame.put("completed", completedDelta);
+        frame.put("failed", failedDelta);
+        frame.put("retried", delta(retried, lastRetried));
+        frame.put("discarded", delta(discarded, lastDiscarded));
+        frame.put("duplicates", delta(duplicates, lastDuplicates));
+        frame.put("expired", delta(expired, lastExpired));
+        frame.put("throughputPerSecond", completedDelta * 1000.0 / intervalMillis);
+        frame.put("failedPerSecond", failedDelta * 1000.0 / intervalMillis);
+        frame.put("latencyCount", latency.count());
+        frame.put("latencyP50Ms", latency.percentileMillis(0.5));
+        frame.put("latencyP99Ms", latency.percentileMillis(0.99));
+        frame.put("latencyP999Ms", latency.percentileMillis(0.999));
+        frame.put("latencyMaxMs", latency.maxMillis());
+        frame.put("queueWaitCount", queueWait.count());
+        frame.put("queueWaitP50Ms", queueWait.percentileMillis(0.5));
+        frame.put("queueWaitP99Ms", queueWait.percentileMillis(0.99));
+        frame.put("queueWaitP999Ms", queueWait.percentileMillis(0.999));
+        frame.put("queueWaitMaxMs", queueWait.maxMillis());
+
+        lastSampleAt = now;
+        lastCompleted = completed;
+        lastFailed = failed;
+        lastRetried = retried;
+        lastDiscarded = discarded;
+        lastDuplicates = duplicates;
+        lastExpired = expired;
+        return frame;
+    }
+
+    /**
+     * 累计值增量，重新启动后计数清零时以当前值为增量
+     */
+    private static int delta(int current, int previous) {
+        return current >= previous ? current - previous : current;
+    }
+
     // ================= 指令监听线程 =================
 
     /**
      * 启动后台线程，自动监听全局指令和workerNum变更，自动调整本地批处理
      */
-    private void startCommandWatcher() {
+    private Thread startCommandWatcher() {
         Thread watcher = new Thread(() -> {
             String lastCmd = "";
             int lastWorkerNum = -1;
+            // 每worker吞吐的平滑值及上次计算时的完成数
+            double perWorkerRate = 0.0;
+            long lastRateAt = System.currentTimeMillis();
+            int lastRateCompleted = executor.getCompleted();
             while (loopFlag.get()) {
                 try {
                     // 读取全局指令
                     String cmd = redisTemplate.opsForValue().get(GLOBAL_COMMAND_KEY);
-                    // 读取本节点workerNum配置，若无则用8
-                    String workerNumStr = redisTemplate.opsForValue().get(STATUS_KEY_PREFIX + nodeId + ":workerNum");
-                    int workerNum = (workerNumStr != null) ? Integer.parseInt(workerNumStr) : 8;
+
+                    // 本节点每worker吞吐：只在有完成数时更新，队列空闲时保持上次的值，避免作业间隙权重归零
+                    long now = System.currentTimeMillis();
+                    int completed = executor.getCompleted();
+                    int completedDelta = delta(completed, lastRateCompleted);
+                    int workers = executor.getWorkerCount();
+                    if (executor.isRunning() && workers > 0 && completedDelta > 0) {
+                        double rate = completedDelta * 1000.0 / Math.max(1L, now - lastRateAt) / workers;
+                        perWorkerRate = perWorkerRate == 0.0 ? rate : RATE_EWMA_ALPHA * rate + (1 - RATE_EWMA_ALPHA) * perWorkerRate;
+                    }
+                    lastRateAt = now;
+                    lastRateCompleted = completed;
+
+                    // 启动状态下参与预算分配，分到的worker数优先于本节点 workerNum 配置
+                    Integer share = null;
+                    if ("start".equals(cmd)) {
+                        share = budget.heartbeat(perWorkerRate);
+                    } else if ("start".equals(lastCmd)) {
+                        budget.leave();
+                    }
+                    int workerNum;
+                    if (share != null) {
+                        workerNum = share;
+                    } else {
+                        // 读取本节点workerNum配置，若无则用8
+                        String workerNumStr = redisTemplate.opsForValue().get(STATUS_KEY_PREFIX + nodeId + ":workerNum");
+                        workerNum = (workerNumStr != null) ? Integer.parseInt(workerNumStr) : 8;
+                    }
 
                     // 只要指令或workerNum有变化就自动调整
                     if (!Objects.equals(cmd, lastCmd) || workerNum != lastWorkerNum) {
                         lastCmd = cmd;
                         lastWorkerNum = workerNum;
 
-                        // 优雅停机后再启动
-                        if ("start".equals(cmd) && (!executor.isRunning() || workerNum != executor.getWorkerCount())) {
+                        if ("start".equals(cmd) && share != null && executor.isRunning()) {
+                            // 预算重新分配：在线增减worker，不停机
+                            executor.adjustWorkerCount(workerNum);
+                        } else if ("start".equals(cmd) && (!executor.isRunning() || workerNum != executor.getWorkerCount())) {
+                            // 优雅停机后再启动
                             executor.stop();
                             executor.start(workerNum);
                         }
@@ -175,7 +397,7 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
                             executor.stop();
                         }
                     }
-                    Thread.sleep(3000); // 每3秒检查一次
+                    Thread.sleep(WATCH_INTERVAL_MILLIS); // 每3秒检查一次
                 } catch (InterruptedException ignored) {
                     Thread.currentThread().interrupt();
                 } catch (Exception e) {
@@ -189,6 +411,7 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
         }, "batch-command-watcher");
         watcher.setDaemon(true);
         watcher.start();
+        return watcher;
     }
 
     // ================= 状态上报线程 =================
@@ -196,7 +419,7 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
     /**
      * 启动后台线程，定时上报本节点状态到Redis，供全局聚合用
      */
-    private void startStatusReporter() {
+    private Thread startStatusReporter() {
         Thread reporter = new Thread(() -> {
             while (loopFlag.get()) {
                 try {
@@ -207,7 +430,9 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
                             "completed", executor.getCompleted(),
                             "failed", executor.getFailed(),
                             "retried", executor.getRetried(),
-                            "discarded", executor.getDiscarded()
+                            "discarded", executor.getDiscarded(),
+                            "duplicates", executor.getDuplicates(),
+                            "expired", executor.getExpired()
                     );
                     redisTemplate.opsForValue().set(STATUS_KEY_PREFIX + nodeId + ":status", stat.toString());
                     Thread.sleep(2000); // 每2秒上报一次
@@ -224,6 +449,7 @@ public abstract class AbstractBatchConsumeController<T, E extends AbstractReacto
         }, "batch-status-reporter");
         reporter.setDaemon(true);
         reporter.start();
+        return reporter;
     }
 
 }
@@ -1,13 +1,18 @@
 package com.duanml.reactorservice.middleware.reactor.controller;
 
+import com.duanml.reactorservice.middleware.reactor.job.JobProgressTracker;
+import com.duanml.reactorservice.middleware.reactor.monitor.MetricsStreamHub;
 import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
+import com.duanml.reactorservice.middleware.reactor.produce.BloomDedup;
+import com.duanml.reactorservice.middleware.reactor.produce.ChangeWatermark;
+import com.duanml.reactorservice.middleware.reactor.produce.ProducerLeaderElection;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * <p>Title: com.duanml.reactorstudy.middleware.reactor.controller</p>
@@ -17,92 +22,177 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Date: 2025/7/3 20:34
  * Description: 批量生产任务控制器基类
  *
- * 批量生产任务控制器基类，分布式锁+Redis停止指令实现多节点唯一生产和任意节点可停
+ * 批量生产任务控制器基类，主节点选举（租约+fencing token）实现多节点唯一生产、任意节点可停，
+ * 主节点宕机后由备节点在一个租约周期内自动接管并从进度处续跑，见 ProducerLeaderElection
+ * /metrics/stream 以SSE每秒推送本节点生产指标增量，一次采样广播给所有订阅者
+ * 应用关闭时由 ReactorGracefulShutdown 调用 shutdown：本节点是主节点时停止生产、保存进度并释放租约，
+ * 备节点随即接管，不必等租约过期
+ * 生产端为增量模式时，/watermark 查看持久化水位，/watermark/reset 清除水位（下次作业从头开始）；
+ * 子类可调用 leaderElection.setScheduleIntervalMillis 定时发起增量作业
+ * BLOOM 去重时 /dedup 查看当前代过滤器的容量、填充率和估算误判率，SSE帧同时带上填充率和误判率
  *
  */
 public abstract class AbstractBatchProducerController<T> {
 
     protected final AbstractReactorProducerBatch<T> batchProducer;
-    protected final RedissonClient redissonClient;
     protected final StringRedisTemplate redisTemplate;
 
-    private static final String PRODUCER_LOCK_KEY = "reactor:producer:lock";
-    private static final String PRODUCER_STOP_KEY = "reactor:producer:stop";
+    // 默认租约时长：主节点宕机后最长经过该时长由备节点接管
+    private static final long DEFAULT_LEASE_MILLIS = 15_000L;
 
-    // 标记当前节点是否持有锁
-    private final AtomicBoolean isLeader = new AtomicBoolean(false);
+    // 主节点选举
+    protected final ProducerLeaderElection leaderElection;
 
+    // 指标推送：每秒采样一次，广播给所有SSE订阅者
+    private final MetricsStreamHub metricsHub;
+    // 上一次采样的累计值，只由采样线程访问
+    private long lastSampleAt = 0L;
+    private long lastProduced, lastSkipped;
+
+    public AbstractBatchProducerController(AbstractReactorProducerBatch<T> batchProducer,
+                                           StringRedisTemplate redisTemplate,
+                                           String nodeId) {
+        this(batchProducer, redisTemplate, nodeId, DEFAULT_LEASE_MILLIS);
+    }
+
+    /**
+     * @param leaseMillis 主节点租约时长
+     */
     public AbstractBatchProducerController(AbstractReactorProducerBatch<T> batchProducer,
-                                           RedissonClient redissonClient,
-                                           StringRedisTemplate redisTemplate) {
+                                           StringRedisTemplate redisTemplate,
+                                           String nodeId, long leaseMillis) {
         this.batchProducer = batchProducer;
-        this.redissonClient = redissonClient;
         this.redisTemplate = redisTemplate;
+        this.leaderElection = new ProducerLeaderElection(redisTemplate, batchProducer, nodeId, leaseMillis);
+        this.metricsHub = new MetricsStreamHub("producer", this::sampleMetrics, 1000L, 100);
+    }
 
-        // 持锁节点定时检查停止信号
-        startStopSignalWatcher();
+    /**
+     * 停止选举线程和指标推送；本节点是主节点时交出租约，作业由其他节点续跑
+     */
+    public void shutdown() {
+        leaderElection.shutdown();
+        metricsHub.shutdown();
     }
 
+    /**
+     * 发起生产作业：本节点抢到租约则本节点生产，否则由抢到的节点生产
+     */
     @RequestMapping("/start")
-    public synchronized String start() {
-        RLock lock = redissonClient.getLock(PRODUCER_LOCK_KEY);
-        boolean locked = false;
-        try {
-            // 自动续期的分布式锁（Redisson看门狗机制），不设置leaseTime
-            locked = lock.tryLock(0, TimeUnit.SECONDS);
-            if (locked) {
-                isLeader.set(true);
-                redisTemplate.delete(PRODUCER_STOP_KEY); // 启动前清理旧的stop信号
-                batchProducer.startProduce();
-                return "Producer started (distributed lock acquired)";
-            } else {
-                return "Producer already started on another node (distributed lock not acquired)";
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return "Producer start interrupted";
-        }
+    public String start() {
+        return leaderElection.requestStart();
     }
 
+    /**
+     * 任意节点都可调用，由主节点优雅停止生产并结束作业
+     */
     @RequestMapping("/stop")
     public String stop() {
-        // 不管在哪个节点，写入停止信号
-        redisTemplate.opsForValue().set(PRODUCER_STOP_KEY, "1");
+        leaderElection.requestStop();
         return "Producer stop signal sent";
     }
 
+    /**
+     * 主节点选举状态：当前主节点、token、作业期望状态、续跑页号
+     */
+    @RequestMapping("/leader")
+    public Map<String, Object> leader() {
+        return leaderElection.status();
+    }
+
+    /**
+     * 增量模式的水位
+     */
+    @RequestMapping("/watermark")
+    public Map<String, Object> watermark() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("incremental", batchProducer.isIncremental());
+        ChangeWatermark watermark = batchProducer.getWatermark();
+        result.put("watermark", watermark != null ? watermark.encode() : null);
+        return result;
+    }
+
+    /**
+     * 清除水位，集群中有作业在跑时不允许清除
+     */
+    @RequestMapping("/watermark/reset")
+    public String resetWatermark() {
+        if (!batchProducer.isIncremental()) {
+            return "Producer is not incremental";
+        }
+        if (batchProducer.isRunning() || Boolean.TRUE.equals(leaderElection.status().get("desired"))) {
+            return "Producer job is running, stop it before resetting the watermark";
+        }
+        batchProducer.resetWatermark();
+        return "Watermark reset, next job starts from the beginning";
+    }
+
+    /**
+     * 布隆过滤器去重的当前代：容量、已插入数、填充率、估算误判率；非BLOOM去重时返回null
+     */
+    @RequestMapping("/dedup")
+    public BloomDedup.Stats dedup() {
+        return batchProducer.dedupStats();
+    }
+
     @RequestMapping("/status")
     public AbstractReactorProducerBatch.ProducerStatus status() {
         return batchProducer.status();
     }
 
+    @RequestMapping("/progress")
+    public JobProgressTracker.JobProgress progress() {
+        return batchProducer.progress();
+    }
+
+    /**
+     * 本节点生产指标实时推送（SSE，事件名 metrics，每秒一帧）
+     * 每帧为上一秒的增量：入队数/速率、判重跳过数、队列积压
+     */
+    @RequestMapping(value = "/metrics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter metricsStream() {
+        return metricsHub.subscribe();
+    }
+
     /**
-     * 持锁节点定时检查停止信号，收到则优雅停机并释放锁
+     * 采样一帧指标（只由推送线程调用）
      */
-    private void startStopSignalWatcher() {
-        // 可用更优方式如调度线程池/定时任务，这里用简单线程演示
-        Thread watcher = new Thread(() -> {
-            while (true) {
-                try {
-                    // 5秒检查一次
-                    Thread.sleep(5000);
-                } catch (InterruptedException ignored) {
-                }
-                if (isLeader.get() && "1".equals(redisTemplate.opsForValue().get(PRODUCER_STOP_KEY))) {
-                    batchProducer.requestStop();
-                    // 释放分布式锁
-                    RLock lock = redissonClient.getLock(PRODUCER_LOCK_KEY);
-                    if (lock.isHeldByCurrentThread()) {
-                        lock.unlock();
-                    }
-                    isLeader.set(false);
-                    // 清理停止信号
-                    redisTemplate.delete(PRODUCER_STOP_KEY);
-                }
-            }
-        }, "producer-stop-watcher");
-        watcher.setDaemon(true);
-        watcher.start();
+    private Map<String, Object> sampleMetrics() {
+        long now = System.currentTimeMillis();
+        long produced = batchProducer.getProducedCount();
+        long skipped = batchProducer.getSkippedCount();
+        if (lastSampleAt == 0L) {
+            // 首帧只建立基线
+            lastSampleAt = now;
+            lastProduced = produced;
+            lastSkipped = skipped;
+        }
+        long intervalMillis = Math.max(1L, now - lastSampleAt);
+        long producedDelta = produced - lastProduced;
+        AbstractReactorProducerBatch.ProducerStatus status = batchProducer.status();
+
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("timestamp", now);
+        frame.put("intervalMillis", intervalMillis);
+        frame.put("running", status.running);
+        frame.put("stopping", status.stopping);
+        frame.put("leader", leaderElection.isLeader());
+        frame.put("jobId", status.jobId);
+        frame.put("queueDepth", status.queueLen);
+        frame.put("produced", producedDelta);
+        frame.put("skipped", skipped - lastSkipped);
+        frame.put("producedPerSecond", producedDelta * 1000.0 / intervalMillis);
+        BloomDedup.Stats dedup = batchProducer.dedupStats();
+        if (dedup != null) {
+            frame.put("dedupFill", dedup.fill);
+            frame.put("dedupFilters", dedup.filters);
+            frame.put("dedupEstimatedFpRate", dedup.estimatedFpRate);
+        }
+
+        lastSampleAt = now;
+        lastProduced = produced;
+        lastSkipped = skipped;
+        return frame;
     }
 
 }
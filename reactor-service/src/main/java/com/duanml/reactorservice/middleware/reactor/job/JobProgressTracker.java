@@ -0,0 +1,295 @@
+package com.duanml.reactorservice.middleware.reactor.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.job</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/11 20:05
+ * Description: 批处理作业进度跟踪（集群聚合）
+ *
+ * 1. 生产端启动时 startJob 分配作业ID，并记录总量估算（COUNT 或主键区间大小）；
+ * 2. 生产/消费/失败计数先在本地 LongAdder 累加，每秒一次 pipeline 刷到 Redis：
+ *    - batch:job:{jobId}          Hash，累计计数，所有节点 HINCRBY 聚合；
+ *    - batch:job:{jobId}:{c|p}:{秒} 每秒桶，带TTL，用于计算集群滑动窗口速率；
+ * 3. progress() 读取累计值与最近 windowSeconds 个秒桶，计算速率、完成百分比和预计剩余时间。
+ *
+ * 同一队列的生产端和消费端使用相同的 scope（队列key），通过 batch:job:{scope}:current 找到当前作业。
+ */
+@Slf4j
+public class JobProgressTracker {
+
+    private static final String KEY_PREFIX = "batch:job:";
+    private static final DateTimeFormatter JOB_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final StringRedisTemplate redisTemplate;
+    private final String scope;
+    private final int windowSeconds;
+
+    // 本地待刷新的增量
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    // 当前作业ID缓存，避免每次刷新都读Redis
+    private volatile String cachedJobId;
+    private volatile long cachedAt = 0L;
+
+    private final ScheduledExecutorService flusher;
+
+    public JobProgressTracker(StringRedisTemplate redisTemplate, String scope) {
+        this(redisTemplate, scope, 60);
+    }
+
+    /**
+     * @param redisTemplate Redis操作模板
+     * @param scope         作业范围，一般为队列key
+     * @param windowSeconds 速率滑动窗口长度（秒）
+     */
+    public JobProgressTracker(StringRedisTemplate redisTemplate, String scope, int windowSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.scope = scope;
+        this.windowSeconds = windowSeconds;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-progress-flusher-" + scope);
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 开始新作业
+     * @param totalEstimate 总量估算，未知传-1
+     * @return 作业ID
+     */
+    public String startJob(long totalEstimate) {
+        flushQuietly(); // 上一个作业残留的增量先刷走
+        String jobId = scope + ":" + LocalDateTime.now().format(JOB_ID_FORMAT)
+                + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x1000, 0x10000));
+        String jobKey = KEY_PREFIX + jobId;
+        redisTemplate.opsForHash().putAll(jobKey, Map.of(
+                "startedAt", String.valueOf(System.currentTimeMillis()),
+                "total", String.valueOf(totalEstimate),
+                "produced", "0",
+                "consumed", "0",
+                "failed", "0"));
+        redisTemplate.expire(jobKey, 7, TimeUnit.DAYS);
+        redisTemplate.opsForValue().set(currentKey(), jobId);
+        cachedJobId = jobId;
+        cachedAt = System.currentTimeMillis();
+        log.info("作业启动: jobId={}, totalEstimate={}", jobId, totalEstimate);
+        return jobId;
+    }
+
+    /** 更新总量估算（如生产过程中才算出总数） */
+    public void updateTotal(long totalEstimate) {
+        String jobId = currentJobId();
+        if (jobId != null) {
+            redisTemplate.opsForHash().put(KEY_PREFIX + jobId, "total", String.valueOf(totalEstimate));
+        }
+    }
+
+    public void recordProduced(long n) {
+        produced.add(n);
+    }
+
+    public void recordConsumed(long n) {
+        consumed.add(n);
+    }
+
+    public void recordFailed(long n) {
+        failed.add(n);
+    }
+
+    /**
+     * 当前作业ID（缓存1秒）
+     */
+    public String currentJobId() {
+        long now = System.currentTimeMillis();
+        if (now - cachedAt > 1000) {
+            cachedJobId = redisTemplate.opsForValue().get(currentKey());
+            cachedAt = now;
+        }
+        return cachedJobId;
+    }
+
+    /**
+     * 停止后台刷新线程，并把剩余增量刷到Redis；应用关闭时调用
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushQuietly();
+    }
+
+    /**
+     * 把本地增量一次pipeline刷到Redis，失败时增量加回本地，下次刷新一并写出
+     */
+    public void flush() {
+        long p = produced.sumThenReset();
+        long c = consumed.sumThenReset();
+        long f = failed.sumThenReset();
+        if (p == 0 && c == 0 && f == 0) {
+            return;
+        }
+        try {
+            write(p, c, f);
+        } catch (RuntimeException e) {
+            produced.add(p);
+            consumed.add(c);
+            failed.add(f);
+            throw e;
+        }
+    }
+
+    private void write(long p, long c, long f) {
+        String jobId = currentJobId();
+        if (jobId == null) {
+            return; // 没有作业（生产端未启动过），丢弃计数
+        }
+        String jobKey = KEY_PREFIX + jobId;
+        long second = System.currentTimeMillis() / 1000;
+        long ttl = windowSeconds * 2L;
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (p > 0) {
+                conn.hIncrBy(jobKey, "produced", p);
+                conn.incrBy(bucketKey(jobId, "p", second), p);
+                conn.expire(bucketKey(jobId, "p", second), ttl);
+            }
+            if (c > 0) {
+                conn.hIncrBy(jobKey, "consumed", c);
+                conn.incrBy(bucketKey(jobId, "c", second), c);
+                conn.expire(bucketKey(jobId, "c", second), ttl);
+            }
+            if (f > 0) {
+                conn.hIncrBy(jobKey, "failed", f);
+                conn.incrBy(bucketKey(jobId, "c", second), f); // 失败也计入处理速率
+                conn.expire(bucketKey(jobId, "c", second), ttl);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 查询当前作业的集群进度
+     * @return 进度，无作业返回null
+     */
+    public JobProgress progress() {
+        String jobId = redisTemplate.opsForValue().get(currentKey());
+        if (jobId == null) {
+            return null;
+        }
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(KEY_PREFIX + jobId);
+        long startedAt = parseLong(fields.get("startedAt"));
+        long total = parseLong(fields.get("total"));
+        long producedTotal = parseLong(fields.get("produced"));
+        long consumedTotal = parseLong(fields.get("consumed"));
+        long failedTotal = parseLong(fields.get("failed"));
+
+        // 只统计已结束的完整秒，窗口不超过作业已运行时长
+        long nowSecond = System.currentTimeMillis() / 1000;
+        long elapsed = Math.max(1, nowSecond - startedAt / 1000);
+        int window = (int) Math.min(windowSeconds, elapsed);
+        List<String> producedKeys = new ArrayList<>(window);
+        List<String> consumedKeys = new ArrayList<>(window);
+        for (int i = 1; i <= window; i++) {
+            producedKeys.add(bucketKey(jobId, "p", nowSecond - i));
+            consumedKeys.add(bucketKey(jobId, "c", nowSecond - i));
+        }
+        double produceRate = sum(redisTemplate.opsForValue().multiGet(producedKeys)) / (double) window;
+        double consumeRate = sum(redisTemplate.opsForValue().multiGet(consumedKeys)) / (double) window;
+
+        long done = consumedTotal + failedTotal;
+        // 总量未知时，以已生产数作为下限估算
+        long effectiveTotal = total > 0 ? total : producedTotal;
+        double percent = effectiveTotal > 0 ? Math.min(100.0, done * 100.0 / effectiveTotal) : 0.0;
+        long etaSeconds = consumeRate > 0 && effectiveTotal > done
+                ? (long) Math.ceil((effectiveTotal - done) / consumeRate) : -1L;
+        return new JobProgress(jobId, startedAt, total, producedTotal, consumedTotal, failedTotal,
+                produceRate, consumeRate, percent, etaSeconds);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("作业进度刷新失败，增量保留到下次刷新: {}", e.getMessage());
+        }
+    }
+
+    private String currentKey() {
+        return KEY_PREFIX + scope + ":current";
+    }
+
+    private static String bucketKey(String jobId, String type, long second) {
+        return KEY_PREFIX + jobId + ":" + type + ":" + second;
+    }
+
+    private static long sum(List<String> values) {
+        long sum = 0;
+        if (values != null) {
+            for (String v : values) {
+                sum += parseLong(v);
+            }
+        }
+        return sum;
+    }
+
+    private static long parseLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 作业进度结构体
+     */
+    public static class JobProgress {
+        public final String jobId;
+        public final long startedAt;     // 启动时间戳(ms)
+        public final long total;         // 总量估算，-1为未知
+        public final long produced;      // 已入队
+        public final long consumed;      // 已处理成功
+        public final long failed;        // 最终失败
+        public final double produceRate; // 集群入队速率（条/秒，滑动窗口）
+        public final double consumeRate; // 集群处理速率（条/秒，滑动窗口）
+        public final double percent;     // 完成百分比
+        public final long etaSeconds;    // 预计剩余秒数，-1为无法估算
+
+        public JobProgress(String jobId, long startedAt, long total, long produced, long consumed, long failed,
+                           double produceRate, double consumeRate, double percent, long etaSeconds) {
+            this.jobId = jobId;
+            this.startedAt = startedAt;
+            this.total = total;
+            this.produced = produced;
+            this.consumed = consumed;
+            this.failed = failed;
+            this.produceRate = produceRate;
+            this.consumeRate = consumeRate;
+            this.percent = percent;
+            this.etaSeconds = etaSeconds;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.duanml.reactorservice.middleware.reactor.lifecycle;
+
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactiveConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.consume.AbstractReactorConsumeBatch;
+import com.duanml.reactorservice.middleware.reactor.controller.AbstractBatchConsumeController;
+import com.duanml.reactorservice.middleware.reactor.controller.AbstractBatchProducerController;
+import com.duanml.reactorservice.middleware.reactor.produce.AbstractReactorProducerBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.lifecycle</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/15 15:20
+ * Description: 批处理组件的优雅停机，接入 Spring 生命周期
+ *
+ * 应用关闭时（SIGTERM、滚动发布）在最早的阶段执行，Redis连接、数据源等仍可用：
+ * 1. 停止各控制器的后台线程（指令监听、状态上报、指标推送、生产端选举），
+ *    生产端主节点停止生产、保存进度并释放租约，备节点随即接管；
+ * 2. 并行停止所有消费端、生产端：唤醒阻塞出队，等待在途任务（最长 stopTimeoutMillis），
+ *    未完成的任务放回队列，最后刷出幂等记录和作业进度。
+ *
+ * 停机总耗时受 spring.lifecycle.timeout-per-shutdown-phase 限制，应大于消费端 stopTimeoutMillis。
+ */
+@Slf4j
+@Component
+public class ReactorGracefulShutdown implements SmartLifecycle {
+
+    // 生产线程在当前页写完后退出，等待上限
+    private static final long PRODUCER_STOP_TIMEOUT_MILLIS = 10_000L;
+
+    private final ObjectProvider<AbstractBatchConsumeController<?, ?>> consumeControllers;
+    private final ObjectProvider<AbstractBatchProducerController<?>> producerControllers;
+    private final ObjectProvider<AbstractReactorConsumeBatch<?>> consumers;
+    private final ObjectProvider<AbstractReactiveConsumeBatch<?>> reactiveConsumers;
+    private final ObjectProvider<AbstractReactorProducerBatch<?>> producers;
+
+    private volatile boolean running = false;
+
+    public ReactorGracefulShutdown(ObjectProvider<AbstractBatchConsumeController<?, ?>> consumeControllers,
+                                   ObjectProvider<AbstractBatchProducerController<?>> producerControllers,
+                                   ObjectProvider<AbstractReactorConsumeBatch<?>> consumers,
+                                   ObjectProvider<AbstractReactiveConsumeBatch<?>> reactiveConsumers,
+                                   ObjectProvider<AbstractReactorProducerBatch<?>> producers) {
+        this.consumeControllers = consumeControllers;
+        this.producerControllers = producerControllers;
+        this.consumers = consumers;
+        this.reactiveConsumers = reactiveConsumers;
+        this.producers = producers;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        long start = System.currentTimeMillis();
+        log.info("批处理优雅停机开始");
+
+        // 1. 控制器后台线程，先于批处理停止，避免停机过程中被全局指令重新启动
+        List<Runnable> controllerSteps = new ArrayList<>();
+        consumeControllers.orderedStream().forEach(c -> controllerSteps.add(c::shutdown));
+        producerControllers.orderedStream().forEach(c -> controllerSteps.add(c::shutdown));
+        runAll(controllerSteps);
+
+        // 2. 消费端、生产端并行停止
+        List<Runnable> batchSteps = new ArrayList<>();
+        consumers.orderedStream().forEach(c -> batchSteps.add(c::shutdown));
+        reactiveConsumers.orderedStream().forEach(c -> batchSteps.add(c::shutdown));
+        producers.orderedStream().forEach(p -> batchSteps.add(() -> p.shutdown(PRODUCER_STOP_TIMEOUT_MILLIS)));
+        runAll(batchSteps);
+
+        running = false;
+        log.info("批处理优雅停机完成，耗时 {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 异步停止，与同阶段的其他组件并行，完成后通知 Spring
+     */
+    @Override
+    public void stop(Runnable callback) {
+        Thread thread = new Thread(() -> {
+            try {
+                stop();
+            } finally {
+                callback.run();
+            }
+        }, "reactor-graceful-shutdown");
+        thread.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先停止（阶段值最大），此时Web服务器、Redis连接工厂、数据源都还在运行
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    /**
+     * 并行执行并等待全部结束，单个步骤异常不影响其他步骤
+     */
+    private static void runAll(List<Runnable> steps) {
+        if (steps.isEmpty()) {
+            return;
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Runnable step : steps) {
+                executor.execute(() -> {
+                    try {
+                        step.run();
+                    } catch (Exception e) {
+                        log.error("批处理停机步骤异常: {}", e.getMessage(), e);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.duanml.reactorservice.middleware.reactor.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.log</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/12 14:30
+ * Description: 热点路径日志（按调用点限流/采样）
+ *
+ * 1. 每个调用点声明一个静态实例，不同调用点互不影响：
+ *    - sampled(logger, site, n)：每 n 次只输出第1次，其余计数；
+ *    - rateLimited(logger, site, max, windowMillis)：每个时间窗口最多输出 max 次，其余计数；
+ * 2. 级别未开启时直接返回，不做任何格式化；
+ * 3. 被抑制的条数按调用点累计，由一个后台线程每 SUMMARY_INTERVAL_SECONDS 秒汇总输出一次，
+ *    不丢失“发生了多少次”的信息。
+ */
+public final class HotPathLog {
+
+    private static final Logger SUMMARY_LOG = LoggerFactory.getLogger(HotPathLog.class);
+    private static final long SUMMARY_INTERVAL_SECONDS = 30;
+    private static final List<HotPathLog> SITES = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService SUMMARY_REPORTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hot-path-log-summary");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        SUMMARY_REPORTER.scheduleWithFixedDelay(HotPathLog::reportSuppressed,
+                SUMMARY_INTERVAL_SECONDS, SUMMARY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private final Logger logger;
+    private final String site;
+    // 采样：每 sampleEvery 次输出1次，1表示不采样
+    private final int sampleEvery;
+    // 限流：每 windowMillis 最多 maxPerWindow 次，0表示不限流
+    private final int maxPerWindow;
+    private final long windowMillis;
+
+    private final AtomicLong calls = new AtomicLong(0L);
+    private final AtomicLong windowStart = new AtomicLong(0L);
+    private final AtomicInteger windowCount = new AtomicInteger(0);
+    private final LongAdder suppressed = new LongAdder();
+
+    private HotPathLog(Logger logger, String site, int sampleEvery, int maxPerWindow, long windowMillis) {
+        this.logger = logger;
+        this.site = site;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxPerWindow = Math.max(0, maxPerWindow);
+        this.windowMillis = windowMillis;
+        SITES.add(this);
+    }
+
+    /**
+     * 采样日志：每 n 次输出1次
+     * @param logger 实际输出的logger
+     * @param site   调用点名称，用于汇总
+     * @param n      采样间隔
+     */
+    public static HotPathLog sampled(Logger logger, String site, int n) {
+        return new HotPathLog(logger, site, n, 0, 0L);
+    }
+
+    /**
+     * 限流日志：每个时间窗口最多输出 max 次
+     * @param logger       实际输出的logger
+     * @param site         调用点名称，用于汇总
+     * @param max          窗口内最多输出次数
+     * @param windowMillis 窗口长度
+     */
+    public static HotPathLog rateLimited(Logger logger, String site, int max, long windowMillis) {
+        return new HotPathLog(logger, site, 1, max, windowMillis);
+    }
+
+    public void debug(String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    public void info(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public void warn(String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    public void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    /** 调用点名称 */
+    public String site() {
+        return site;
+    }
+
+    /** 当前未汇总的被抑制条数 */
+    public long suppressedCount() {
+        return suppressed.sum();
+    }
+
+    /**
+     * 截断过长的参数（如任务原文），避免单条日志过大
+     */
+    public static String abbreviate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        return value.substring(0, maxLength) + "...(" + value.length() + " chars)";
+    }
+
+    private void log(Level level, String format, Object... args) {
+        if (!logger.isEnabledForLevel(level)) {
+            return;
+        }
+        if (!tryAcquire()) {
+            suppressed.increment();
+            return;
+        }
+        logger.atLevel(level).log(format, args);
+    }
+
+    private boolean tryAcquire() {
+        if (sampleEvery > 1 && (calls.getAndIncrement() % sampleEvery) != 0) {
+            return false;
+        }
+        if (maxPerWindow == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= windowMillis && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerWindow;
+    }
+
+    private static void reportSuppressed() {
+        for (HotPathLog site : SITES) {
+            long count = site.suppressed.sumThenReset();
+            if (count > 0) {
+                SUMMARY_LOG.info("日志调用点 [{}] 最近 {} 秒抑制 {} 条 (logger={})",
+                        site.site, SUMMARY_INTERVAL_SECONDS, count, site.logger.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.duanml.reactorservice.middleware.reactor.monitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.monitor</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/14 09:10
+ * Description: 无锁对数分桶延迟直方图
+ *
+ * 1. 以微秒为单位，每个2的幂区间再均分16个子桶，相对误差约6%，桶数固定，内存不随样本数增长；
+ * 2. record 只做一次原子自增，可在热点路径上由任意线程调用；
+ * 3. snapshotAndReset 取出本周期的分布并清零，由单个采样线程周期调用。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos))));
+    }
+
+    /**
+     * 取出当前分布并清零
+     */
+    public Snapshot snapshotAndReset() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.getAndSet(i, 0L);
+            snapshot[i] = c;
+            total += c;
+        }
+        return new Snapshot(snapshot, total);
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶的上界（微秒）
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * 一个周期的延迟分布
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        /** 样本数 */
+        public long count() {
+            return total;
+        }
+
+        /**
+         * 分位数（ms），无样本返回0
+         * @param quantile 如 0.5、0.99、0.999
+         */
+        public double percentileMillis(double quantile) {
+            if (total == 0) {
+                return 0.0;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i) / 1000.0;
+                }
+            }
+            return maxMillis();
+        }
+
+        /** 最大值所在桶的上界（ms），无样本返回0 */
+        public double maxMillis() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return upperBoundOf(i) / 1000.0;
+                }
+            }
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.duanml.reactorservice.middleware.reactor.monitor;
+
+import com.duanml.reactorservice.utils.JacksonUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.monitor</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/14 09:30
+ * Description: 指标推送中心（Server-Sent Events）
+ *
+ * 1. 单个采样线程按固定周期调用 sampler 计算一帧指标，序列化一次后推送给全部订阅者，
+ *    采样和序列化开销与订阅者数量无关；
+ * 2. 第一个订阅者到来时开始采样，最后一个离开后停止，无人观看时没有额外开销；
+ * 3. 新订阅者立即收到最近一帧，不必等下一个周期；
+ * 4. 推送失败、超时或客户端断开的订阅者自动移除，订阅者数量有上限。
+ */
+@Slf4j
+public class MetricsStreamHub {
+
+    private static final String EVENT_NAME = "metrics";
+
+    private final String name;
+    private final Supplier<Map<String, Object>> sampler;
+    private final long periodMillis;
+    private final int maxSubscribers;
+
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService ticker;
+    private ScheduledFuture<?> tickFuture; // 受this锁保护
+    private volatile String lastFrame;
+
+    /**
+     * @param name           名称，用于线程名和日志
+     * @param sampler        指标采样，只会被采样线程调用，可在内部保存上一周期的值计算增量
+     * @param periodMillis   采样周期
+     * @param maxSubscribers 最大订阅者数
+     */
+    public MetricsStreamHub(String name, Supplier<Map<String, Object>> sampler, long periodMillis, int maxSubscribers) {
+        this.name = name;
+        this.sampler = sampler;
+        this.periodMillis = periodMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-stream-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 新增订阅
+     * @return SSE连接，超出订阅上限时立即以异常结束
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L); // 不超时，由客户端断开
+        if (subscribers.size() >= maxSubscribers) {
+            emitter.completeWithError(new IllegalStateException("指标订阅数已达上限: " + maxSubscribers));
+            return emitter;
+        }
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+        emitter.onError(ex -> unsubscribe(emitter));
+        subscribers.add(emitter);
+        String frame = lastFrame;
+        if (frame != null && !send(emitter, frame)) {
+            return emitter;
+        }
+        ensureTicking();
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 结束全部订阅并停止采样线程
+     */
+    public void shutdown() {
+        subscribers.forEach(SseEmitter::complete);
+        subscribers.clear();
+        ticker.shutdownNow();
+    }
+
+    private synchronized void ensureTicking() {
+        if (tickFuture == null && !subscribers.isEmpty()) {
+            tickFuture = ticker.scheduleAtFixedRate(this::tick, 0, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stopTickingIfIdle() {
+        if (tickFuture != null && subscribers.isEmpty()) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+    private void unsubscribe(SseEmitter emitter) {
+        if (subscribers.remove(emitter)) {
+            stopTickingIfIdle();
+        }
+    }
+
+    /**
+     * 采样一次并广播
+     */
+    private void tick() {
+        String frame;
+        try {
+            frame = JacksonUtil.toJson(sampler.get());
+        } catch (Exception e) {
+            log.warn("指标采样失败 [{}]: {}", name, e.getMessage());
+            return;
+        }
+        lastFrame = frame;
+        for (SseEmitter emitter : subscribers) {
+            send(emitter, frame);
+        }
+        stopTickingIfIdle();
+    }
+
+    private boolean send(SseEmitter emitter, String frame) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(frame, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开
+            unsubscribe(emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
@@ -1,12 +1,25 @@
 package com.duanml.reactorservice.middleware.reactor.produce;
 
+import com.duanml.reactorservice.middleware.reactor.job.JobProgressTracker;
+import com.duanml.reactorservice.middleware.reactor.log.HotPathLog;
+import com.duanml.reactorservice.middleware.reactor.queue.PackedIds;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.RedisListQueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.TaskEnvelope;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.util.ReflectionUtils;
 
-import java.util.Collections;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 /**
  * 批量生产者基类，支持基于 Redis Set/BloomFilter 的去重入队。
@@ -15,13 +28,31 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 1. 子类需实现 fetchBatch、toJson、getPrimaryKey 三个抽象方法；
  * 2. 可以选择去重方式（不去重、Redis Set/BloomFilter）；
  * 3. 支持限流（队列长度超过 queueMaxLength 时暂停投递）；
- * 4. 支持优雅停止生产线程。
+ * 4. 支持优雅停止生产线程；
+ * 5. 队列实现可替换（默认Redis LIST，见QueueBackend），每页一次批量入队，整页写入成功后才记入去重集合；
+ * 6. 每次启动生产即开始一个新作业，进度/速率/预计剩余时间见 progress()；
+ * 7. 字节队列（QueueBackend.nativeBytes）通过 toJsonBytes 直接序列化为字节入队，不经过String；
+ * 8. 可从指定页续跑（startProduce(startPage, resume)），每页开始前检查 pushGuard（如主节点fencing校验），
+ *    已完成的页号见 getNextPage()，供故障转移后由其他节点续跑；
+ * 9. 可选任务信封（setEnvelopeEnabled）：每个任务附带入队时间、作业ID、投递次数，配合 setTaskTtlMillis 附带截止时间，
+ *    消费端丢弃已过期的任务并统计排队时长（见 TaskEnvelope）；
+ * 10. 打包ID模式（setPackedIds，仅字节队列）：只入队主键（packedId），多个ID打包为一个队列元素（见 PackedIds），
+ *    消费端按ID批量查出实体；此时 queueMaxLength 按队列元素计数；
+ * 11. 增量模式（setIncremental）：不再按页号全量扫描，而是从持久化的水位（ChangeWatermark）开始调用
+ *    fetchChangedBatch 做键集分页，每页入队后原子地推进水位，周期性作业的耗时只与变更量有关；
+ *    定时触发见 ProducerLeaderElection.setScheduleIntervalMillis；按变更时间增量时同一行可能再次入队，
+ *    去重键（getPrimaryKey）应带上变更时间，否则再次变更的行会被判重跳过；
+ * 12. BLOOM 去重按作业分代（见 BloomDedup）：作业开始时按 estimateTotal 预分配容量，每页续期，
+ *    作业结束后按TTL过期；填充率、估算误判率见 dedupStats()。
  *
  * @param <T> 任务数据类型
  */
 @Slf4j
 public abstract class AbstractReactorProducerBatch<T> {
 
+    // 判重跳过按id逐条触发，采样输出，每页汇总跳过数
+    private static final HotPathLog SKIP_LOG = HotPathLog.sampled(log, "produce.skip", 1000);
+
     /**
      * 去重类型枚举
      */
@@ -37,10 +68,25 @@ public abstract class AbstractReactorProducerBatch<T> {
     protected final int pageSize;                      // 每次批量生产的数量
     protected final DedupType dedupType;               // 去重方式
     protected final String dedupKey;                   // 去重集合的key（Set或Bloom Filter）
+    protected final QueueBackend queueBackend;         // 实际使用的队列实现
+    protected final JobProgressTracker jobTracker;     // 作业进度跟踪，无Redis时为null
+    protected final BloomDedup bloomDedup;             // 布隆过滤器生命周期，非BLOOM去重时为null
 
     private final AtomicBoolean running = new AtomicBoolean(false);         // 是否正在生产
     private final AtomicBoolean stopRequested = new AtomicBoolean(false);   // 是否请求停止
     private Thread workerThread;                                            // 生产线程
+    private final Object stopSignal = new Object();                         // 限流等待期间收到停止请求时唤醒
+    private final AtomicLong producedCount = new AtomicLong(0L);            // 本节点累计入队数
+    private final AtomicLong skippedCount = new AtomicLong(0L);             // 本节点累计判重跳过数
+    private volatile int startPage = 0;                                     // 本次启动的起始页
+    private volatile boolean resumeJob = false;                             // 本次启动是否续跑当前作业
+    private volatile int nextPage = 0;                                      // 下一个待生产的页号
+    private volatile boolean exhausted = false;                             // 数据是否已全部生产完
+    private volatile BooleanSupplier pushGuard = () -> true;                // 每页入队前的准入校验
+    private volatile boolean envelopeEnabled = false;                       // 是否以任务信封入队
+    private volatile long taskTtlMillis = 0L;                               // 任务有效期（毫秒），0为不限，仅信封模式生效
+    private volatile int idsPerElement = 0;                                 // 打包ID模式每个队列元素的ID数，0为关闭
+    private volatile WatermarkStore watermarkStore;                         // 增量模式的水位存储，null为全量模式
 
     /**
      * 构造方法
@@ -54,22 +100,71 @@ public abstract class AbstractReactorProducerBatch<T> {
     protected AbstractReactorProducerBatch(StringRedisTemplate redisTemplate, String queueKey,
                                            int queueMaxLength, int pageSize,
                                            DedupType dedupType, String dedupKey) {
+        this(redisTemplate, queueKey, queueMaxLength, pageSize, dedupType, dedupKey,
+                new RedisListQueueBackend(redisTemplate, queueKey));
+    }
+
+    /**
+     * 构造方法（字节模式Redis LIST）
+     * @param bytesTemplate 字节值模板，任务序列化后直接以字节入队
+     */
+    protected AbstractReactorProducerBatch(StringRedisTemplate redisTemplate, String queueKey,
+                                           int queueMaxLength, int pageSize,
+                                           DedupType dedupType, String dedupKey,
+                                           RedisTemplate<String, byte[]> bytesTemplate) {
+        this(redisTemplate, queueKey, queueMaxLength, pageSize, dedupType, dedupKey,
+                new RedisListQueueBackend(redisTemplate, queueKey, bytesTemplate));
+    }
+
+    /**
+     * 构造方法（自定义队列实现）
+     * @param queueBackend  队列实现，如Redis Stream、JVM内环形队列
+     */
+    protected AbstractReactorProducerBatch(StringRedisTemplate redisTemplate, String queueKey,
+                                           int queueMaxLength, int pageSize,
+                                           DedupType dedupType, String dedupKey,
+                                           QueueBackend queueBackend) {
         this.redisTemplate = redisTemplate;
         this.queueKey = queueKey;
         this.queueMaxLength = queueMaxLength;
         this.pageSize = pageSize;
         this.dedupType = dedupType;
         this.dedupKey = dedupKey;
+        this.queueBackend = queueBackend;
+        this.jobTracker = redisTemplate != null ? new JobProgressTracker(redisTemplate, queueKey) : null;
+        this.bloomDedup = dedupType == DedupType.BLOOM && redisTemplate != null ? new BloomDedup(redisTemplate, dedupKey) : null;
     }
 
     /**
      * 启动生产（异步线程，不阻塞主线程）
      */
     public synchronized void startProduce() {
+        startProduce(0);
+    }
+
+    /**
+     * 从指定页启动生产，startPage>0 时视为续跑，沿用当前作业而不新开作业
+     * @param startPage 起始页号（从0开始）
+     */
+    public synchronized void startProduce(int startPage) {
+        startProduce(startPage, startPage > 0);
+    }
+
+    /**
+     * 从指定页启动生产
+     * @param startPage 起始页号（从0开始）
+     * @param resume    是否续跑：true 沿用当前作业（作业ID、BLOOM去重的那一代），当前没有作业时才新开；
+     *                  false 新开作业。故障转移接管时即使尚未完成第一页也应续跑
+     */
+    public synchronized void startProduce(int startPage, boolean resume) {
         if (running.get()) {
             log.warn("Producer is already running.");
             return;
         }
+        this.startPage = startPage;
+        this.resumeJob = resume;
+        this.nextPage = startPage;
+        this.exhausted = false;
         stopRequested.set(false);
         running.set(true);
         // 启动生产线程
@@ -83,43 +178,117 @@ public abstract class AbstractReactorProducerBatch<T> {
      */
     private void produceTasks() {
         try {
-            int page = 0;
+            int page = startPage;
+            WatermarkStore store = watermarkStore;
+            ChangeWatermark watermark = store != null ? store.load() : null;
+            long total = -1L; // 新作业的总量估算，续跑时未知
+            String jobId = null;
+            if (jobTracker != null) {
+                jobId = resumeJob ? jobTracker.currentJobId() : null;
+                if (jobId == null) {
+                    total = store != null ? estimateChanged(watermark) : estimateTotal();
+                    jobId = jobTracker.startJob(total);
+                }
+            }
+            if (bloomDedup != null && jobId != null) {
+                // 新作业新建一代过滤器，续跑沿用当前作业的那一代
+                bloomDedup.open(jobId.substring(jobId.lastIndexOf(':') + 1), total);
+            }
+            if (store != null) {
+                log.info("Incremental producer starts after watermark {}.", watermark);
+            } else if (resumeJob) {
+                log.info("Producer resumes from page {}.", page);
+            }
             while (!stopRequested.get()) {
                 // 1. 队列长度限流，队列太长暂停生产
-                Long queueLen = redisTemplate.opsForList().size(queueKey);
-                if (queueLen != null && queueLen > queueMaxLength) {
-                    Thread.sleep(5000);
+                long queueLen = queueSize();
+                if (queueLen > queueMaxLength) {
+                    synchronized (stopSignal) {
+                        if (!stopRequested.get()) {
+                            stopSignal.wait(5000);
+                        }
+                    }
                     continue;
                 }
 
-                // 2. 分页查库（由子类实现）
-                List<T> batch = fetchBatch(page * pageSize, pageSize);
+                // 2. 分页查库（由子类实现），增量模式从水位之后取
+                List<T> batch = store != null ? fetchChangedBatch(watermark, pageSize) : fetchBatch(page * pageSize, pageSize);
                 if (batch == null || batch.isEmpty()) {
                     log.info("No more tasks to produce, exiting.");
+                    exhausted = true;
                     break; // 没有更多任务，退出循环
                 }
+                // 准入校验放在判重标记之前，校验失败时本页不产生任何副作用
+                if (!pushGuard.getAsBoolean()) {
+                    log.warn("Push guard rejected page {}, producer exits.", page);
+                    break;
+                }
 
                 // 3. 批量入队，入队前先判重
                 int realPush = 0; // 本批实际入队数量
+                int skipped = 0;  // 本批判重跳过数量
+                boolean bytesMode = queueBackend.nativeBytes();
+                int perElement = idsPerElement;
+                long[] ids = perElement > 0 ? new long[batch.size()] : null;
+                List<String> payloads = bytesMode ? null : new ArrayList<>(batch.size());
+                List<byte[]> bodies = bytesMode && ids == null ? new ArrayList<>(batch.size()) : null;
+                T lastDone = null; // 本页最后一个已入队或已跳过的任务，停止时水位推进到这里
+                // 本页攒批的主键：写入队列成功后才记入去重集合，写入失败时下次仍会入队；同页重复主键只入队一次
+                Set<String> pageKeys = new LinkedHashSet<>();
                 for (T task : batch) {
                     if (stopRequested.get()) {
                         log.warn("Stop requested, exiting producer thread.");
+                        // 已攒批的任务先写入再标记，避免丢失
+                        pushPage(payloads, ids != null ? PackedIds.packAll(ids, realPush, perElement) : bodies);
+                        markPage(pageKeys);
+                        if (store != null && lastDone != null) {
+                            store.advance(watermarkOf(lastDone));
+                        }
+                        producedCount.addAndGet(realPush);
+                        if (jobTracker != null) {
+                            jobTracker.recordProduced(realPush);
+                        }
                         return; // 若请求停止立即退出
                     }
                     String primaryKey = getPrimaryKey(task); // 获取主键（唯一标识）
                     // 先查去重集合，未出现过才入队
-                    if (!shouldPush(primaryKey)) {
-                        log.info("Skip push, already pushed====>>>>:{}", primaryKey);
+                    if (pageKeys.contains(primaryKey) || !shouldPush(primaryKey)) {
+                        SKIP_LOG.info("Skip push, already pushed====>>>>:{}", primaryKey);
+                        skipped++;
+                        lastDone = task;
                         continue;
                     }
-                    // 入队
-                    redisTemplate.opsForList().rightPush(queueKey, toJson(task));
-                    // 记录到去重集合
-                    markPushed(primaryKey);
+                    // 先攒批，本页结束后一次写入
+                    if (ids != null) {
+                        ids[realPush] = packedId(task);
+                    } else if (bytesMode) {
+                        bodies.add(toJsonBytes(task));
+                    } else {
+                        payloads.add(toJson(task));
+                    }
+                    pageKeys.add(primaryKey);
                     realPush++;
+                    lastDone = task;
+                }
+                pushPage(payloads, ids != null ? PackedIds.packAll(ids, realPush, perElement) : bodies);
+                // 整页写入后再记入去重集合
+                markPage(pageKeys);
+                if (bloomDedup != null) {
+                    bloomDedup.touch();
+                }
+                if (store != null) {
+                    // 查询按水位升序，本页最后一行即新水位
+                    watermark = watermarkOf(batch.get(batch.size() - 1));
+                    store.advance(watermark);
                 }
-                log.info("Page {} produced {} new tasks (dedup type: {}).", page, realPush, dedupType);
+                producedCount.addAndGet(realPush);
+                skippedCount.addAndGet(skipped);
+                if (jobTracker != null) {
+                    jobTracker.recordProduced(realPush);
+                }
+                log.info("Page {} produced {} new tasks, skipped {} (dedup type: {}).", page, realPush, skipped, dedupType);
                 page++;
+                nextPage = page;
             }
         } catch (Exception e) {
             log.error("Failed to produce batch.", e);
@@ -141,11 +310,8 @@ public abstract class AbstractReactorProducerBatch<T> {
                 Boolean exists = redisTemplate.opsForSet().isMember(dedupKey, id);
                 return exists == null || !exists;
             case BLOOM:
-                // RedisBloom布隆过滤器（需要RedisBloom插件）
-                Long existLong = redisTemplate.execute(
-                        new DefaultRedisScript<>("return redis.call('BF.EXISTS', KEYS[1], ARGV[1])", Long.class),
-                        Collections.singletonList(dedupKey), id);
-                return existLong != null && existLong == 0; // 0代表没出现过
+                // RedisBloom布隆过滤器（需要RedisBloom插件），查当前作业的那一代
+                return !bloomDedup.mightContain(id);
             default:
                 return true; // 不去重，全部入队
         }
@@ -161,20 +327,63 @@ public abstract class AbstractReactorProducerBatch<T> {
                 redisTemplate.opsForSet().add(dedupKey, id);
                 break;
             case BLOOM:
-                redisTemplate.execute(
-                        new DefaultRedisScript<>("return redis.call('BF.ADD', KEYS[1], ARGV[1])", Long.class),
-                        Collections.singletonList(dedupKey), id);
+                bloomDedup.add(id);
                 break;
             default:
                 break;
         }
     }
 
+    /**
+     * 本页已写入队列的主键逐个记入去重集合
+     */
+    private void markPage(Set<String> pageKeys) {
+        for (String primaryKey : pageKeys) {
+            markPushed(primaryKey);
+        }
+    }
+
     /**
      * 请求停止生产线程（线程会优雅退出）
      */
     public void requestStop() {
         stopRequested.set(true);
+        synchronized (stopSignal) {
+            stopSignal.notifyAll();
+        }
+    }
+
+    /**
+     * 停止生产并释放后台资源（作业进度刷新线程），之后不能再启动；应用关闭时调用
+     * 生产线程在当前页写完后退出，已攒批的任务写入队列后才标记去重，不会丢失
+     * @param timeoutMillis 等待生产线程退出的最长时间
+     */
+    public void shutdown(long timeoutMillis) {
+        requestStop();
+        Thread worker;
+        synchronized (this) {
+            worker = workerThread;
+        }
+        if (worker != null) {
+            try {
+                worker.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                log.warn("Producer thread did not exit within {} ms.", timeoutMillis);
+            }
+        }
+        if (jobTracker != null) {
+            jobTracker.shutdown();
+        }
+    }
+
+    /**
+     * 生产线程是否仍在运行
+     */
+    public boolean isRunning() {
+        return running.get();
     }
 
     /**
@@ -184,8 +393,119 @@ public abstract class AbstractReactorProducerBatch<T> {
     public ProducerStatus status() {
         boolean isRunning = running.get();
         boolean isStopping = stopRequested.get();
-        Long queueLen = redisTemplate.opsForList().size(queueKey);
-        return new ProducerStatus(isRunning, isStopping, queueLen != null ? queueLen : 0L);
+        String jobId = jobTracker != null ? jobTracker.currentJobId() : null;
+        return new ProducerStatus(isRunning, isStopping, queueSize(), jobId);
+    }
+
+    /**
+     * 查询当前作业的集群进度（入队/处理/失败数、速率、预计剩余时间）
+     * @return 作业进度，无作业返回null
+     */
+    public JobProgressTracker.JobProgress progress() {
+        return jobTracker != null ? jobTracker.progress() : null;
+    }
+
+    /**
+     * 设置每页入队前的准入校验，返回false时生产线程退出且本页不入队
+     */
+    public void setPushGuard(BooleanSupplier pushGuard) {
+        this.pushGuard = pushGuard != null ? pushGuard : () -> true;
+    }
+
+    /**
+     * 开启后任务以信封入队（入队时间、作业ID、投递次数），消费端兼容信封与原始任务混用
+     */
+    public void setEnvelopeEnabled(boolean envelopeEnabled) {
+        this.envelopeEnabled = envelopeEnabled;
+    }
+
+    /**
+     * 任务有效期：入队超过该时长仍未被处理的任务由消费端丢弃，0为不限；需开启信封
+     */
+    public void setTaskTtlMillis(long taskTtlMillis) {
+        this.taskTtlMillis = Math.max(0L, taskTtlMillis);
+    }
+
+    /**
+     * 打包ID模式：每个队列元素打包最多 idsPerElement 个主键，0为关闭（入队完整任务JSON）
+     * 消费端需实现 AbstractReactorConsumeBatch.resolveTasks；只支持字节队列
+     */
+    public void setPackedIds(int idsPerElement) {
+        if (idsPerElement > 0 && !queueBackend.nativeBytes()) {
+            throw new IllegalStateException("打包ID模式需要字节队列: " + queueBackend.name());
+        }
+        this.idsPerElement = Math.max(0, idsPerElement);
+    }
+
+    /**
+     * 开启/关闭增量模式，需实现 fetchChangedBatch 和 watermarkOf，未实现时抛出 IllegalStateException；
+     * 水位保存在Redis，需构造时传入 redisTemplate
+     */
+    public void setIncremental(boolean incremental) {
+        if (incremental && redisTemplate == null) {
+            throw new IllegalStateException("增量模式需要Redis保存水位");
+        }
+        if (incremental && !(overrides("fetchChangedBatch", ChangeWatermark.class, int.class)
+                && overrides("watermarkOf", Object.class))) {
+            throw new IllegalStateException("增量模式须覆盖 fetchChangedBatch 和 watermarkOf: " + getClass().getName());
+        }
+        this.watermarkStore = incremental ? new WatermarkStore(redisTemplate, queueKey) : null;
+    }
+
+    public boolean isIncremental() {
+        return watermarkStore != null;
+    }
+
+    /** 当前持久化的水位，全量模式返回null */
+    public ChangeWatermark getWatermark() {
+        WatermarkStore store = watermarkStore;
+        return store != null ? store.load() : null;
+    }
+
+    /** 清除水位，下次增量从头开始（相当于一次全量） */
+    public void resetWatermark() {
+        WatermarkStore store = watermarkStore;
+        if (store != null) {
+            store.reset();
+        }
+    }
+
+    /** 下一个待生产的页号（之前的页已全部入队） */
+    public int getNextPage() {
+        return nextPage;
+    }
+
+    /** 最近一次生产是否因数据全部生产完而结束 */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public String getQueueKey() {
+        return queueKey;
+    }
+
+    /** 本节点累计入队数 */
+    public long getProducedCount() {
+        return producedCount.get();
+    }
+
+    /**
+     * 布隆过滤器当前代的容量、填充率和估算误判率；非BLOOM去重或过滤器不存在时返回null
+     */
+    public BloomDedup.Stats dedupStats() {
+        return bloomDedup != null ? bloomDedup.stats() : null;
+    }
+
+    /** 本节点累计判重跳过数 */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * 当前队列长度
+     */
+    protected long queueSize() {
+        return queueBackend.size();
     }
 
     /**
@@ -195,11 +515,17 @@ public abstract class AbstractReactorProducerBatch<T> {
         public final boolean running;  // 是否正在运行
         public final boolean stopping; // 是否正在停止
         public final long queueLen;    // 队列长度
+        public final String jobId;     // 当前作业ID
 
         public ProducerStatus(boolean running, boolean stopping, long queueLen) {
+            this(running, stopping, queueLen, null);
+        }
+
+        public ProducerStatus(boolean running, boolean stopping, long queueLen, String jobId) {
             this.running = running;
             this.stopping = stopping;
             this.queueLen = queueLen;
+            this.jobId = jobId;
         }
     }
 
@@ -213,6 +539,79 @@ public abstract class AbstractReactorProducerBatch<T> {
      */
     protected abstract List<T> fetchBatch(int offset, int limit);
 
+    /**
+     * 增量模式：取水位之后变更过的一批任务，须按 (变更时间, 主键) 升序，见 ChangeWatermark
+     * 未覆盖时 setIncremental(true) 直接失败，不会被调用
+     * @param after 上次已入队的水位
+     * @param limit 批大小
+     * @return 任务列表，为空表示已追上
+     */
+    protected List<T> fetchChangedBatch(ChangeWatermark after, int limit) {
+        throw new IllegalStateException("未实现 fetchChangedBatch: " + getClass().getName());
+    }
+
+    /**
+     * 增量模式：任务对应的水位（变更时间, 主键），未覆盖时 setIncremental(true) 直接失败
+     */
+    protected ChangeWatermark watermarkOf(T task) {
+        throw new IllegalStateException("未实现 watermarkOf: " + getClass().getName());
+    }
+
+    /**
+     * 子类（含匿名类）是否覆盖了基类的钩子方法
+     */
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(getClass(), name, parameterTypes);
+        return method != null && method.getDeclaringClass() != AbstractReactorProducerBatch.class;
+    }
+
+    /**
+     * 可选：增量模式下估算水位之后的变更量，用于进度
+     * @return 变更量，未知返回-1
+     */
+    protected long estimateChanged(ChangeWatermark after) {
+        return -1L;
+    }
+
+    /**
+     * 可选：估算本次作业的任务总量（如 COUNT(*) 或主键区间大小 maxId - minId），用于进度和预计剩余时间
+     * @return 任务总量，未知返回-1
+     */
+    protected long estimateTotal() {
+        return -1L;
+    }
+
+    /**
+     * 一页任务入队，字符串和字节两种形式只有一个非null；信封模式下入队时间取本页入队时刻
+     */
+    private void pushPage(List<String> payloads, List<byte[]> bodies) {
+        if (envelopeEnabled) {
+            long now = System.currentTimeMillis();
+            long deadline = taskTtlMillis > 0 ? now + taskTtlMillis : 0L;
+            String jobId = jobTracker != null ? jobTracker.currentJobId() : null;
+            if (bodies != null) {
+                bodies.replaceAll(body -> TaskEnvelope.wrap(body, now, 1, deadline, jobId));
+            } else {
+                payloads.replaceAll(payload -> TaskEnvelope.wrap(payload, now, 1, deadline, jobId));
+            }
+        }
+        if (bodies != null) {
+            queueBackend.pushBatchBytes(bodies);
+        } else {
+            queueBackend.pushBatch(payloads);
+        }
+    }
+
+    /**
+     * 任务对象转UTF-8 JSON字节（字节队列使用），默认由 toJson 转换
+     * 子类可覆盖为 JacksonUtil.toJsonBytes(task) 直接输出字节
+     * @param task 任务对象
+     * @return JSON字节
+     */
+    protected byte[] toJsonBytes(T task) {
+        return toJson(task).getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * 任务对象转JSON字符串（建议用fastjson/gson等）
      * @param task 任务对象
@@ -220,6 +619,15 @@ public abstract class AbstractReactorProducerBatch<T> {
      */
     protected abstract String toJson(T task);
 
+    /**
+     * 打包ID模式下入队的数值主键，默认把 getPrimaryKey 解析为 long
+     * @param task 任务对象
+     * @return 数值主键
+     */
+    protected long packedId(T task) {
+        return Long.parseLong(getPrimaryKey(task));
+    }
+
     /**
      * 获取任务对象唯一主键（如ID），用于去重
      * @param task 任务对象
@@ -0,0 +1,212 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.produce</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/17 09:30
+ * Description: 布隆过滤器去重的生命周期：按作业预分配容量、按作业分代、过期轮换、填充率与误判率估算
+ *
+ * 1. 分代：每个生产作业使用独立的过滤器 {dedupKey}:{作业代号}，同一作业续跑（故障转移）由作业ID得到同一代，
+ *    新作业从空过滤器开始，误判率不会随作业次数累积；{dedupKey}:current 指向当前代，
+ *    未打开过任何一代的节点（如非leader节点查询指标）通过它找到正在生产的那一代；
+ * 2. 预分配：新一代用 BF.RESERVE 创建，容量 = 作业总量估算 × headroom（未知时用 defaultCapacity），
+ *    误判率 errorRate；超出容量时按 EXPANSION 追加子过滤器（RedisBloom 可扩展布隆过滤器），不会静默失真；
+ * 3. 轮换：每代与指针带 TTL（generationTtl），生产期间每页续期，作业结束后自然过期，不需要手动清理；
+ * 4. 指标：stats() 读取 BF.INFO，给出已插入数、容量、内存、填充率和估算误判率。
+ *
+ * 未打开任何一代时（如直接调用 shouldPush/markPushed 的基准测试）使用 dedupKey 本身。
+ */
+@Slf4j
+public class BloomDedup {
+
+    // 不存在时按容量和误判率创建，并设置/续期TTL、更新当前代指针
+    private static final DefaultRedisScript<Long> OPEN_SCRIPT = new DefaultRedisScript<>(
+            "local created = 0 " +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then " +
+            "  redis.call('BF.RESERVE', KEYS[1], ARGV[1], ARGV[2], 'EXPANSION', ARGV[3]) " +
+            "  created = 1 " +
+            "end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('SET', KEYS[2], KEYS[1], 'PX', ARGV[4]) " +
+            "return created", Long.class);
+
+    private static final DefaultRedisScript<Long> EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('BF.EXISTS', KEYS[1], ARGV[1])", Long.class);
+
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('BF.ADD', KEYS[1], ARGV[1])", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> INFO_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('BF.INFO', KEYS[1])", List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String baseKey;
+    private final String pointerKey;                    // 当前代指针
+
+    private volatile double errorRate = 0.001;          // 目标误判率
+    private volatile long defaultCapacity = 1_000_000L; // 作业总量未知时的容量
+    private volatile double headroom = 1.2;             // 容量相对作业总量估算的余量
+    private volatile int expansion = 2;                 // 超出容量时子过滤器的扩展倍数
+    private volatile long generationTtlMillis = Duration.ofDays(7).toMillis();
+    private volatile String activeKey;                  // 当前代的key，null时使用 baseKey
+
+    public BloomDedup(StringRedisTemplate redisTemplate, String baseKey) {
+        this.redisTemplate = redisTemplate;
+        this.baseKey = baseKey;
+        this.pointerKey = baseKey + ":current";
+    }
+
+    /**
+     * 打开一代过滤器：不存在时按预期数量创建，已存在（续跑）时只续期
+     * @param generation    代号，一般为作业ID
+     * @param expectedItems 预期插入数，未知传-1
+     * @return 当前代的key
+     */
+    public String open(String generation, long expectedItems) {
+        String key = baseKey + ":" + generation;
+        long capacity = expectedItems > 0 ? Math.max(1_000L, (long) Math.ceil(expectedItems * headroom)) : defaultCapacity;
+        Long created = redisTemplate.execute(OPEN_SCRIPT, Arrays.asList(key, pointerKey),
+                String.valueOf(errorRate), String.valueOf(capacity), String.valueOf(expansion),
+                String.valueOf(generationTtlMillis));
+        activeKey = key;
+        if (created != null && created == 1) {
+            log.info("布隆过滤器新一代 {}: capacity={}, errorRate={}, expansion={}", key, capacity, errorRate, expansion);
+        } else {
+            log.info("沿用布隆过滤器 {}", key);
+        }
+        return key;
+    }
+
+    /** 续期当前代及指针，生产期间每页调用一次 */
+    public void touch() {
+        String key = activeKey;
+        if (key != null) {
+            Duration ttl = Duration.ofMillis(generationTtlMillis);
+            redisTemplate.expire(key, ttl);
+            redisTemplate.expire(pointerKey, ttl);
+        }
+    }
+
+    /** 可能已存在（存在少量误判） */
+    public boolean mightContain(String id) {
+        Long exists = redisTemplate.execute(EXISTS_SCRIPT, Collections.singletonList(currentKey()), id);
+        return exists == null || exists != 0;
+    }
+
+    public void add(String id) {
+        redisTemplate.execute(ADD_SCRIPT, Collections.singletonList(currentKey()), id);
+    }
+
+    public String currentKey() {
+        String key = activeKey;
+        return key != null ? key : baseKey;
+    }
+
+    /**
+     * 当前代的容量与估算误判率，过滤器不存在时返回null；本节点未打开过任何一代时按指针查找
+     */
+    public Stats stats() {
+        String key;
+        List<?> info;
+        try {
+            key = activeKey != null ? activeKey : resolvePointer();
+            info = redisTemplate.execute(INFO_SCRIPT, Collections.singletonList(key));
+        } catch (Exception e) {
+            return null;
+        }
+        if (info == null || info.isEmpty()) {
+            return null;
+        }
+        Map<String, Long> values = new HashMap<>();
+        for (int i = 0; i + 1 < info.size(); i += 2) {
+            values.put(String.valueOf(info.get(i)), Long.parseLong(String.valueOf(info.get(i + 1))));
+        }
+        return new Stats(key, values.getOrDefault("Capacity", 0L), values.getOrDefault("Size", 0L),
+                values.getOrDefault("Number of filters", 1L), values.getOrDefault("Number of items inserted", 0L),
+                errorRate);
+    }
+
+    private String resolvePointer() {
+        String pointed = redisTemplate.opsForValue().get(pointerKey);
+        return pointed != null ? pointed : baseKey;
+    }
+
+    /**
+     * 估算误判率：单个过滤器按插入比例计算 (1 - 2^(-n/capacity))^k，k为哈希函数个数，n=capacity时等于目标误判率；
+     * 已扩展出多个子过滤器时，第i个子过滤器的误判率为 errorRate*0.5^i，取各子过滤器之和作为上界
+     */
+    static double estimateFpRate(double errorRate, long capacity, long items, long filters) {
+        if (items <= 0 || capacity <= 0) {
+            return 0.0;
+        }
+        if (filters > 1) {
+            return errorRate * (2.0 - Math.pow(0.5, filters - 1));
+        }
+        double hashes = Math.ceil(-Math.log(errorRate) / Math.log(2));
+        return Math.pow(1.0 - Math.pow(2.0, -(double) items / capacity), hashes);
+    }
+
+    // ===================== 配置 ========================
+
+    public void setErrorRate(double errorRate) {
+        if (errorRate <= 0 || errorRate >= 1) {
+            throw new IllegalArgumentException("errorRate 应在 (0, 1) 之间: " + errorRate);
+        }
+        this.errorRate = errorRate;
+    }
+
+    public void setDefaultCapacity(long defaultCapacity) {
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    public void setHeadroom(double headroom) {
+        this.headroom = Math.max(1.0, headroom);
+    }
+
+    public void setExpansion(int expansion) {
+        this.expansion = Math.max(1, expansion);
+    }
+
+    public void setGenerationTtl(Duration ttl) {
+        this.generationTtlMillis = ttl.toMillis();
+    }
+
+    /**
+     * 布隆过滤器当前代的状态
+     */
+    public static class Stats {
+        public final String key;
+        public final long capacity;         // 总容量（含扩展的子过滤器）
+        public final long sizeBytes;        // 占用内存
+        public final long filters;          // 子过滤器个数，>1 说明实际数量超过了预分配容量
+        public final long items;            // 已插入数
+        public final double fill;           // 填充率 items/capacity
+        public final double estimatedFpRate; // 估算误判率
+        public final double targetFpRate;   // 目标误判率
+
+        public Stats(String key, long capacity, long sizeBytes, long filters, long items, double targetFpRate) {
+            this.key = key;
+            this.capacity = capacity;
+            this.sizeBytes = sizeBytes;
+            this.filters = filters;
+            this.items = items;
+            this.fill = capacity > 0 ? (double) items / capacity : 0.0;
+            this.estimatedFpRate = estimateFpRate(targetFpRate, capacity, items, filters);
+            this.targetFpRate = targetFpRate;
+        }
+    }
+}
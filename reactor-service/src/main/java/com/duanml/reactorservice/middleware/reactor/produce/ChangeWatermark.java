@@ -0,0 +1,72 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.produce</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/16 19:30
+ * Description: 增量生产的高水位：(变更时间, 主键)，按二者字典序比较
+ *
+ * 增量查询按 (changedAt, id) 升序做键集分页：
+ * WHERE updated_at > #{changedAt} OR (updated_at = #{changedAt} AND id > #{id}) ORDER BY updated_at, id LIMIT n
+ * 同一毫秒内变更的多行由主键区分，不会漏也不会重复；只按自增主键增量（只关心新增行）时 changedAt 固定为0。
+ */
+public final class ChangeWatermark implements Comparable<ChangeWatermark> {
+
+    /** 初始水位：第一次增量即全量（按键集分页，不使用 OFFSET） */
+    public static final ChangeWatermark ZERO = new ChangeWatermark(0L, 0L);
+
+    public final long changedAt; // 变更时间（如 updated_at 毫秒）或变更序号
+    public final long id;        // 主键，同一变更时间内排序
+
+    public ChangeWatermark(long changedAt, long id) {
+        this.changedAt = changedAt;
+        this.id = id;
+    }
+
+    /** 只按自增主键增量 */
+    public static ChangeWatermark ofId(long id) {
+        return new ChangeWatermark(0L, id);
+    }
+
+    /** Redis中的存储格式 changedAt:id */
+    public String encode() {
+        return changedAt + ":" + id;
+    }
+
+    /**
+     * @return 水位，value为null时返回 ZERO
+     */
+    public static ChangeWatermark parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return ZERO;
+        }
+        int sep = value.indexOf(':');
+        if (sep < 0) {
+            throw new IllegalArgumentException("水位格式错误: " + value);
+        }
+        return new ChangeWatermark(Long.parseLong(value.substring(0, sep)), Long.parseLong(value.substring(sep + 1)));
+    }
+
+    @Override
+    public int compareTo(ChangeWatermark other) {
+        int c = Long.compare(changedAt, other.changedAt);
+        return c != 0 ? c : Long.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ChangeWatermark w && w.changedAt == changedAt && w.id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(changedAt) * 31 + Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,344 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.produce</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/14 14:10
+ * Description: 生产端主节点选举（租约 + fencing token + 备节点自动接管续跑）
+ *
+ * 1. 租约：reactor:producer:{queueKey}:leader 值为 "节点ID:token"，带过期时间，
+ *    持有者每 leaseMillis/3 续期一次，续期失败即视为失去主节点身份并停止生产；
+ *    租约与线程无关，任意线程都可以续期和释放（不再依赖 Redisson 锁的线程归属）；
+ * 2. fencing token：每次获得租约时 INCR 得到单调递增的token；每页入队前以token校验
+ *    reactor:producer:{queueKey}:fence（记录已生效的最大token），旧主节点（如长GC后醒来）
+ *    在新主节点写入后即被拒绝，不会再入队；
+ * 3. 续跑：生产期望状态 :desired 由 start 置位、stop/生产完成时清除；主节点每次续期时把
+ *    已完成的页号写入 :checkpoint；所有节点的选举线程在 desired=1 且无主节点时尝试获取租约，
+ *    获得后从 checkpoint 续跑（重复的页由去重机制跳过）；接管总是沿用当前作业（作业ID、BLOOM去重的那一代），
+ *    即使原主节点尚未完成第一页；desired=1 期间再次 start 不会清除进度；
+ * 4. 停止：任意节点写入 :stop，主节点检测到后优雅停止生产、清除作业状态并释放租约；
+ * 5. 定时作业（setScheduleIntervalMillis，配合生产端增量模式）：没有作业在跑时，各节点的选举线程以
+ *    SET NX PX 抢 :schedule 键，每个周期只有抢到的节点发起一次 requestStart，集群内不会重复触发；
+ *    stop 只结束本轮作业，下个周期照常触发。
+ */
+@Slf4j
+public class ProducerLeaderElection {
+
+    private static final String KEY_PREFIX = "reactor:producer:";
+
+    // 无主节点时获取租约，返回token，已有主节点返回0
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "local token = redis.call('INCR', KEYS[2]) " +
+            "redis.call('SET', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2]) " +
+            "return token", Long.class);
+
+    // 仍是自己持有时续期
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "return 0", Long.class);
+
+    // 仍是自己持有时释放
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    // token不小于已生效的最大token才放行，并推高已生效token
+    private static final DefaultRedisScript<Long> FENCE_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "local token = tonumber(ARGV[1]) " +
+            "if token < current then return 0 end " +
+            "if token > current then redis.call('SET', KEYS[1], ARGV[1]) end " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final AbstractReactorProducerBatch<?> producer;
+    private final String nodeId;
+    private final long leaseMillis;
+
+    private final String leaderKey;
+    private final String tokenKey;
+    private final String fenceKey;
+    private final String desiredKey;
+    private final String checkpointKey;
+    private final String stopKey;
+    private final String scheduleKey;
+
+    // 定时发起作业的周期，0为不定时
+    private volatile long scheduleIntervalMillis = 0L;
+
+    // 当前持有的token，0表示不是主节点
+    private volatile long token = 0L;
+    private volatile boolean running = true;
+    private final Thread electionThread;
+
+    /**
+     * @param redisTemplate Redis操作模板
+     * @param producer      生产端
+     * @param nodeId        节点ID
+     * @param leaseMillis   租约时长，节点宕机后最长经过该时长由备节点接管
+     */
+    public ProducerLeaderElection(StringRedisTemplate redisTemplate, AbstractReactorProducerBatch<?> producer,
+                                  String nodeId, long leaseMillis) {
+        this.redisTemplate = redisTemplate;
+        this.producer = producer;
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseMillis;
+        String prefix = KEY_PREFIX + producer.getQueueKey() + ":";
+        this.leaderKey = prefix + "leader";
+        this.tokenKey = prefix + "token";
+        this.fenceKey = prefix + "fence";
+        this.desiredKey = prefix + "desired";
+        this.checkpointKey = prefix + "checkpoint";
+        this.stopKey = prefix + "stop";
+        this.scheduleKey = prefix + "schedule";
+        producer.setPushGuard(this::checkFence);
+        this.electionThread = new Thread(this::electionLoop, "producer-leader-election-" + producer.getQueueKey());
+        electionThread.setDaemon(true);
+        electionThread.start();
+    }
+
+    // ===================== 指令 ========================
+
+    /**
+     * 发起一次新的生产作业：已有主节点在生产时拒绝；作业仍在进行但主节点刚宕机（故障转移窗口）时不清除进度，
+     * 尝试立即接管续跑；否则清除上次作业的进度，尝试立即成为主节点，未抢到租约的情况下由抢到的节点生产
+     * @return 结果说明
+     */
+    public synchronized String requestStart() {
+        String leader = redisTemplate.opsForValue().get(leaderKey);
+        if ("1".equals(redisTemplate.opsForValue().get(desiredKey))) {
+            if (leader != null) {
+                return "Producer already running on " + leader;
+            }
+            if (!"1".equals(redisTemplate.opsForValue().get(stopKey))) {
+                if (tryBecomeLeader(true)) {
+                    return "Producer resumed as leader (node " + nodeId + ", token " + token + ")";
+                }
+                return "Producer job in progress, leader is " + redisTemplate.opsForValue().get(leaderKey);
+            }
+        }
+        redisTemplate.delete(Arrays.asList(stopKey, checkpointKey));
+        redisTemplate.opsForValue().set(desiredKey, "1");
+        if (tryBecomeLeader(false)) {
+            return "Producer started as leader (node " + nodeId + ", token " + token + ")";
+        }
+        return "Producer start requested, leader is " + redisTemplate.opsForValue().get(leaderKey);
+    }
+
+    /**
+     * 设置定时发起作业的周期，0为关闭；各节点应配置相同的周期
+     */
+    public void setScheduleIntervalMillis(long scheduleIntervalMillis) {
+        this.scheduleIntervalMillis = Math.max(0L, scheduleIntervalMillis);
+    }
+
+    /**
+     * 发出停止信号，由主节点执行
+     */
+    public void requestStop() {
+        redisTemplate.opsForValue().set(stopKey, "1");
+    }
+
+    /**
+     * 停止选举线程；本节点是主节点时停止生产并释放租约（作业保持desired，由其他节点续跑）
+     */
+    public synchronized void shutdown() {
+        running = false;
+        electionThread.interrupt();
+        if (token > 0) {
+            producer.requestStop();
+            awaitProducerStopped();
+            saveCheckpoint();
+            release();
+        }
+    }
+
+    // ===================== 状态 ========================
+
+    public boolean isLeader() {
+        return token > 0;
+    }
+
+    public long getFencingToken() {
+        return token;
+    }
+
+    /**
+     * 选举状态：当前主节点、本节点token、作业期望状态、续跑页号
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("nodeId", nodeId);
+        status.put("leader", redisTemplate.opsForValue().get(leaderKey));
+        status.put("isLeader", isLeader());
+        status.put("token", token);
+        status.put("desired", "1".equals(redisTemplate.opsForValue().get(desiredKey)));
+        status.put("checkpoint", redisTemplate.opsForValue().get(checkpointKey));
+        status.put("scheduleIntervalMillis", scheduleIntervalMillis);
+        if (scheduleIntervalMillis > 0) {
+            // 距下次定时触发的时间（毫秒），-2 表示本周期尚未触发
+            status.put("nextScheduleInMillis", redisTemplate.getExpire(scheduleKey, TimeUnit.MILLISECONDS));
+        }
+        return status;
+    }
+
+    // ===================== 选举循环 ========================
+
+    private void electionLoop() {
+        long tick = Math.max(100L, leaseMillis / 3);
+        while (running) {
+            try {
+                Thread.sleep(tick);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            }
+            try {
+                if (token > 0) {
+                    leaderTick();
+                } else if ("1".equals(redisTemplate.opsForValue().get(desiredKey))) {
+                    if (!"1".equals(redisTemplate.opsForValue().get(stopKey))) {
+                        tryBecomeLeader(true);
+                    }
+                } else if (scheduleIntervalMillis > 0) {
+                    scheduleTick();
+                }
+            } catch (Exception e) {
+                log.warn("生产端选举异常: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 主节点每个周期：续期、保存进度、处理停止信号和生产结束
+     */
+    private synchronized void leaderTick() {
+        if (token == 0) {
+            return;
+        }
+        if (!renew()) {
+            log.warn("生产端租约已失效（token={}），停止生产", token);
+            token = 0L;
+            producer.requestStop();
+            return;
+        }
+        if ("1".equals(redisTemplate.opsForValue().get(stopKey))) {
+            producer.requestStop();
+            awaitProducerStopped();
+            finishJob("收到停止信号");
+            return;
+        }
+        if (producer.isRunning()) {
+            saveCheckpoint();
+            return;
+        }
+        if (producer.isExhausted()) {
+            finishJob("数据已全部生产");
+        } else {
+            // 生产线程异常退出，从进度处重启
+            saveCheckpoint();
+            log.warn("生产线程意外退出，从第{}页重启", producer.getNextPage());
+            producer.startProduce(producer.getNextPage(), true);
+        }
+    }
+
+    /**
+     * 无作业时抢本周期的定时触发权，抢到则发起一次作业
+     */
+    private void scheduleTick() {
+        long interval = scheduleIntervalMillis;
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(scheduleKey, nodeId, interval, TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(claimed)) {
+            log.info("定时发起生产作业（周期{}ms）: {}", interval, requestStart());
+        }
+    }
+
+    /**
+     * 获取租约并从进度处开始生产
+     * @param resume 是否续跑当前作业：接管时为true，新发起的作业为false
+     */
+    private synchronized boolean tryBecomeLeader(boolean resume) {
+        if (token > 0) {
+            return true;
+        }
+        Long acquired = redisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(leaderKey, tokenKey),
+                nodeId, String.valueOf(leaseMillis));
+        if (acquired == null || acquired == 0) {
+            return false;
+        }
+        token = acquired;
+        String checkpoint = redisTemplate.opsForValue().get(checkpointKey);
+        int startPage = checkpoint != null ? Integer.parseInt(checkpoint) : 0;
+        log.info("本节点成为生产端主节点: node={}, token={}, 从第{}页{}", nodeId, token, startPage, resume ? "续跑" : "开始新作业");
+        producer.startProduce(startPage, resume);
+        return true;
+    }
+
+    private void finishJob(String reason) {
+        redisTemplate.delete(Arrays.asList(desiredKey, checkpointKey, stopKey));
+        release();
+        log.info("生产作业结束（{}），已释放主节点租约", reason);
+    }
+
+    private boolean renew() {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(leaderKey),
+                leaseValue(), String.valueOf(leaseMillis));
+        return renewed != null && renewed == 1;
+    }
+
+    private void release() {
+        redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(leaderKey), leaseValue());
+        token = 0L;
+    }
+
+    private void saveCheckpoint() {
+        redisTemplate.opsForValue().set(checkpointKey, String.valueOf(producer.getNextPage()));
+    }
+
+    /**
+     * 生产线程每页入队前调用：本节点仍持有租约且token未被更新的主节点取代
+     */
+    private boolean checkFence() {
+        long current = token;
+        if (current == 0) {
+            return false;
+        }
+        Long passed = redisTemplate.execute(FENCE_SCRIPT, Collections.singletonList(fenceKey), String.valueOf(current));
+        if (passed == null || passed == 0) {
+            log.warn("fencing校验失败，token={} 已被更新的主节点取代", current);
+            return false;
+        }
+        return true;
+    }
+
+    private void awaitProducerStopped() {
+        // 最多等半个租约，避免等待期间租约过期
+        long deadline = System.currentTimeMillis() + leaseMillis / 2;
+        while (producer.isRunning() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private String leaseValue() {
+        return nodeId + ":" + token;
+    }
+}
@@ -0,0 +1,70 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.produce</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/16 19:40
+ * Description: 增量生产水位的持久化（Redis，reactor:producer:{queueKey}:watermark）
+ *
+ * 每页入队后推进一次，Lua脚本原子地比较并只向前推进：旧主节点迟到的写入、乱序的写入都不会让水位回退。
+ * 入队与推进水位之间宕机时，下次从旧水位重新生产这一页（至少一次，由去重/消费端幂等兜底）。
+ */
+class WatermarkStore {
+
+    private static final String KEY_PREFIX = "reactor:producer:";
+
+    // 新水位大于当前水位时写入，返回1；否则返回0。
+    // 两部分按非负十进制整数字符串比较（先比长度再逐字符），不经过 tonumber：Lua数值为双精度，
+    // 超过2^53的主键（如雪花ID约1.9e18）转换后会丢失精度，相邻ID比较结果相等
+    private static final DefaultRedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "local function cmp(a, b) " +
+            "  if #a ~= #b then return #a < #b and -1 or 1 end " +
+            "  if a == b then return 0 end " +
+            "  return a < b and -1 or 1 " +
+            "end " +
+            "local current = redis.call('GET', KEYS[1]) " +
+            "if current then " +
+            "  local sep = string.find(current, ':', 1, true) " +
+            "  local byTime = cmp(ARGV[1], string.sub(current, 1, sep - 1)) " +
+            "  if byTime < 0 or (byTime == 0 and cmp(ARGV[2], string.sub(current, sep + 1)) <= 0) then return 0 end " +
+            "end " +
+            "redis.call('SET', KEYS[1], ARGV[1] .. ':' .. ARGV[2]) " +
+            "return 1", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+
+    WatermarkStore(StringRedisTemplate redisTemplate, String queueKey) {
+        this.redisTemplate = redisTemplate;
+        this.key = KEY_PREFIX + queueKey + ":watermark";
+    }
+
+    ChangeWatermark load() {
+        return ChangeWatermark.parse(redisTemplate.opsForValue().get(key));
+    }
+
+    /**
+     * 推进水位
+     * @return 是否推进（不大于当前水位时不写入）
+     */
+    boolean advance(ChangeWatermark watermark) {
+        if (watermark.changedAt < 0 || watermark.id < 0) {
+            throw new IllegalArgumentException("水位两部分须为非负整数: " + watermark);
+        }
+        Long advanced = redisTemplate.execute(ADVANCE_SCRIPT, Collections.singletonList(key),
+                String.valueOf(watermark.changedAt), String.valueOf(watermark.id));
+        return advanced != null && advanced == 1;
+    }
+
+    /** 清除水位，下次增量从头开始 */
+    void reset() {
+        redisTemplate.delete(key);
+    }
+}
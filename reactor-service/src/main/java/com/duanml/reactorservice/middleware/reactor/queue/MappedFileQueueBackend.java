@@ -0,0 +1,347 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/10 20:40
+ * Description: 基于本地磁盘内存映射文件的任务队列（单节点，大积压）
+ *
+ * 1. 追加写日志，按固定大小切分为段文件（文件名为段起始的全局偏移量）；
+ * 2. 每条记录格式：[int 长度][UTF-8 消息体]，先写消息体再写长度，长度非0即表示记录完整；
+ *    长度0是恢复扫描的日志结尾标记，因此不接受空消息（整批写入前校验，不写入任何一条）；
+ *    段剩余空间不足时写入结束标记(-1)并切换到下一个段；
+ * 3. 读偏移量持久化在内存映射的 offset 文件中，进程重启后从上次位置继续；
+ *    写位置在启动时扫描最后一个段恢复；
+ * 4. 读写都直接访问映射内存，不经过 read/write 系统调用；已读完的段文件自动删除；
+ * 5. 语义与 LIST 队列一致：出队即推进读偏移量，ack 为空操作，nack 追加回队尾；
+ * 6. 内部即为字节存储（nativeBytes），pushBatchBytes 直接写入，出队消息填充 body。
+ *
+ * 同一队列目录只能由一个进程内的一个实例打开，生产端和消费端应共享同一个实例。
+ */
+@Slf4j
+public class MappedFileQueueBackend implements QueueBackend, Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String OFFSET_FILE = "read.offset";
+    private static final int HEADER_SIZE = 4;
+    private static final int END_OF_SEGMENT = -1;
+    // 队列空时的等待间隔
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final Path dir;
+    private final int segmentSize;
+
+    // 已映射的段：段起始偏移量 -> 映射内存
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private final MappedByteBuffer offsetBuffer;
+
+    private final Object writeLock = new Object();
+    private final Object readLock = new Object();
+
+    private volatile long writePosition; // 已完整写入的全局位置
+    private long readPosition;           // 下一条待读记录的全局位置，受readLock保护
+    private final AtomicLong pending = new AtomicLong(0L); // 未读记录数
+    private final AtomicLong wakeups = new AtomicLong(0L); // 唤醒次数，变化时阻塞中的出队立即返回
+
+    /**
+     * 构造方法：打开（或创建）队列目录并恢复读写位置
+     * @param name        队列名称
+     * @param dir         队列目录
+     * @param segmentSize 段文件大小，单条消息不能超过该值
+     */
+    public MappedFileQueueBackend(String name, Path dir, int segmentSize) {
+        if (segmentSize <= HEADER_SIZE * 2) {
+            throw new IllegalArgumentException("segmentSize过小: " + segmentSize);
+        }
+        this.name = name;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            try (FileChannel channel = FileChannel.open(dir.resolve(OFFSET_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.offsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开磁盘队列失败: " + dir, e);
+        }
+        recover();
+        log.info("磁盘队列 {} 已打开, dir={}, readPosition={}, writePosition={}, pending={}",
+                name, dir, readPosition, writePosition, pending.get());
+    }
+
+    // ===================== QueueBackend ========================
+
+    @Override
+    public void pushBatch(List<String> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        List<byte[]> bytes = new ArrayList<>(payloads.size());
+        for (String payload : payloads) {
+            bytes.add(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        pushBatchBytes(bytes);
+    }
+
+    @Override
+    public void pushBatchBytes(List<byte[]> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        for (byte[] payload : payloads) {
+            checkPayload(payload);
+        }
+        synchronized (writeLock) {
+            long position = writePosition;
+            for (byte[] payload : payloads) {
+                position = append(position, payload);
+            }
+            // 整批写完后再发布写位置，读端只会看到完整记录
+            pending.addAndGet(payloads.size());
+            writePosition = position;
+        }
+    }
+
+    @Override
+    public boolean nativeBytes() {
+        return true;
+    }
+
+    @Override
+    public List<QueueMessage> popBatch(int maxCount, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long wakeup = wakeups.get();
+        while (true) {
+            synchronized (readLock) {
+                if (readPosition < writePosition) {
+                    return readBatch(maxCount);
+                }
+            }
+            if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted() || wakeups.get() != wakeup) {
+                return Collections.emptyList();
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        wakeups.incrementAndGet();
+    }
+
+    @Override
+    public long size() {
+        return pending.get();
+    }
+
+    @Override
+    public void ack(List<QueueMessage> messages) {
+        // 出队即推进读偏移量，无需确认
+    }
+
+    @Override
+    public void nack(List<QueueMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        for (QueueMessage message : messages) {
+            payloads.add(message.bytes());
+        }
+        pushBatchBytes(payloads);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 刷盘并释放段映射（映射内存由GC回收）
+     */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            synchronized (readLock) {
+                segments.values().forEach(MappedByteBuffer::force);
+                offsetBuffer.force();
+                segments.clear();
+            }
+        }
+    }
+
+    // ===================== 读写实现 ========================
+
+    /**
+     * 消息不能为空（长度0为日志结尾标记），也不能超过一个段
+     */
+    private void checkPayload(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("不支持空消息: " + name);
+        }
+        if (HEADER_SIZE + bytes.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("消息过大: " + bytes.length + " bytes, segmentSize=" + segmentSize);
+        }
+    }
+
+    /**
+     * 追加一条记录，必要时切换到下一个段；调用方已校验过消息
+     * @return 写入后的全局位置
+     */
+    private long append(long position, byte[] bytes) {
+        int recordSize = HEADER_SIZE + bytes.length;
+        int offset = (int) (position % segmentSize);
+        if (offset + recordSize > segmentSize - HEADER_SIZE) {
+            // 当前段剩余空间不足，写结束标记后切换到下一个段
+            segment(position - offset).putInt(offset, END_OF_SEGMENT);
+            position = position - offset + segmentSize;
+            offset = 0;
+        }
+        MappedByteBuffer buffer = segment(position - offset);
+        buffer.put(offset + HEADER_SIZE, bytes);
+        buffer.putInt(offset, bytes.length);
+        return position + recordSize;
+    }
+
+    /**
+     * 读取一批记录并持久化读偏移量，调用方需持有readLock
+     */
+    private List<QueueMessage> readBatch(int maxCount) {
+        long limit = writePosition;
+        List<QueueMessage> messages = new ArrayList<>(Math.min(maxCount, 64));
+        while (messages.size() < maxCount && readPosition < limit) {
+            long base = readPosition - readPosition % segmentSize;
+            int offset = (int) (readPosition - base);
+            MappedByteBuffer buffer = segment(base);
+            int length = buffer.getInt(offset);
+            if (length == END_OF_SEGMENT) {
+                readPosition = base + segmentSize;
+                releaseSegment(base);
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset + HEADER_SIZE, bytes);
+            messages.add(QueueMessage.ofBytes(null, bytes));
+            readPosition += HEADER_SIZE + length;
+        }
+        offsetBuffer.putLong(0, readPosition);
+        pending.addAndGet(-messages.size());
+        return messages;
+    }
+
+    /**
+     * 启动恢复：读偏移量取offset文件，写位置扫描最后一个段得到，并统计未读记录数
+     */
+    private void recover() {
+        TreeSet<Long> bases = listSegmentBases();
+        long savedRead = offsetBuffer.getLong(0);
+        if (bases.isEmpty()) {
+            // 空队列：从上次读位置所在段的下一个段开始，保证偏移量单调递增
+            long start = savedRead == 0 ? 0 : savedRead - savedRead % segmentSize + segmentSize;
+            readPosition = start;
+            writePosition = start;
+            offsetBuffer.putLong(0, start);
+            return;
+        }
+        // 读位置所在段已不存在（如被手工清理），从最早的段开始
+        if (!bases.contains(savedRead - savedRead % segmentSize)) {
+            savedRead = bases.first();
+        }
+        readPosition = savedRead;
+
+        // 扫描最后一个段恢复写位置
+        long lastBase = bases.last();
+        MappedByteBuffer last = segment(lastBase);
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segmentSize) {
+            int length = last.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length == END_OF_SEGMENT) {
+                offset = segmentSize;
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        writePosition = lastBase + offset;
+
+        // 统计未读记录数（只读长度字段）
+        long count = 0;
+        long position = readPosition;
+        while (position < writePosition) {
+            long base = position - position % segmentSize;
+            int length = segment(base).getInt((int) (position - base));
+            if (length == END_OF_SEGMENT) {
+                position = base + segmentSize;
+                continue;
+            }
+            position += HEADER_SIZE + length;
+            count++;
+        }
+        pending.set(count);
+    }
+
+    private MappedByteBuffer segment(long base) {
+        return segments.computeIfAbsent(base, b -> {
+            Path file = dir.resolve(String.format("%020d%s", b, SEGMENT_SUFFIX));
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("映射段文件失败: " + file, e);
+            }
+        });
+    }
+
+    /**
+     * 段已读完：解除引用并删除文件
+     */
+    private void releaseSegment(long base) {
+        segments.remove(base);
+        Path file = dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除已读完的段文件失败: {}, {}", file, e.getMessage());
+        }
+    }
+
+    private TreeSet<Long> listSegmentBases() {
+        TreeSet<Long> bases = new TreeSet<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(f -> f.endsWith(SEGMENT_SUFFIX))
+                    .forEach(f -> bases.add(Long.parseLong(f.substring(0, f.length() - SEGMENT_SUFFIX.length()))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("扫描段文件失败: " + dir, e);
+        }
+        return bases;
+    }
+}
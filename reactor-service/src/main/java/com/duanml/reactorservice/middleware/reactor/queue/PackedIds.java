@@ -0,0 +1,75 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/16 15:40
+ * Description: 打包ID队列元素：队列中只放主键，消费端再按主键批量查出实体（claim-check）
+ *
+ * 格式：1字节标记 'P' + N 个小端序 long，一个队列元素携带 N 个任务，每个任务约8字节；
+ * 1. 实体内容（含账号、密码等敏感字段）不再进入队列，队列内存与网络流量只和ID数量有关；
+ * 2. JSON任务以 { [ " 开头，信封以 E1| 开头，均不会被误认为打包元素，可在同一队列混用；
+ * 3. 只能用于字节队列（QueueBackend.nativeBytes），生产端见 AbstractReactorProducerBatch.setPackedIds，
+ *    消费端见 AbstractReactorConsumeBatch.resolveTasks。
+ */
+public final class PackedIds {
+
+    public static final byte MARKER = 'P';
+
+    private PackedIds() {
+    }
+
+    /** 是否为打包ID元素 */
+    public static boolean isPacked(byte[] body) {
+        return body != null && body.length > 1 && body[0] == MARKER && (body.length - 1) % Long.BYTES == 0;
+    }
+
+    /** 打包单个ID */
+    public static byte[] pack(long id) {
+        return pack(new long[]{id}, 0, 1);
+    }
+
+    /** 打包 ids[from, to) */
+    public static byte[] pack(long[] ids, int from, int to) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (to - from) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MARKER);
+        for (int i = from; i < to; i++) {
+            buffer.putLong(ids[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 把前 count 个ID按每个元素最多 perElement 个打包
+     */
+    public static List<byte[]> packAll(long[] ids, int count, int perElement) {
+        List<byte[]> elements = new ArrayList<>((count + perElement - 1) / perElement);
+        for (int from = 0; from < count; from += perElement) {
+            elements.add(pack(ids, from, Math.min(count, from + perElement)));
+        }
+        return elements;
+    }
+
+    /**
+     * 解包
+     * @throws IllegalArgumentException 不是打包ID元素
+     */
+    public static long[] unpack(byte[] body) {
+        if (!isPacked(body)) {
+            throw new IllegalArgumentException("不是打包ID元素");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body, 1, body.length - 1).order(ByteOrder.LITTLE_ENDIAN);
+        long[] ids = new long[(body.length - 1) / Long.BYTES];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getLong();
+        }
+        return ids;
+    }
+}
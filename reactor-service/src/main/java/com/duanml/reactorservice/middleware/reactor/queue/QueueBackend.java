@@ -0,0 +1,93 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/9 20:15
+ * Description: 任务队列SPI，生产端/消费端基类只通过该接口访问队列
+ *
+ * 语义约定：
+ * 1. pushBatch：批量入队，尽量一次往返；
+ * 2. popBatch：批量出队，无消息时最多阻塞 timeoutMillis（<=0 表示不阻塞），返回空列表表示超时；
+ * 3. ack：消息已处理完毕（成功或最终失败），队列可以彻底删除；
+ * 4. nack：消息未处理（如停机时本地持有的任务），需要重新投递；
+ * 5. nativeBytes：为 true 时队列内部以字节存储，生产端应调用 pushBatchBytes，
+ *    出队消息填充 QueueMessage.body，整个链路不经过 String；
+ * 6. wakeup：停机时唤醒阻塞在 popBatch 上的调用方尽快返回（可返回空列表），不得因此丢失消息。
+ *
+ * 实现：
+ * - {@link RedisListQueueBackend}：Redis LIST，出队即删除，ack为空操作；
+ * - {@link RedisStreamQueueBackend}：Redis Stream + 消费者组，支持超时消息接管；
+ * - {@link RingBufferQueueBackend}：JVM内无锁有界环形队列，单节点任务无需Redis。
+ */
+public interface QueueBackend {
+
+    /**
+     * 批量入队
+     * @param payloads 消息体列表
+     */
+    void pushBatch(List<String> payloads);
+
+    /**
+     * 批量入队（UTF-8字节），默认转换为字符串后调用 pushBatch
+     * @param payloads 消息体列表
+     */
+    default void pushBatchBytes(List<byte[]> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            texts.add(new String(payload, StandardCharsets.UTF_8));
+        }
+        pushBatch(texts);
+    }
+
+    /**
+     * 是否以字节形式存储消息，是则 pushBatchBytes 和出队都无需字符串转换
+     */
+    default boolean nativeBytes() {
+        return false;
+    }
+
+    /**
+     * 批量出队
+     * @param maxCount      最多出队条数
+     * @param timeoutMillis 队列为空时最长阻塞时间，<=0 表示不阻塞
+     * @return 消息列表，超时无消息返回空列表
+     */
+    List<QueueMessage> popBatch(int maxCount, long timeoutMillis);
+
+    /**
+     * 唤醒当前阻塞在 popBatch 上的调用方，使其尽快返回，用于停机时不必等满阻塞时长
+     * 默认不支持唤醒，调用方最多阻塞到 timeoutMillis
+     */
+    default void wakeup() {
+    }
+
+    /**
+     * 当前队列长度（近似值，用于限流和监控）
+     */
+    long size();
+
+    /**
+     * 确认消息已处理
+     */
+    void ack(List<QueueMessage> messages);
+
+    /**
+     * 消息未处理，放回队列重新投递
+     */
+    void nack(List<QueueMessage> messages);
+
+    /**
+     * 队列名称，用于日志和线程命名
+     */
+    String name();
+}
@@ -0,0 +1,54 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/9 20:18
+ * Description: 出队的消息：队列内ID（用于ack/nack，可为空） + 消息体
+ *
+ * 消息体二选一：字符串队列填 payload，字节队列（见 QueueBackend.nativeBytes）填 body，
+ * 需要另一种形式时用 text()/bytes() 按需转换。
+ */
+public class QueueMessage {
+
+    public final String id;      // 队列内消息ID，如Stream ID；LIST/环形队列为null
+    public final String payload; // 消息体（字符串形式）
+    public final byte[] body;    // 消息体（UTF-8字节形式）
+
+    public QueueMessage(String id, String payload) {
+        this(id, payload, null);
+    }
+
+    private QueueMessage(String id, String payload, byte[] body) {
+        this.id = id;
+        this.payload = payload;
+        this.body = body;
+    }
+
+    /**
+     * 以字节形式出队的消息
+     */
+    public static QueueMessage ofBytes(String id, byte[] body) {
+        return new QueueMessage(id, null, body);
+    }
+
+    /** 字符串形式的消息体 */
+    public String text() {
+        if (payload != null || body == null) {
+            return payload;
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /** UTF-8字节形式的消息体 */
+    public byte[] bytes() {
+        if (body != null || payload == null) {
+            return body;
+        }
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
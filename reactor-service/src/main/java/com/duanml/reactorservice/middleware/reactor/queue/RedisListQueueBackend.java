@@ -0,0 +1,248 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.TimeoutUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/9 20:25
+ * Description: 基于 Redis LIST 的任务队列（默认实现）
+ *
+ * 1. 入队：RPUSH 一次写入整批；
+ * 2. 出队：BLPOP 阻塞等待第一条，再用 LPOP count 取剩余（Redis 6.2+）；
+ * 3. 出队即删除，ack 为空操作；nack 用 LPUSH 放回队头，尽快重新投递；
+ * 4. 传入字节模板时为字节模式：入队/出队直接读写 UTF-8 JSON 字节，出队消息填充 body。
+ *    队列中的数据格式与字符串模式完全相同，两种模式可以混用；
+ * 5. 唤醒：阻塞出队时 BLPOP 同时监听队列和本实例独有的唤醒key，wakeup 向唤醒key写入令牌，
+ *    阻塞中的 BLPOP 取到令牌即返回空列表；一次 BLPOP 只会取走一个元素，取到令牌就不会取走任务，不丢消息；
+ *    Redis Cluster 下两个key须在同一slot：队列key带 hash tag 时沿用，否则以整个队列key作为唤醒key的 hash tag
+ *    （{queueKey}:wake:{实例ID}），与队列key落在同一slot。
+ */
+public class RedisListQueueBackend implements QueueBackend {
+
+    protected final StringRedisTemplate redisTemplate;
+    protected final String queueKey;
+    // 字节模板，为null时使用字符串模式
+    protected final RedisTemplate<String, byte[]> bytesTemplate;
+
+    // 唤醒令牌的过期时间，停机后残留的令牌自动清除
+    private static final long WAKE_TOKEN_TTL_MILLIS = 5_000L;
+    private final byte[] rawQueueKey;
+    private final String wakeKey;
+    private final byte[] rawWakeKey;
+    // 正阻塞在 BLPOP 上的调用方数
+    private final AtomicInteger blockedPops = new AtomicInteger(0);
+
+    public RedisListQueueBackend(StringRedisTemplate redisTemplate, String queueKey) {
+        this(redisTemplate, queueKey, null);
+    }
+
+    /**
+     * 构造方法
+     * @param redisTemplate 字符串模板（字符串入队、size等）
+     * @param queueKey      队列key
+     * @param bytesTemplate 字节模板，非null时为字节模式
+     */
+    public RedisListQueueBackend(StringRedisTemplate redisTemplate, String queueKey,
+                                 RedisTemplate<String, byte[]> bytesTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.queueKey = queueKey;
+        this.bytesTemplate = bytesTemplate;
+        this.rawQueueKey = queueKey.getBytes(StandardCharsets.UTF_8);
+        this.wakeKey = wakeKey(queueKey, UUID.randomUUID().toString());
+        this.rawWakeKey = wakeKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void pushBatch(List<String> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForList().rightPushAll(queueKey, payloads);
+    }
+
+    @Override
+    public void pushBatchBytes(List<byte[]> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        if (bytesTemplate == null) {
+            QueueBackend.super.pushBatchBytes(payloads);
+            return;
+        }
+        bytesTemplate.opsForList().rightPushAll(queueKey, payloads);
+    }
+
+    @Override
+    public boolean nativeBytes() {
+        return bytesTemplate != null;
+    }
+
+    @Override
+    public List<QueueMessage> popBatch(int maxCount, long timeoutMillis) {
+        if (bytesTemplate != null) {
+            return popBytes(maxCount, timeoutMillis);
+        }
+        if (timeoutMillis <= 0) {
+            // 不阻塞：BLPOP 的 0 表示永久阻塞，这里直接用 LPOP count
+            List<String> payloads = redisTemplate.opsForList().leftPop(queueKey, maxCount);
+            if (payloads == null || payloads.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<QueueMessage> messages = new ArrayList<>(payloads.size());
+            for (String payload : payloads) {
+                messages.add(new QueueMessage(null, payload));
+            }
+            return messages;
+        }
+        byte[] first = blockingPopFirst(timeoutMillis);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<QueueMessage> messages = new ArrayList<>(maxCount);
+        messages.add(new QueueMessage(null, new String(first, StandardCharsets.UTF_8)));
+        if (maxCount > 1) {
+            List<String> rest = redisTemplate.opsForList().leftPop(queueKey, maxCount - 1);
+            if (rest != null) {
+                for (String payload : rest) {
+                    messages.add(new QueueMessage(null, payload));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 字节模式出队，逻辑与字符串模式相同
+     */
+    private List<QueueMessage> popBytes(int maxCount, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            List<byte[]> payloads = bytesTemplate.opsForList().leftPop(queueKey, maxCount);
+            if (payloads == null || payloads.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<QueueMessage> messages = new ArrayList<>(payloads.size());
+            for (byte[] payload : payloads) {
+                messages.add(QueueMessage.ofBytes(null, payload));
+            }
+            return messages;
+        }
+        byte[] first = blockingPopFirst(timeoutMillis);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<QueueMessage> messages = new ArrayList<>(maxCount);
+        messages.add(QueueMessage.ofBytes(null, first));
+        if (maxCount > 1) {
+            List<byte[]> rest = bytesTemplate.opsForList().leftPop(queueKey, maxCount - 1);
+            if (rest != null) {
+                for (byte[] payload : rest) {
+                    messages.add(QueueMessage.ofBytes(null, payload));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 与队列key同slot的唤醒key：队列key已有 hash tag 时直接追加后缀，否则把整个队列key作为 hash tag；
+     * 队列key含不成对的 '}' 时无法构造同slot的tag，只适用于单机/主从 Redis
+     */
+    static String wakeKey(String queueKey, String instanceId) {
+        int open = queueKey.indexOf('{');
+        int close = open >= 0 ? queueKey.indexOf('}', open + 1) : -1;
+        if (close > open + 1 || queueKey.indexOf('}') >= 0) {
+            return queueKey + ":wake:" + instanceId;
+        }
+        return "{" + queueKey + "}:wake:" + instanceId;
+    }
+
+    /**
+     * BLPOP 队列与唤醒key，取到唤醒令牌或超时返回null
+     */
+    private byte[] blockingPopFirst(long timeoutMillis) {
+        int timeoutSeconds = (int) TimeoutUtils.toSeconds(timeoutMillis, TimeUnit.MILLISECONDS);
+        blockedPops.incrementAndGet();
+        try {
+            List<byte[]> popped = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().bLPop(timeoutSeconds, rawQueueKey, rawWakeKey));
+            // 返回 [key, value]，取到的是唤醒令牌时视为超时
+            if (popped == null || popped.size() < 2 || Arrays.equals(popped.get(0), rawWakeKey)) {
+                return null;
+            }
+            return popped.get(1);
+        } finally {
+            blockedPops.decrementAndGet();
+        }
+    }
+
+    /**
+     * 按当前阻塞数写入唤醒令牌，令牌带过期时间
+     */
+    @Override
+    public void wakeup() {
+        int blocked = blockedPops.get();
+        if (blocked <= 0) {
+            return;
+        }
+        String[] tokens = Collections.nCopies(blocked, "1").toArray(new String[0]);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.rPush(wakeKey, tokens);
+            conn.pExpire(wakeKey, WAKE_TOKEN_TTL_MILLIS);
+            return null;
+        });
+    }
+
+    @Override
+    public long size() {
+        Long size = redisTemplate.opsForList().size(queueKey);
+        return size != null ? size : 0L;
+    }
+
+    @Override
+    public void ack(List<QueueMessage> messages) {
+        // 出队即删除，无需确认
+    }
+
+    @Override
+    public void nack(List<QueueMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        // 逆序LPUSH，保持原有顺序回到队头
+        if (bytesTemplate != null) {
+            List<byte[]> payloads = new ArrayList<>(messages.size());
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                payloads.add(messages.get(i).bytes());
+            }
+            bytesTemplate.opsForList().leftPushAll(queueKey, payloads);
+            return;
+        }
+        List<String> payloads = new ArrayList<>(messages.size());
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            payloads.add(messages.get(i).text());
+        }
+        redisTemplate.opsForList().leftPushAll(queueKey, payloads);
+    }
+
+    @Override
+    public String name() {
+        return queueKey;
+    }
+}
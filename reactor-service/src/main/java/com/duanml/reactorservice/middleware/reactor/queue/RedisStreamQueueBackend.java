@@ -0,0 +1,354 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/8 21:10
+ * Description: 基于 Redis Stream + 消费者组的任务队列
+ *
+ * 与 LIST 队列相比：
+ * 1. XADD 批量入队（Lua 一次往返），带 MAXLEN ~ 近似裁剪，防止 Stream 无限增长；
+ * 2. XREADGROUP 按 COUNT/BLOCK 批量拉取，每条消息由 Redis 记录投递状态（PEL）；
+ * 3. 处理完成后批量 XACK + XDEL，队列长度(XLEN)即为未完成消息数；
+ * 4. 节点宕机未确认的消息，通过 XAUTOCLAIM 由其他消费者接管（需 Redis 6.2+）：
+ *    每次从上次返回的游标继续扫描PEL，直到Redis返回 0-0 表示扫完一轮，之后间隔 claimIdleMillis 再开始下一轮，
+ *    PEL头部的在途消息不会挡住后面的超时消息；投递次数超过 maxDeliveries 的消息（反复导致节点崩溃的毒消息）
+ *    不再接管，确认删除并记录错误日志；
+ * 5. nack 重新 XADD 后确认旧消息，立即重新投递，无需等待接管。
+ *
+ * 注意：MAXLEN 裁剪会丢弃最旧的消息（包括尚未消费的），maxLen 应远大于生产端的 queueMaxLength。
+ */
+@Slf4j
+public class RedisStreamQueueBackend implements QueueBackend {
+
+    /** 消息体在 Stream entry 中的字段名 */
+    public static final String PAYLOAD_FIELD = "p";
+
+    // 批量XADD：ARGV[1]=maxLen，ARGV[2..n]=消息体
+    private static final DefaultRedisScript<Long> ADD_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "for i = 2, #ARGV do " +
+            "  redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', '" + PAYLOAD_FIELD + "', ARGV[i]) " +
+            "end " +
+            "return #ARGV - 1", Long.class);
+
+    // 批量XACK + XDEL：ARGV[1]=group，ARGV[2..n]=消息ID
+    private static final DefaultRedisScript<Long> ACK_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "local ids = {} " +
+            "for i = 2, #ARGV do ids[#ids + 1] = ARGV[i] end " +
+            "local acked = redis.call('XACK', KEYS[1], ARGV[1], unpack(ids)) " +
+            "redis.call('XDEL', KEYS[1], unpack(ids)) " +
+            "return acked", Long.class);
+
+    // 创建消费者组（不存在则连同Stream一起创建，已存在则忽略）
+    private static final DefaultRedisScript<Long> CREATE_GROUP_SCRIPT = new DefaultRedisScript<>(
+            "local ok = pcall(redis.call, 'XGROUP', 'CREATE', KEYS[1], ARGV[1], '0', 'MKSTREAM') " +
+            "if ok then return 1 else return 0 end", Long.class);
+
+    // PEL扫描起点，XAUTOCLAIM 返回该值表示已扫完一轮
+    static final String CLAIM_CURSOR_START = "0-0";
+
+    // XAUTOCLAIM：ARGV[1]=group，ARGV[2]=consumer，ARGV[3]=minIdleMillis，ARGV[4]=count，ARGV[5]=起始游标，
+    // ARGV[6]=最大投递次数（<=0不限制）；投递次数超限的entry确认并删除
+    // 返回 {下一游标, {id1, payload1, ...}（接管的）, {id1, payload1, ...}（超限删除的）}，已被删除的entry跳过
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> AUTO_CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local res = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[5], 'COUNT', ARGV[4]) " +
+            "local limit = tonumber(ARGV[6]) " +
+            "local claimed = {} " +
+            "local dropped = {} " +
+            "for _, entry in ipairs(res[2]) do " +
+            "  local fields = entry[2] " +
+            "  local payload = false " +
+            "  if fields then " +
+            "    for j = 1, #fields, 2 do " +
+            "      if fields[j] == '" + PAYLOAD_FIELD + "' then payload = fields[j + 1] end " +
+            "    end " +
+            "  end " +
+            "  if payload then " +
+            "    local pending = redis.call('XPENDING', KEYS[1], ARGV[1], entry[1], entry[1], 1) " +
+            "    if limit > 0 and pending[1] and tonumber(pending[1][4]) > limit then " +
+            "      redis.call('XACK', KEYS[1], ARGV[1], entry[1]) " +
+            "      redis.call('XDEL', KEYS[1], entry[1]) " +
+            "      dropped[#dropped + 1] = entry[1] " +
+            "      dropped[#dropped + 1] = payload " +
+            "    else " +
+            "      claimed[#claimed + 1] = entry[1] " +
+            "      claimed[#claimed + 1] = payload " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return {res[1], claimed, dropped}", List.class);
+
+    protected final StringRedisTemplate redisTemplate;
+    protected final String streamKey;   // Stream的key
+    protected final String group;       // 消费者组名
+    protected final String consumer;    // 本节点消费者名
+    protected final long maxLen;        // MAXLEN近似裁剪长度
+
+    // 待确认消息空闲超过该时长即被接管
+    protected volatile long claimIdleMillis = 60_000L;
+    // 投递次数超过该值的待确认消息不再接管，<=0 不限制
+    protected volatile int maxDeliveries = 10;
+    // 上次开始一轮接管扫描的时间，所有worker共享，避免重复扫描PEL
+    private final AtomicLong lastClaimAt = new AtomicLong(0L);
+    // 同一时刻只有一个worker扫描PEL
+    private final AtomicBoolean claiming = new AtomicBoolean(false);
+    // 下次扫描PEL的起始游标，0-0 表示从头开始新一轮
+    private volatile String claimCursor = CLAIM_CURSOR_START;
+
+    private volatile boolean groupReady = false;
+
+    /**
+     * 构造方法
+     * @param redisTemplate Redis操作模板
+     * @param streamKey     Stream key
+     * @param group         消费者组名（同一任务的所有节点共用）
+     * @param consumer      消费者名（建议用节点ID，保证各节点唯一）
+     * @param maxLen        Stream最大长度（近似裁剪）
+     */
+    public RedisStreamQueueBackend(StringRedisTemplate redisTemplate, String streamKey,
+                                   String group, String consumer, long maxLen) {
+        this.redisTemplate = redisTemplate;
+        this.streamKey = streamKey;
+        this.group = group;
+        this.consumer = consumer;
+        this.maxLen = maxLen;
+    }
+
+    /**
+     * 批量入队（一次往返）
+     * @param payloads 消息体列表
+     */
+    @Override
+    public void pushBatch(List<String> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+        Object[] args = new Object[payloads.size() + 1];
+        args[0] = String.valueOf(maxLen);
+        for (int i = 0; i < payloads.size(); i++) {
+            args[i + 1] = payloads.get(i);
+        }
+        redisTemplate.execute(ADD_BATCH_SCRIPT, Collections.singletonList(streamKey), args);
+    }
+
+    /**
+     * 批量出队：每隔claimIdleMillis由一个worker先执行一次XAUTOCLAIM，否则读取新消息
+     */
+    @Override
+    public List<QueueMessage> popBatch(int maxCount, long timeoutMillis) {
+        List<QueueMessage> claimed = claimStaleIfDue(maxCount);
+        if (!claimed.isEmpty()) {
+            return claimed;
+        }
+        return read(maxCount, Duration.ofMillis(timeoutMillis));
+    }
+
+    /**
+     * 以消费者组方式批量读取新消息
+     * @param count 最多读取条数
+     * @param block 无消息时阻塞等待时长，<=0 表示不阻塞
+     * @return 消息列表，无消息返回空列表
+     */
+    @SuppressWarnings("unchecked")
+    public List<QueueMessage> read(int count, Duration block) {
+        ensureGroup();
+        List<MapRecord<String, Object, Object>> records;
+        try {
+            records = redisTemplate.opsForStream().read(
+                    Consumer.from(group, consumer),
+                    readOptions(count, block),
+                    StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+        } catch (RuntimeException e) {
+            // Stream被删除等情况下消费者组随之丢失（NOGROUP），下次读取时重建
+            groupReady = false;
+            throw e;
+        }
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<QueueMessage> entries = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Object payload = record.getValue().get(PAYLOAD_FIELD);
+            entries.add(new QueueMessage(record.getId().getValue(), payload != null ? payload.toString() : null));
+        }
+        return entries;
+    }
+
+    // BLOCK 0 表示永久阻塞，不阻塞时不带 BLOCK 参数
+    static StreamReadOptions readOptions(int count, Duration block) {
+        StreamReadOptions options = StreamReadOptions.empty().count(count);
+        return block.isZero() || block.isNegative() ? options : options.block(block);
+    }
+
+    /**
+     * 从上次的游标继续，接管空闲超过 minIdle 的待确认消息（其他消费者宕机或卡死遗留的）；
+     * 投递次数超过 maxDeliveries 的消息确认删除，不返回
+     * @param minIdle 最小空闲时长
+     * @param count   最多接管条数
+     * @return 被接管的消息列表
+     */
+    public List<QueueMessage> autoClaim(Duration minIdle, int count) {
+        ensureGroup();
+        ClaimResult result = decodeClaim(redisTemplate.execute(AUTO_CLAIM_SCRIPT, Collections.singletonList(streamKey),
+                group, consumer, String.valueOf(minIdle.toMillis()), String.valueOf(count), claimCursor,
+                String.valueOf(maxDeliveries)));
+        claimCursor = result.nextCursor;
+        if (!result.dropped.isEmpty()) {
+            log.error("Stream {} 删除 {} 条投递超过 {} 次的消息: {}", streamKey, result.dropped.size(), maxDeliveries,
+                    result.dropped.stream().map(message -> message.id + "=" + message.text()).toList());
+        }
+        if (!result.claimed.isEmpty()) {
+            log.warn("Stream {} 接管 {} 条超时未确认消息, consumer={}", streamKey, result.claimed.size(), consumer);
+        }
+        return result.claimed;
+    }
+
+    /**
+     * 一轮扫描未结束（游标不为 0-0）时继续扫描，否则间隔 claimIdleMillis 开始新一轮
+     */
+    private List<QueueMessage> claimStaleIfDue(int count) {
+        if (!isClaimDue() || !claiming.compareAndSet(false, true)) {
+            return Collections.emptyList();
+        }
+        try {
+            if (!isClaimDue()) {
+                return Collections.emptyList();
+            }
+            if (CLAIM_CURSOR_START.equals(claimCursor)) {
+                lastClaimAt.set(System.currentTimeMillis());
+            }
+            return autoClaim(Duration.ofMillis(claimIdleMillis), count);
+        } finally {
+            claiming.set(false);
+        }
+    }
+
+    private boolean isClaimDue() {
+        return !CLAIM_CURSOR_START.equals(claimCursor) || System.currentTimeMillis() - lastClaimAt.get() >= claimIdleMillis;
+    }
+
+    /**
+     * 解析 AUTO_CLAIM_SCRIPT 的返回值 {下一游标, 接管的扁平列表, 删除的扁平列表}
+     */
+    static ClaimResult decodeClaim(List<?> raw) {
+        if (raw == null || raw.isEmpty()) {
+            return new ClaimResult(CLAIM_CURSOR_START, Collections.emptyList(), Collections.emptyList());
+        }
+        String next = raw.get(0) != null ? String.valueOf(raw.get(0)) : CLAIM_CURSOR_START;
+        return new ClaimResult(next, decodeFlat(raw, 1), decodeFlat(raw, 2));
+    }
+
+    private static List<QueueMessage> decodeFlat(List<?> raw, int index) {
+        if (raw.size() <= index || !(raw.get(index) instanceof List<?> flat) || flat.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<QueueMessage> entries = new ArrayList<>(flat.size() / 2);
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            entries.add(new QueueMessage(String.valueOf(flat.get(i)), String.valueOf(flat.get(i + 1))));
+        }
+        return entries;
+    }
+
+    /**
+     * 批量确认并删除消息（一次往返）
+     * @param messages 已处理消息
+     */
+    @Override
+    public void ack(List<QueueMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        Object[] args = new Object[messages.size() + 1];
+        args[0] = group;
+        for (int i = 0; i < messages.size(); i++) {
+            args[i + 1] = messages.get(i).id;
+        }
+        redisTemplate.execute(ACK_BATCH_SCRIPT, Collections.singletonList(streamKey), args);
+    }
+
+    /**
+     * 重新入队后确认旧消息，使其立即可被任意消费者读取
+     * @param messages 未处理消息
+     */
+    @Override
+    public void nack(List<QueueMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<String> payloads = new ArrayList<>(messages.size());
+        for (QueueMessage message : messages) {
+            payloads.add(message.text());
+        }
+        pushBatch(payloads);
+        ack(messages);
+    }
+
+    /**
+     * 当前Stream长度（未确认 + 未投递）
+     */
+    @Override
+    public long size() {
+        Long size = redisTemplate.opsForStream().size(streamKey);
+        return size != null ? size : 0L;
+    }
+
+    @Override
+    public String name() {
+        return streamKey;
+    }
+
+    /** 设置待确认消息被接管前的最小空闲时间，单位ms */
+    public void setClaimIdleMillis(long claimIdleMillis) {
+        this.claimIdleMillis = claimIdleMillis;
+    }
+
+    /** 设置最大投递次数，超过后待确认消息不再接管而是确认删除，<=0 不限制 */
+    public void setMaxDeliveries(int maxDeliveries) {
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    /**
+     * 确保消费者组存在，只在首次调用时访问Redis
+     */
+    private void ensureGroup() {
+        if (groupReady) {
+            return;
+        }
+        redisTemplate.execute(CREATE_GROUP_SCRIPT, Collections.singletonList(streamKey), group);
+        groupReady = true;
+    }
+
+    /**
+     * 一次接管扫描的结果
+     */
+    static final class ClaimResult {
+        final String nextCursor;
+        final List<QueueMessage> claimed;
+        final List<QueueMessage> dropped;
+
+        ClaimResult(String nextCursor, List<QueueMessage> claimed, List<QueueMessage> dropped) {
+            this.nextCursor = nextCursor;
+            this.claimed = claimed;
+            this.dropped = dropped;
+        }
+    }
+}
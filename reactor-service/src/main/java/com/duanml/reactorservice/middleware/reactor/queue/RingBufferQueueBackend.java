@@ -0,0 +1,190 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/9 21:02
+ * Description: JVM内无锁有界环形队列（多生产者多消费者）
+ *
+ * 1. 每个槽位带一个序号，生产者/消费者只CAS各自的游标，不加锁；
+ * 2. 容量向上取整为2的幂，下标用位运算计算；
+ * 3. 队列满时 pushBatch 自旋+短暂休眠等待（天然背压），队列空时 popBatch 等待至超时；
+ * 4. 只适合单节点任务：进程退出队列内容即丢失，ack 为空操作，nack 重新入队；
+ * 5. nack 不阻塞：环形缓冲已满时放入溢出队列，出队时优先取出。溢出量不超过已出队未确认的任务数，
+ *    停机时worker放回任务不会因缓冲满（生产者持续写入）而阻塞或丢失。
+ */
+public class RingBufferQueueBackend implements QueueBackend {
+
+    // 队列满/空时的等待间隔
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final String name;
+    private final int mask;
+    private final AtomicReferenceArray<String> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong(0L); // 下一个出队位置
+    private final AtomicLong tail = new AtomicLong(0L); // 下一个入队位置
+    private final AtomicLong wakeups = new AtomicLong(0L); // 唤醒次数，变化时阻塞中的出队立即返回
+    // nack 时环形缓冲已满的任务
+    private final ConcurrentLinkedQueue<String> requeued = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requeuedSize = new AtomicLong(0L);
+
+    /**
+     * 构造方法
+     * @param name     队列名称
+     * @param capacity 容量（向上取整为2的幂）
+     */
+    public RingBufferQueueBackend(String name, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0: " + capacity);
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.name = name;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 非阻塞入队
+     * @return false表示队列已满
+     */
+    public boolean offer(String payload) {
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, payload);
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // 槽位尚未被消费，队列已满
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 非阻塞出队，先取溢出队列中放回的任务
+     * @return null表示队列为空
+     */
+    public String poll() {
+        String payload = requeued.poll();
+        if (payload != null) {
+            requeuedSize.decrementAndGet();
+            return payload;
+        }
+        long pos = head.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    payload = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequences.lazySet(index, pos + mask + 1);
+                    return payload;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null; // 槽位尚未写入，队列为空
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    @Override
+    public void pushBatch(List<String> payloads) {
+        if (payloads == null) {
+            return;
+        }
+        for (String payload : payloads) {
+            while (!offer(payload)) {
+                LockSupport.parkNanos(PARK_NANOS);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("环形队列入队被中断: " + name);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<QueueMessage> popBatch(int maxCount, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long wakeup = wakeups.get();
+        String first;
+        while ((first = poll()) == null) {
+            if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted() || wakeups.get() != wakeup) {
+                return Collections.emptyList();
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        List<QueueMessage> messages = new ArrayList<>(maxCount);
+        messages.add(new QueueMessage(null, first));
+        String payload;
+        while (messages.size() < maxCount && (payload = poll()) != null) {
+            messages.add(new QueueMessage(null, payload));
+        }
+        return messages;
+    }
+
+    @Override
+    public void wakeup() {
+        wakeups.incrementAndGet();
+    }
+
+    @Override
+    public long size() {
+        return Math.max(0L, tail.get() - head.get()) + requeuedSize.get();
+    }
+
+    @Override
+    public void ack(List<QueueMessage> messages) {
+        // 出队即删除，无需确认
+    }
+
+    @Override
+    public void nack(List<QueueMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        for (QueueMessage message : messages) {
+            String payload = message.text();
+            if (!offer(payload)) {
+                requeued.add(payload);
+                requeuedSize.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /** 实际容量（2的幂） */
+    public int capacity() {
+        return mask + 1;
+    }
+}
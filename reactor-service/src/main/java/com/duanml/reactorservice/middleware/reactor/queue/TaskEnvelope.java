@@ -0,0 +1,166 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Title: com.duanml.reactorservice.middleware.reactor.queue</p>
+ * <p>Company:爱尔信息中心</p>
+ * <p>Copyright:Copyright(c)</p>
+ * User: duanml
+ * Date: 2025/7/16 09:20
+ * Description: 任务信封：在任务JSON前附加一行头部，记录入队时间、生产作业、投递次数和截止时间
+ *
+ * 格式：E1|{入队毫秒}|{投递次数}|{截止毫秒，0为不限}|{作业ID}\n{任务JSON}
+ * 1. 由生产端按需写入（AbstractReactorProducerBatch.setEnvelopeEnabled），任务JSON原样保留，不重新序列化；
+ * 2. 消费端自动识别：以 E1| 开头的是信封，其余按原始任务处理，新旧格式可在同一队列混用；
+ * 3. 投递次数从1开始，消费端把未处理的任务放回队列时加1（requeued）；
+ * 4. 入队时间取生产节点的时钟，排队时长受节点间时钟偏差影响。
+ */
+public final class TaskEnvelope {
+
+    private static final String MAGIC = "E1|";
+    private static final byte[] MAGIC_BYTES = MAGIC.getBytes(StandardCharsets.US_ASCII);
+
+    public final long enqueuedAt; // 入队时间（毫秒）
+    public final int attempt;     // 投递次数，从1开始
+    public final long deadline;   // 截止时间（毫秒），0为不限
+    public final String jobId;    // 生产作业ID，可为null
+    public final String payload;  // 任务（字符串形式），与body二选一
+    public final byte[] body;     // 任务（UTF-8字节形式）
+
+    private TaskEnvelope(long enqueuedAt, int attempt, long deadline, String jobId, String payload, byte[] body) {
+        this.enqueuedAt = enqueuedAt;
+        this.attempt = attempt;
+        this.deadline = deadline;
+        this.jobId = jobId;
+        this.payload = payload;
+        this.body = body;
+    }
+
+    // ===================== 写入 ========================
+
+    public static String wrap(String payload, long enqueuedAt, int attempt, long deadline, String jobId) {
+        return header(enqueuedAt, attempt, deadline, jobId) + payload;
+    }
+
+    public static byte[] wrap(byte[] body, long enqueuedAt, int attempt, long deadline, String jobId) {
+        byte[] header = header(enqueuedAt, attempt, deadline, jobId).getBytes(StandardCharsets.UTF_8);
+        byte[] wrapped = Arrays.copyOf(header, header.length + body.length);
+        System.arraycopy(body, 0, wrapped, header.length, body.length);
+        return wrapped;
+    }
+
+    private static String header(long enqueuedAt, int attempt, long deadline, String jobId) {
+        return MAGIC + enqueuedAt + '|' + attempt + '|' + deadline + '|' + (jobId != null ? jobId : "") + '\n';
+    }
+
+    // ===================== 读取 ========================
+
+    /**
+     * 解析出队消息
+     * @return 信封，消息不是信封格式时返回null
+     * @throws IllegalArgumentException 信封头部格式错误
+     */
+    public static TaskEnvelope of(QueueMessage message) {
+        return message.body != null ? parse(message.body) : parse(message.payload);
+    }
+
+    public static TaskEnvelope parse(String text) {
+        if (text == null || !text.startsWith(MAGIC)) {
+            return null;
+        }
+        int end = text.indexOf('\n');
+        if (end < 0) {
+            throw new IllegalArgumentException("任务信封缺少头部结束符");
+        }
+        return parseHeader(text.substring(0, end), text.substring(end + 1), null);
+    }
+
+    public static TaskEnvelope parse(byte[] body) {
+        if (body == null || body.length < MAGIC_BYTES.length
+                || !Arrays.equals(body, 0, MAGIC_BYTES.length, MAGIC_BYTES, 0, MAGIC_BYTES.length)) {
+            return null;
+        }
+        int end = -1;
+        for (int i = MAGIC_BYTES.length; i < body.length; i++) {
+            if (body[i] == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IllegalArgumentException("任务信封缺少头部结束符");
+        }
+        String header = new String(body, 0, end, StandardCharsets.UTF_8);
+        return parseHeader(header, null, Arrays.copyOfRange(body, end + 1, body.length));
+    }
+
+    private static TaskEnvelope parseHeader(String header, String payload, byte[] body) {
+        String[] fields = header.split("\\|", 5);
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("任务信封头部格式错误: " + header);
+        }
+        try {
+            return new TaskEnvelope(Long.parseLong(fields[1]), Integer.parseInt(fields[2]), Long.parseLong(fields[3]),
+                    fields[4].isEmpty() ? null : fields[4], payload, body);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("任务信封头部格式错误: " + header, e);
+        }
+    }
+
+    /** 截止时间已过 */
+    public boolean isExpired(long nowMillis) {
+        return deadline > 0 && nowMillis >= deadline;
+    }
+
+    /** 在队列中等待的时长（毫秒），时钟偏差导致为负时取0 */
+    public long queueWaitMillis(long nowMillis) {
+        return Math.max(0L, nowMillis - enqueuedAt);
+    }
+
+    // ===================== 重新投递 ========================
+
+    /**
+     * 放回队列前投递次数加1；非信封消息原样返回
+     */
+    public static QueueMessage requeued(QueueMessage message) {
+        TaskEnvelope envelope = of(message);
+        if (envelope == null) {
+            return message;
+        }
+        int next = envelope.attempt + 1;
+        if (envelope.body != null) {
+            return QueueMessage.ofBytes(message.id,
+                    wrap(envelope.body, envelope.enqueuedAt, next, envelope.deadline, envelope.jobId));
+        }
+        return new QueueMessage(message.id, wrap(envelope.payload, envelope.enqueuedAt, next, envelope.deadline, envelope.jobId));
+    }
+
+    public static List<QueueMessage> requeued(List<QueueMessage> messages) {
+        List<QueueMessage> result = new ArrayList<>(messages.size());
+        for (QueueMessage message : messages) {
+            try {
+                result.add(requeued(message));
+            } catch (IllegalArgumentException e) {
+                result.add(message); // 头部损坏的原样放回，由消费端丢弃
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 字节形式：放回队列前投递次数加1；非信封原样返回
+     */
+    public static byte[] requeued(byte[] body) {
+        try {
+            TaskEnvelope envelope = parse(body);
+            return envelope == null ? body
+                    : wrap(envelope.body, envelope.enqueuedAt, envelope.attempt + 1, envelope.deadline, envelope.jobId);
+        } catch (IllegalArgumentException e) {
+            return body;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.duanml.reactorservice.utils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.MapType;
 import org.springframework.stereotype.Component;
@@ -10,6 +12,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Title: com.duanml.reactorstudy.utils</p>
@@ -24,16 +27,32 @@ public class JacksonUtil {
 
     private static ObjectMapper OBJECT_MAPPER;
 
+    // 按类型缓存的 reader/writer，省去每次调用时的根类型查找和配置拷贝
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
     // 通过构造器注入 JacksonConfig 中注册的 ObjectMapper
     public JacksonUtil(ObjectMapper injectedMapper) {
         JacksonUtil.OBJECT_MAPPER = injectedMapper;
+        READERS.clear();
+        WRITERS.clear();
     }
 
     // 对象转 JSON 字符串
     public static String toJson(Object obj) {
         if (obj == null) return null;
         try {
-            return OBJECT_MAPPER.writeValueAsString(obj);
+            return writerFor(obj.getClass()).writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("序列化对象失败：" + obj, e);
+        }
+    }
+
+    // 对象直接转 UTF-8 JSON 字节，不经过 String
+    public static byte[] toJsonBytes(Object obj) {
+        if (obj == null) return null;
+        try {
+            return writerFor(obj.getClass()).writeValueAsBytes(obj);
         } catch (JsonProcessingException e) {
             throw new RuntimeException("序列化对象失败：" + obj, e);
         }
@@ -43,12 +62,36 @@ public class JacksonUtil {
     public static <T> T fromJson(String json, Class<T> clazz) {
         if (json == null || json.isEmpty()) return null;
         try {
-            return OBJECT_MAPPER.readValue(json, clazz);
+            return readerFor(clazz).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("反序列化失败，目标类型：" + clazz.getName(), e);
+        }
+    }
+
+    // UTF-8 JSON 字节直接转对象，不经过 String
+    public static <T> T fromJson(byte[] json, Class<T> clazz) {
+        if (json == null || json.length == 0) return null;
+        try {
+            return readerFor(clazz).readValue(json);
         } catch (IOException e) {
             throw new RuntimeException("反序列化失败，目标类型：" + clazz.getName(), e);
         }
     }
 
+    /**
+     * 指定类型的 ObjectReader（缓存，线程安全）
+     */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, c -> OBJECT_MAPPER.readerFor(c));
+    }
+
+    /**
+     * 指定类型的 ObjectWriter（缓存，线程安全）
+     */
+    public static ObjectWriter writerFor(Class<?> clazz) {
+        return WRITERS.computeIfAbsent(clazz, c -> OBJECT_MAPPER.writerFor(c));
+    }
+
     /**
      * JSON字符串转对象，支持复杂泛型
      */
@@ -0,0 +1,67 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 异步模式：超时的尝试被取消后在重试调度器上重试
+ */
+class AsyncRetryTests {
+
+    @Test
+    void timedOutAttemptIsCancelledAndRetried() throws Exception {
+        List<CompletableFuture<Void>> attempts = new CopyOnWriteArrayList<>();
+        List<String> retryThreads = new CopyOnWriteArrayList<>();
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 16);
+        AbstractReactorConsumeBatch<String> consumer = new AbstractReactorConsumeBatch<>(null, "q", queue) {
+            @Override
+            protected CompletableFuture<Void> handleTaskAsync(String task) {
+                if (attempts.isEmpty()) {
+                    CompletableFuture<Void> hanging = new CompletableFuture<>();
+                    attempts.add(hanging);
+                    return hanging;
+                }
+                retryThreads.add(Thread.currentThread().getName());
+                CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+                attempts.add(done);
+                return done;
+            }
+
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+        consumer.setAsyncWindow(4);
+        consumer.setTaskTimeoutMillis(100L);
+        consumer.setMaxRetry(1);
+        consumer.setPopTimeoutMillis(50L);
+        try {
+            consumer.start(1);
+            queue.pushBatch(List.of("t"));
+            awaitTrue(() -> consumer.getCompleted() == 1);
+
+            assertEquals(2, attempts.size());
+            assertTrue(attempts.get(0).isCancelled());
+            assertEquals(1, consumer.getRetried());
+            assertTrue(retryThreads.get(0).startsWith("consume-retry-q"), retryThreads.get(0));
+        } finally {
+            consumer.shutdown();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
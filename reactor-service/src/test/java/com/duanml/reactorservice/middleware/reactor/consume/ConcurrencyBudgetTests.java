@@ -0,0 +1,37 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 集群并发预算分配：合计等于预算、按每worker吞吐加权、保底与新节点
+ */
+class ConcurrencyBudgetTests {
+
+    @Test
+    void allocatesWholeBudgetByWeight() {
+        Map<String, Integer> shares = ConcurrencyBudget.allocate(40, Map.of("a", 30.0, "b", 10.0, "c", 0.0));
+
+        assertEquals(40, shares.values().stream().mapToInt(Integer::intValue).sum());
+        // 新节点 c 按平均权重 20：a:b:c = 30:10:20
+        assertEquals(20, shares.get("a"));
+        assertEquals(7, shares.get("b"));
+        assertEquals(13, shares.get("c"));
+    }
+
+    @Test
+    void keepsOneWorkerPerNodeAndFloorsSlowNodes() {
+        Map<String, Integer> shares = ConcurrencyBudget.allocate(10, Map.of("a", 1000.0, "b", 0.001));
+        assertEquals(10, shares.get("a") + shares.get("b"));
+        assertTrue(shares.get("b") >= 1);
+
+        Map<String, Integer> tight = ConcurrencyBudget.allocate(2, Map.of("a", 1.0, "b", 1.0, "c", 1.0));
+        assertEquals(2, tight.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0, tight.get("c")); // 余数相同按节点ID顺序
+
+        assertTrue(ConcurrencyBudget.allocate(0, Map.of("a", 1.0)).isEmpty());
+    }
+}
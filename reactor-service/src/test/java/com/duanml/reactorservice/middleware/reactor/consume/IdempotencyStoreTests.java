@@ -0,0 +1,67 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 幂等存储（本地层）：标记后批量查询命中，null键视为未完成；位图模式拒绝超出偏移量范围的ID
+ */
+class IdempotencyStoreTests {
+
+    @Test
+    void markedIdsAreReportedDone() {
+        IdempotencyStore store = new IdempotencyStore(100);
+        store.markDone("1");
+        store.markDone("3");
+
+        boolean[] done = store.isDone(Arrays.asList("1", "2", null, "3"));
+
+        assertArrayEquals(new boolean[]{true, false, false, true}, done);
+        assertEquals(2, store.getLocalHits());
+        assertEquals(1, store.getMisses());
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        IdempotencyStore store = new IdempotencyStore(100);
+        store.markDone("1");
+        store.flush(); // 无Redis层时为空操作
+        store.clear();
+
+        assertArrayEquals(new boolean[]{false}, store.isDone(List.of("1")));
+    }
+
+    @Test
+    void redisModeRequiresTemplate() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyStore("q", 100, null,
+                null, IdempotencyStore.RedisMode.SET, null));
+    }
+
+    @Test
+    void bitOffsetAcceptsOnlyUnsigned32BitIntegers() {
+        assertEquals(0L, IdempotencyStore.bitOffset("0"));
+        assertEquals(IdempotencyStore.MAX_BIT_OFFSET, IdempotencyStore.bitOffset("4294967295"));
+        assertEquals(-1L, IdempotencyStore.bitOffset("4294967296"));
+        assertEquals(-1L, IdempotencyStore.bitOffset("1945113527302832130")); // 雪花ID
+        assertEquals(-1L, IdempotencyStore.bitOffset("-1"));
+        assertEquals(-1L, IdempotencyStore.bitOffset("abc"));
+    }
+
+    @Test
+    void bitmapModeKeepsOutOfRangeIdsLocalOnly() {
+        // 未连接的模板：被拒绝的ID不会访问Redis
+        IdempotencyStore store = new IdempotencyStore("q", 100, null,
+                new StringRedisTemplate(), IdempotencyStore.RedisMode.BITMAP, null);
+        store.markDone("1945113527302832130");
+        store.flush();
+
+        assertArrayEquals(new boolean[]{true, false}, store.isDone(List.of("1945113527302832130", "1945113527302832131")));
+        assertEquals(2, store.getRejected());
+        assertEquals(1, store.getMisses());
+    }
+}
@@ -0,0 +1,116 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写后结果汇聚：按数量/时长成批写出、写出后完成、失败传递、未写出上限背压、关闭时不遗漏
+ */
+class ResultSinkTests {
+
+    @Test
+    void flushesBySizeAndAge() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        ResultSink<Integer> sink = new ResultSink<>("test", batch -> {
+            synchronized (batchSizes) {
+                batchSizes.add(batch.size());
+            }
+        }, 10, 30L, 100);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                futures.add(sink.emit(i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            assertEquals(25, batchSizes.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+            assertEquals(0, sink.getPending());
+            assertEquals(25L, sink.stats().get("written"));
+        } finally {
+            sink.close(1000L);
+        }
+    }
+
+    @Test
+    void failedWriteCompletesExceptionally() {
+        ResultSink<String> sink = new ResultSink<>("test", batch -> {
+            throw new IllegalStateException("db down");
+        }, 10, 10L, 10);
+        sink.setMaxRetry(1);
+        try {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> sink.emit("a").get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals(1L, sink.stats().get("failed"));
+        } finally {
+            sink.close(1000L);
+        }
+        assertTrue(sink.emit("b").isCompletedExceptionally());
+    }
+
+    @Test
+    void emitBlocksWhenPendingLimitReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResultSink<Integer> sink = new ResultSink<>("test", batch -> release.await(), 2, 5L, 2);
+        try {
+            sink.emit(1);
+            sink.emit(2);
+            CompletableFuture<CompletableFuture<Void>> third = CompletableFuture.supplyAsync(() -> sink.emit(3));
+            Thread.sleep(200);
+            assertFalse(third.isDone());
+
+            release.countDown();
+            third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        } finally {
+            sink.close(1000L);
+        }
+    }
+
+    @Test
+    void emitRacingWithCloseAlwaysCompletesAndReleasesPermits() throws Exception {
+        ResultSink<Integer> sink = new ResultSink<>("test", batch -> {
+        }, 1000, 10_000L, 1000);
+        int threads = 4;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        CountDownLatch started = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> emitters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                emitters.add(pool.submit(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 200; i++) {
+                        CompletableFuture<Void> future = sink.emit(i);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                }));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            sink.close(1000L);
+            for (Future<?> emitter : emitters) {
+                emitter.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // 关闭前后的每条结果都已完成（写出或失败），未写出计数归零
+        for (CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(800, futures.size());
+        assertEquals(0, sink.getPending());
+    }
+}
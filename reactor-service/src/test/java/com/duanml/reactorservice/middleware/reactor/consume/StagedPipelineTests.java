@@ -0,0 +1,109 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多阶段流水线：逐阶段变换、批量阶段、失败传递、取消后跳过剩余阶段
+ */
+class StagedPipelineTests {
+
+    @Test
+    void stagesTransformInOrderAndBatch() throws Exception {
+        Set<Integer> written = ConcurrentHashMap.newKeySet();
+        List<Integer> batchSizes = new ArrayList<>();
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test")
+                .bufferSize(4)
+                .map("square", 2, Schedulers.parallel(), x -> x * x)
+                .map("format", 4, StagedPipeline.ioScheduler("test-io", 4), x -> "v" + x)
+                .batch("write", 10, Duration.ofMillis(20), 2, StagedPipeline.ioScheduler("test-write", 2), values -> {
+                    synchronized (batchSizes) {
+                        batchSizes.add(values.size());
+                    }
+                    values.forEach(v -> written.add(Integer.parseInt(v.substring(1))));
+                })
+                .build();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(pipeline.submit(i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+            assertEquals(200, written.size());
+            assertTrue(written.contains(199 * 199));
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+            Map<String, Object> write = pipeline.stats().get(2);
+            assertEquals(200L, write.get("processed"));
+            assertEquals(0, write.get("queued"));
+        } finally {
+            pipeline.dispose();
+        }
+    }
+
+    @Test
+    void failedStageCompletesExceptionallyAndSkipsLaterStages() throws Exception {
+        Set<Integer> reached = ConcurrentHashMap.newKeySet();
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test")
+                .map("check", 2, Schedulers.parallel(), x -> {
+                    if (x % 2 == 1) {
+                        throw new IllegalArgumentException("odd " + x);
+                    }
+                    return x;
+                })
+                .map("sink", 2, Schedulers.boundedElastic(), x -> reached.add(x))
+                .build();
+        try {
+            CompletableFuture<Void> ok = pipeline.submit(2);
+            CompletableFuture<Void> bad = pipeline.submit(3);
+
+            ok.get(5, TimeUnit.SECONDS);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertEquals(Set.of(2), reached);
+            assertEquals(1L, pipeline.stats().get(0).get("failed"));
+        } finally {
+            pipeline.dispose();
+        }
+        assertTrue(pipeline.submit(4).isCompletedExceptionally());
+    }
+
+    @Test
+    void cancelledTaskSkipsRemainingStages() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Set<Integer> reached = ConcurrentHashMap.newKeySet();
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder("test")
+                .map("slow", 1, StagedPipeline.ioScheduler("test-slow", 1), x -> {
+                    entered.countDown();
+                    release.await();
+                    return x;
+                })
+                .map("next", 1, Schedulers.boundedElastic(), x -> reached.add(x))
+                .build();
+        try {
+            CompletableFuture<Void> cancelled = pipeline.submit(1);
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            cancelled.cancel(true);
+            release.countDown();
+
+            pipeline.submit(2).get(5, TimeUnit.SECONDS);
+            assertEquals(Set.of(2), reached);
+        } finally {
+            pipeline.dispose();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 启动前校验任务处理钩子：未提供任何处理实现时 start 直接失败
+ */
+class TaskHandlerCheckTests {
+
+    @Test
+    void startFailsWithoutAnyHandler() {
+        AbstractReactorConsumeBatch<String> consumer = new AbstractReactorConsumeBatch<>(null, "q", new RingBufferQueueBackend("q", 8)) {
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> consumer.start(1));
+        consumer.setAsyncWindow(4);
+        assertThrows(IllegalStateException.class, () -> consumer.start(1));
+        assertFalse(consumer.isRunning());
+    }
+
+    @Test
+    void asyncHandlerRequiresAsyncWindow() {
+        AbstractReactorConsumeBatch<String> consumer = new AbstractReactorConsumeBatch<>(null, "q", new RingBufferQueueBackend("q", 8)) {
+            @Override
+            protected CompletableFuture<Void> handleTaskAsync(String task) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> consumer.start(1));
+        consumer.setAsyncWindow(4);
+        try {
+            consumer.start(1);
+            assertTrue(consumer.isRunning());
+        } finally {
+            consumer.stop();
+        }
+    }
+}
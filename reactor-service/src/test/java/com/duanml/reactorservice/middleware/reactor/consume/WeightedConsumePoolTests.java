@@ -0,0 +1,286 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.queue.PackedIds;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueBackend;
+import com.duanml.reactorservice.middleware.reactor.queue.QueueMessage;
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 共享线程池：DRR按权重分配、车道并发上限、运行中调整worker数、停机超时
+ */
+class WeightedConsumePoolTests {
+
+    @Test
+    void servesLanesInProportionToWeight() throws Exception {
+        AtomicInteger heavy = new AtomicInteger();
+        AtomicInteger light = new AtomicInteger();
+        AtomicInteger total = new AtomicInteger();
+        AtomicLong snapshot = new AtomicLong(-1L);
+        // 单worker顺序处理，处理到第400个时记录两个车道各自的完成数
+        Consumer<AtomicInteger> record = counter -> {
+            counter.incrementAndGet();
+            if (total.incrementAndGet() == 400) {
+                snapshot.set(((long) heavy.get() << 32) | light.get());
+            }
+        };
+        WeightedConsumePool pool = new WeightedConsumePool(10, 10L);
+        pool.register("heavy", lane("heavy", 1000, task -> record.accept(heavy)), 3, 1);
+        pool.register("light", lane("light", 1000, task -> record.accept(light)), 1, 1);
+        try {
+            pool.start(1);
+            awaitTrue(() -> snapshot.get() >= 0);
+        } finally {
+            pool.stop();
+        }
+        long heavyServed = snapshot.get() >>> 32;
+        long lightServed = snapshot.get() & 0xFFFFFFFFL;
+        assertEquals(400, heavyServed + lightServed);
+        double ratio = (double) heavyServed / lightServed;
+        assertTrue(ratio > 2.5 && ratio < 3.5, "权重3:1，实际 " + heavyServed + ":" + lightServed);
+    }
+
+    @Test
+    void packedLaneIsChargedForUnpackedTasks() throws Exception {
+        AtomicInteger packed = new AtomicInteger();
+        AtomicInteger plain = new AtomicInteger();
+        AtomicInteger total = new AtomicInteger();
+        AtomicLong snapshot = new AtomicLong(-1L);
+        Consumer<AtomicInteger> record = counter -> {
+            counter.incrementAndGet();
+            if (total.incrementAndGet() == 600) {
+                snapshot.set(((long) packed.get() << 32) | plain.get());
+            }
+        };
+        // 每个队列元素打包10个ID，同权重下两个车道处理的任务数应接近
+        BytesQueue packedQueue = new BytesQueue("packed");
+        long[] ids = new long[5000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 1;
+        }
+        packedQueue.pushBatchBytes(PackedIds.packAll(ids, ids.length, 10));
+        AbstractReactorConsumeBatch<String> packedLane = new AbstractReactorConsumeBatch<>(null, "packed", packedQueue) {
+            @Override
+            protected void handleTask(String task) {
+                record.accept(packed);
+            }
+
+            @Override
+            protected Map<Long, String> resolveTasks(long[] batchIds) {
+                Map<Long, String> tasks = new HashMap<>();
+                for (long id : batchIds) {
+                    tasks.put(id, "p" + id);
+                }
+                return tasks;
+            }
+
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+        WeightedConsumePool pool = new WeightedConsumePool(10, 10L);
+        pool.register("packed", packedLane, 1, 1);
+        pool.register("plain", lane("plain", 1000, task -> record.accept(plain)), 1, 1);
+        try {
+            pool.start(1);
+            awaitTrue(() -> snapshot.get() >= 0);
+        } finally {
+            pool.stop();
+        }
+        long packedServed = snapshot.get() >>> 32;
+        long plainServed = snapshot.get() & 0xFFFFFFFFL;
+        double ratio = (double) packedServed / plainServed;
+        assertTrue(ratio > 0.6 && ratio < 1.6, "权重1:1，实际 " + packedServed + ":" + plainServed);
+    }
+
+    @Test
+    void capsConcurrencyPerLane() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger handled = new AtomicInteger();
+        WeightedConsumePool pool = new WeightedConsumePool(1, 10L);
+        pool.register("capped", lane("capped", 60, task -> {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            handled.incrementAndGet();
+        }), 1, 2);
+        try {
+            pool.start(6);
+            awaitTrue(() -> handled.get() == 60);
+        } finally {
+            pool.stop();
+        }
+        assertTrue(maxConcurrent.get() <= 2, "并发上限2，实际 " + maxConcurrent.get());
+        Map<String, Object> status = pool.status().get(0);
+        assertEquals(60L, status.get("served"));
+    }
+
+    @Test
+    void shrinkThenGrowKeepsConfiguredWorkers() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 1024);
+        WeightedConsumePool pool = new WeightedConsumePool(10, 50L);
+        pool.register("q", lane(queue, task -> handled.incrementAndGet()), 1, 8);
+        try {
+            pool.start(8);
+            awaitTrue(() -> pool.getActiveWorkers() == 8);
+
+            // worker空闲休眠中尚未退出时再次增加，不会重复创建同编号worker
+            pool.adjustWorkerCount(5);
+            pool.adjustWorkerCount(7);
+            Thread.sleep(200);
+            assertEquals(7, pool.getActiveWorkers());
+
+            pool.adjustWorkerCount(5);
+            awaitTrue(() -> pool.getActiveWorkers() == 5);
+            pool.adjustWorkerCount(7);
+            awaitTrue(() -> pool.getActiveWorkers() == 7);
+            Thread.sleep(200);
+            assertEquals(7, pool.getActiveWorkers());
+
+            List<String> tasks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                tasks.add("t" + i);
+            }
+            queue.pushBatch(tasks);
+            awaitTrue(() -> handled.get() == 200);
+        } finally {
+            pool.stop();
+        }
+        assertEquals(0, pool.getActiveWorkers());
+    }
+
+    @Test
+    void stopInterruptsHungHandlerAfterTimeout() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        AbstractReactorConsumeBatch<String> batch = lane("hung", 1, task -> {
+            entered.countDown();
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        batch.setStopTimeoutMillis(200L);
+        WeightedConsumePool pool = new WeightedConsumePool(10, 10L);
+        pool.register("hung", batch, 1, 1);
+        pool.start(1);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        pool.stop();
+        assertTrue(System.currentTimeMillis() - start < 3_000L, "停机应在超时后中断worker");
+        assertEquals(0, pool.getActiveWorkers());
+    }
+
+    private static AbstractReactorConsumeBatch<String> lane(String name, int tasks, Consumer<String> handler) {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend(name, tasks);
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            payloads.add(name + i);
+        }
+        queue.pushBatch(payloads);
+        return lane(queue, handler);
+    }
+
+    private static AbstractReactorConsumeBatch<String> lane(RingBufferQueueBackend queue, Consumer<String> handler) {
+        return new AbstractReactorConsumeBatch<>(null, queue.name(), queue) {
+            @Override
+            protected void handleTask(String task) {
+                handler.accept(task);
+            }
+
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+    }
+
+    /**
+     * 字节队列：出队即删除，承载打包ID元素
+     */
+    private static class BytesQueue implements QueueBackend {
+        private final String name;
+        private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+        BytesQueue(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void pushBatch(List<String> payloads) {
+            payloads.forEach(payload -> queue.add(payload.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void pushBatchBytes(List<byte[]> payloads) {
+            queue.addAll(payloads);
+        }
+
+        @Override
+        public boolean nativeBytes() {
+            return true;
+        }
+
+        @Override
+        public List<QueueMessage> popBatch(int maxCount, long timeoutMillis) {
+            List<QueueMessage> messages = new ArrayList<>();
+            byte[] body;
+            while (messages.size() < maxCount && (body = queue.poll()) != null) {
+                messages.add(QueueMessage.ofBytes(null, body));
+            }
+            return messages;
+        }
+
+        @Override
+        public long size() {
+            return queue.size();
+        }
+
+        @Override
+        public void ack(List<QueueMessage> messages) {
+        }
+
+        @Override
+        public void nack(List<QueueMessage> messages) {
+            messages.forEach(message -> queue.add(message.body));
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.duanml.reactorservice.middleware.reactor.consume;
+
+import com.duanml.reactorservice.middleware.reactor.queue.RingBufferQueueBackend;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 运行中调整worker数：减少时只退出超出编号的worker，之后增加能补齐
+ */
+class WorkerCountAdjustTests {
+
+    @Test
+    void shrinkThenGrowRunningExecutor() throws Exception {
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 1024);
+        AbstractReactorConsumeBatch<String> consumer = new AbstractReactorConsumeBatch<>(null, "q", queue) {
+            @Override
+            protected void handleTask(String task) {
+                handled.add(task);
+            }
+
+            @Override
+            protected String deserializeTask(String taskStr) {
+                return taskStr;
+            }
+        };
+        consumer.setPopTimeoutMillis(50L);
+        try {
+            consumer.start(8);
+            awaitTrue(() -> consumer.getActiveWorkers() == 8);
+
+            consumer.adjustWorkerCount(5);
+            awaitTrue(() -> consumer.getActiveWorkers() == 5);
+            Thread.sleep(200);
+            assertEquals(5, consumer.getActiveWorkers());
+
+            consumer.adjustWorkerCount(7);
+            awaitTrue(() -> consumer.getActiveWorkers() == 7);
+            Thread.sleep(200);
+            assertEquals(7, consumer.getActiveWorkers());
+
+            List<String> tasks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                tasks.add("t" + i);
+            }
+            queue.pushBatch(tasks);
+            awaitTrue(() -> handled.size() == 200);
+        } finally {
+            consumer.stop();
+        }
+        assertEquals(0, consumer.getActiveWorkers());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
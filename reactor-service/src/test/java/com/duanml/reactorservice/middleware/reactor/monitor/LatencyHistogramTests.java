@@ -0,0 +1,44 @@
+package com.duanml.reactorservice.middleware.reactor.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 延迟直方图：分位数误差在分桶精度内，快照后清零
+ */
+class LatencyHistogramTests {
+
+    @Test
+    void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(1000, snapshot.count());
+        assertEquals(500.0, snapshot.percentileMillis(0.5), 500.0 * 0.07);
+        assertEquals(990.0, snapshot.percentileMillis(0.99), 990.0 * 0.07);
+        assertEquals(1000.0, snapshot.maxMillis(), 1000.0 * 0.07);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(7));
+        assertEquals(0.007, histogram.snapshotAndReset().percentileMillis(0.5), 1e-9);
+    }
+
+    @Test
+    void snapshotResetsCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.SECONDS.toNanos(3));
+        assertEquals(1, histogram.snapshotAndReset().count());
+        LatencyHistogram.Snapshot empty = histogram.snapshotAndReset();
+        assertEquals(0, empty.count());
+        assertEquals(0.0, empty.percentileMillis(0.99));
+        assertEquals(0.0, empty.maxMillis());
+    }
+}
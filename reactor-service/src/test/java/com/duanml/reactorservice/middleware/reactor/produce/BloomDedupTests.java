@@ -0,0 +1,32 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 布隆过滤器误判率估算：满载时接近目标误判率，扩展后不超过上界
+ */
+class BloomDedupTests {
+
+    @Test
+    void singleFilterEstimateTracksFill() {
+        double target = 0.001;
+        double full = BloomDedup.estimateFpRate(target, 1_000_000L, 1_000_000L, 1);
+        double half = BloomDedup.estimateFpRate(target, 1_000_000L, 500_000L, 1);
+
+        assertEquals(target, full, target * 0.2);
+        assertTrue(half < full / 10);
+        assertEquals(0.0, BloomDedup.estimateFpRate(target, 1_000_000L, 0L, 1));
+    }
+
+    @Test
+    void expandedFiltersStayUnderUpperBound() {
+        double target = 0.001;
+        assertEquals(target * 1.5, BloomDedup.estimateFpRate(target, 3_000_000L, 2_500_000L, 2), 1e-12);
+        assertTrue(BloomDedup.estimateFpRate(target, 1L << 30, 1L << 29, 10) < target * 2);
+
+        BloomDedup.Stats stats = new BloomDedup.Stats("k", 1000L, 2048L, 1, 250L, target);
+        assertEquals(0.25, stats.fill, 1e-12);
+    }
+}
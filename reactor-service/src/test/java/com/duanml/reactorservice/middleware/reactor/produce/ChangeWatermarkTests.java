@@ -0,0 +1,28 @@
+package com.duanml.reactorservice.middleware.reactor.produce;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量水位：存储格式与 (变更时间, 主键) 字典序
+ */
+class ChangeWatermarkTests {
+
+    @Test
+    void encodeAndParseRoundTrip() {
+        ChangeWatermark watermark = new ChangeWatermark(1752660000000L, 42L);
+
+        assertEquals("1752660000000:42", watermark.encode());
+        assertEquals(watermark, ChangeWatermark.parse(watermark.encode()));
+        assertEquals(ChangeWatermark.ZERO, ChangeWatermark.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> ChangeWatermark.parse("42"));
+    }
+
+    @Test
+    void ordersByChangedAtThenId() {
+        assertTrue(new ChangeWatermark(1L, 100L).compareTo(new ChangeWatermark(2L, 1L)) < 0);
+        assertTrue(new ChangeWatermark(2L, 5L).compareTo(new ChangeWatermark(2L, 4L)) > 0);
+        assertTrue(ChangeWatermark.ofId(7L).compareTo(ChangeWatermark.ZERO) > 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 磁盘队列：段切换、重启恢复、已读段清理、拒绝空消息
+ */
+class MappedFileQueueBackendTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rollsSegmentsAndKeepsOrder() {
+        MappedFileQueueBackend queue = new MappedFileQueueBackend("q", dir, 256);
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            payloads.add("task-" + i);
+        }
+        queue.pushBatch(payloads);
+        assertEquals(100, queue.size());
+
+        List<String> read = new ArrayList<>();
+        List<QueueMessage> batch;
+        while (!(batch = queue.popBatch(7, 10)).isEmpty()) {
+            batch.forEach(m -> read.add(m.text()));
+        }
+        assertEquals(payloads, read);
+        assertEquals(0, queue.size());
+        queue.close();
+    }
+
+    @Test
+    void survivesRestartFromPersistedOffset() throws Exception {
+        MappedFileQueueBackend queue = new MappedFileQueueBackend("q", dir, 256);
+        queue.pushBatch(List.of("a", "b", "c", "d", "e"));
+        assertEquals(List.of("a", "b"), queue.popBatch(2, 10).stream().map(QueueMessage::text).toList());
+        queue.close();
+
+        MappedFileQueueBackend reopened = new MappedFileQueueBackend("q", dir, 256);
+        assertEquals(3, reopened.size());
+        reopened.pushBatch(List.of("f"));
+        assertEquals(List.of("c", "d", "e", "f"), reopened.popBatch(10, 10).stream().map(QueueMessage::text).toList());
+        reopened.close();
+    }
+
+    @Test
+    void deletesFullyReadSegments() throws Exception {
+        MappedFileQueueBackend queue = new MappedFileQueueBackend("q", dir, 64);
+        for (int i = 0; i < 20; i++) {
+            queue.pushBatch(List.of("payload-" + i));
+        }
+        while (!queue.popBatch(100, 10).isEmpty()) {
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.filter(p -> p.toString().endsWith(".seg")).count() <= 1);
+        }
+        queue.close();
+    }
+
+    @Test
+    void rejectsEmptyPayloadWithoutWritingTheBatch() throws Exception {
+        MappedFileQueueBackend queue = new MappedFileQueueBackend("q", dir, 256);
+        queue.pushBatch(List.of("a"));
+        assertThrows(IllegalArgumentException.class, () -> queue.pushBatch(List.of("b", "", "c")));
+        assertEquals(1, queue.size());
+        queue.pushBatch(List.of("d"));
+        queue.close();
+
+        // 恢复扫描不会被空记录截断
+        MappedFileQueueBackend reopened = new MappedFileQueueBackend("q", dir, 256);
+        assertEquals(List.of("a", "d"), reopened.popBatch(10, 10).stream().map(QueueMessage::text).toList());
+        reopened.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 打包ID元素：小端序编码、按元素拆分、与JSON/信封区分
+ */
+class PackedIdsTests {
+
+    @Test
+    void packAndUnpackRoundTrip() {
+        long[] ids = {1L, 255L, 1L << 40, Long.MAX_VALUE};
+        byte[] body = PackedIds.pack(ids, 0, ids.length);
+
+        assertEquals(1 + ids.length * Long.BYTES, body.length);
+        assertEquals(PackedIds.MARKER, body[0]);
+        assertEquals((byte) 0xFF, body[1 + Long.BYTES]); // 255 小端序低位在前
+        assertArrayEquals(ids, PackedIds.unpack(body));
+    }
+
+    @Test
+    void packAllSplitsByElementSize() {
+        long[] ids = {1, 2, 3, 4, 5, 0, 0};
+        List<byte[]> elements = PackedIds.packAll(ids, 5, 2);
+
+        assertEquals(3, elements.size());
+        assertArrayEquals(new long[]{5}, PackedIds.unpack(elements.get(2)));
+        assertTrue(PackedIds.packAll(ids, 0, 2).isEmpty());
+    }
+
+    @Test
+    void jsonAndEnvelopeAreNotPacked() {
+        assertFalse(PackedIds.isPacked("{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(PackedIds.isPacked(TaskEnvelope.wrap(PackedIds.pack(1L), 0L, 1, 0L, null)));
+        assertFalse(PackedIds.isPacked(new byte[]{PackedIds.MARKER}));
+        assertThrows(IllegalArgumentException.class, () -> PackedIds.unpack(new byte[]{'{', '}'}));
+
+        TaskEnvelope envelope = TaskEnvelope.parse(TaskEnvelope.wrap(PackedIds.pack(7L), 0L, 1, 0L, null));
+        assertArrayEquals(new long[]{7L}, PackedIds.unpack(envelope.body));
+    }
+}
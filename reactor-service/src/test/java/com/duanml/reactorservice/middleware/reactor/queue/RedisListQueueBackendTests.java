@@ -0,0 +1,28 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LIST队列：唤醒key与队列key在 Redis Cluster 下同slot，两key的 BLPOP 不会 CROSSSLOT
+ */
+class RedisListQueueBackendTests {
+
+    @Test
+    void wakeKeySharesSlotWithQueueKey() {
+        for (String queueKey : new String[]{"reactor:queue:user", "{user}:queue", "queue:{user}:tasks", "a{b"}) {
+            String wakeKey = RedisListQueueBackend.wakeKey(queueKey, "node-1");
+            assertNotEquals(queueKey, wakeKey);
+            assertEquals(SlotHash.getSlot(queueKey), SlotHash.getSlot(wakeKey), queueKey + " -> " + wakeKey);
+        }
+    }
+
+    @Test
+    void wakeKeyIsPerInstance() {
+        assertNotEquals(RedisListQueueBackend.wakeKey("q", "node-1"), RedisListQueueBackend.wakeKey("q", "node-2"));
+        assertEquals("{q}:wake:node-1", RedisListQueueBackend.wakeKey("q", "node-1"));
+        assertEquals("{user}:queue:wake:node-1", RedisListQueueBackend.wakeKey("{user}:queue", "node-1"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stream队列：读取参数与接管结果解析，无需Redis
+ */
+class RedisStreamQueueBackendTests {
+
+    @Test
+    void readOptionsBlockOnlyForPositiveTimeout() {
+        StreamReadOptions blocking = RedisStreamQueueBackend.readOptions(16, Duration.ofMillis(500));
+        assertEquals(16L, blocking.getCount());
+        assertEquals(500L, blocking.getBlock());
+
+        // BLOCK 0 表示永久阻塞，不阻塞时不能带 BLOCK
+        assertNull(RedisStreamQueueBackend.readOptions(16, Duration.ZERO).getBlock());
+        assertNull(RedisStreamQueueBackend.readOptions(16, Duration.ofMillis(-1)).getBlock());
+    }
+
+    @Test
+    void decodeClaimKeepsCursorAndSplitsDroppedEntries() {
+        RedisStreamQueueBackend.ClaimResult result = RedisStreamQueueBackend.decodeClaim(List.of(
+                "1700000000000-5",
+                List.of("1-0", "a", "2-0", "b"),
+                List.of("3-0", "poison")));
+        assertEquals("1700000000000-5", result.nextCursor);
+        assertEquals(List.of("1-0", "2-0"), result.claimed.stream().map(m -> m.id).toList());
+        assertEquals(List.of("a", "b"), result.claimed.stream().map(QueueMessage::text).toList());
+        assertEquals(1, result.dropped.size());
+        assertEquals("3-0", result.dropped.get(0).id);
+        assertEquals("poison", result.dropped.get(0).text());
+    }
+
+    @Test
+    void decodeClaimRestartsScanWhenResultIsEmpty() {
+        RedisStreamQueueBackend.ClaimResult wrapped = RedisStreamQueueBackend.decodeClaim(List.of("0-0", List.of(), List.of()));
+        assertEquals(RedisStreamQueueBackend.CLAIM_CURSOR_START, wrapped.nextCursor);
+        assertTrue(wrapped.claimed.isEmpty());
+        assertTrue(wrapped.dropped.isEmpty());
+
+        RedisStreamQueueBackend.ClaimResult none = RedisStreamQueueBackend.decodeClaim(null);
+        assertEquals(RedisStreamQueueBackend.CLAIM_CURSOR_START, none.nextCursor);
+        assertTrue(none.claimed.isEmpty());
+    }
+}
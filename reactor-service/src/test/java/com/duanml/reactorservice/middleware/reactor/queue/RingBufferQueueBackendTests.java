@@ -0,0 +1,129 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JVM内环形队列：无需Redis即可验证出入队语义
+ */
+class RingBufferQueueBackendTests {
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new RingBufferQueueBackend("q", 5).capacity());
+        assertEquals(8, new RingBufferQueueBackend("q", 8).capacity());
+    }
+
+    @Test
+    void offerFailsWhenFullAndPollKeepsFifoOrder() {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer("t" + i));
+        }
+        assertFalse(queue.offer("t4"));
+        assertEquals(4, queue.size());
+
+        List<QueueMessage> messages = queue.popBatch(3, 10);
+        assertEquals(List.of("t0", "t1", "t2"), messages.stream().map(m -> m.payload).toList());
+        assertEquals("t3", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.popBatch(10, 10).isEmpty());
+    }
+
+    @Test
+    void nackRequeuesMessages() {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 4);
+        queue.pushBatch(List.of("a", "b"));
+        List<QueueMessage> messages = queue.popBatch(2, 10);
+        queue.nack(messages);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void nackDoesNotBlockWhenBufferIsFull() throws Exception {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 4);
+        queue.pushBatch(List.of("a", "b", "c", "d"));
+        List<QueueMessage> inFlight = queue.popBatch(2, 10);
+        // 生产者在任务处理期间把缓冲重新写满
+        queue.pushBatch(List.of("e", "f"));
+        assertFalse(queue.offer("g"));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(() -> queue.nack(inFlight)).get(1, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(6, queue.size());
+
+        // 放回的任务先出队，之后是缓冲中的任务，无一丢失
+        List<String> drained = new ArrayList<>();
+        String payload;
+        while ((payload = queue.poll()) != null) {
+            drained.add(payload);
+        }
+        assertEquals(List.of("a", "b", "c", "d", "e", "f"), drained);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void wakeupReleasesBlockedPop() throws Exception {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 4);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        long start = System.currentTimeMillis();
+        var popped = pool.submit(() -> queue.popBatch(1, 10_000));
+        Thread.sleep(50);
+        queue.wakeup();
+        assertTrue(popped.get(2, TimeUnit.SECONDS).isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 5_000);
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentProducersAndConsumersLoseNothing() throws Exception {
+        RingBufferQueueBackend queue = new RingBufferQueueBackend("q", 64);
+        int producers = 4, perProducer = 20_000, total = producers * perProducer;
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger consumed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(producers * 2);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            pool.submit(() -> {
+                List<String> batch = new ArrayList<>();
+                for (int i = 0; i < perProducer; i++) {
+                    batch.add(String.valueOf(base + i));
+                    if (batch.size() == 16) {
+                        queue.pushBatch(batch);
+                        batch.clear();
+                    }
+                }
+                queue.pushBatch(batch);
+            });
+            pool.submit(() -> {
+                while (consumed.get() < total) {
+                    for (QueueMessage m : queue.popBatch(16, 5)) {
+                        seen.add(m.payload);
+                        consumed.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdownNow();
+        assertEquals(total, consumed.get());
+        assertEquals(total, seen.size());
+    }
+}
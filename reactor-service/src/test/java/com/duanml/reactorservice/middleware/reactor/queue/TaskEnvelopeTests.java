@@ -0,0 +1,61 @@
+package com.duanml.reactorservice.middleware.reactor.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 任务信封：头部读写、与原始任务混用、过期判断、放回队列时投递次数加1
+ */
+class TaskEnvelopeTests {
+
+    @Test
+    void wrapAndParseRoundTrip() {
+        String text = TaskEnvelope.wrap("{\"id\":1}", 1000L, 1, 5000L, "userTask:20250716");
+        TaskEnvelope envelope = TaskEnvelope.of(new QueueMessage(null, text));
+
+        assertEquals(1000L, envelope.enqueuedAt);
+        assertEquals(1, envelope.attempt);
+        assertEquals(5000L, envelope.deadline);
+        assertEquals("userTask:20250716", envelope.jobId);
+        assertEquals("{\"id\":1}", envelope.payload);
+
+        byte[] body = TaskEnvelope.wrap("{\"id\":2}".getBytes(StandardCharsets.UTF_8), 1000L, 1, 0L, null);
+        TaskEnvelope bytes = TaskEnvelope.of(QueueMessage.ofBytes(null, body));
+        assertNull(bytes.jobId);
+        assertEquals("{\"id\":2}", new String(bytes.body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void bareTaskIsNotEnvelope() {
+        assertNull(TaskEnvelope.of(new QueueMessage(null, "{\"id\":1}")));
+        assertNull(TaskEnvelope.of(QueueMessage.ofBytes(null, "{\"id\":1}".getBytes(StandardCharsets.UTF_8))));
+        assertThrows(IllegalArgumentException.class, () -> TaskEnvelope.parse("E1|x|1|0|\n{}"));
+    }
+
+    @Test
+    void expiryAndQueueWait() {
+        TaskEnvelope envelope = TaskEnvelope.parse(TaskEnvelope.wrap("{}", 1000L, 1, 2000L, null));
+        assertFalse(envelope.isExpired(1999L));
+        assertTrue(envelope.isExpired(2000L));
+        assertEquals(500L, envelope.queueWaitMillis(1500L));
+        assertEquals(0L, envelope.queueWaitMillis(900L)); // 时钟偏差
+
+        assertFalse(TaskEnvelope.parse(TaskEnvelope.wrap("{}", 1000L, 1, 0L, null)).isExpired(Long.MAX_VALUE));
+    }
+
+    @Test
+    void requeueIncrementsAttemptAndKeepsId() {
+        QueueMessage message = new QueueMessage("1-0", TaskEnvelope.wrap("{}", 1000L, 1, 0L, "job"));
+        QueueMessage requeued = TaskEnvelope.requeued(message);
+
+        assertEquals("1-0", requeued.id);
+        assertEquals(2, TaskEnvelope.of(requeued).attempt);
+        assertEquals(1000L, TaskEnvelope.of(requeued).enqueuedAt);
+
+        QueueMessage bare = new QueueMessage(null, "{}");
+        assertSame(bare, TaskEnvelope.requeued(bare));
+    }
+}
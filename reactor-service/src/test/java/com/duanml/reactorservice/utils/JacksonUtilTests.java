@@ -0,0 +1,51 @@
+package com.duanml.reactorservice.utils;
+
+import com.duanml.reactorservice.biz.config.JacksonConfig;
+import com.duanml.user.UserTask;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 字符串/字节两条序列化路径输出一致，Date 格式与原 SimpleDateFormat 一致
+ */
+class JacksonUtilTests {
+
+    @BeforeAll
+    static void init() {
+        new JacksonUtil(new JacksonConfig().objectMapper());
+    }
+
+    @Test
+    void bytesAndStringPathsProduceSameJson() {
+        UserTask task = new UserTask();
+        task.setId(1946000000000000001L);
+        task.setUsername("用户_a");
+        task.setCreatedAt(new Date(1_751_500_000_000L));
+
+        String json = JacksonUtil.toJson(task);
+        byte[] bytes = JacksonUtil.toJsonBytes(task);
+        assertEquals(json, new String(bytes, StandardCharsets.UTF_8));
+
+        UserTask fromBytes = JacksonUtil.fromJson(bytes, UserTask.class);
+        assertEquals(task, fromBytes);
+        assertEquals(task, JacksonUtil.fromJson(json, UserTask.class));
+    }
+
+    @Test
+    void dateUsesLegacyPatternAndAcceptsTimestamps() {
+        Date date = new Date(1_751_500_000_000L);
+        UserTask task = new UserTask();
+        task.setCreatedAt(date);
+        String expected = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date);
+        assertTrue(JacksonUtil.toJson(task).contains("\"createdAt\":\"" + expected + "\""));
+
+        UserTask parsed = JacksonUtil.fromJson("{\"createdAt\":1751500000000}", UserTask.class);
+        assertEquals(date, parsed.getCreatedAt());
+    }
+}